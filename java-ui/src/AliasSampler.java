@@ -0,0 +1,74 @@
+import java.util.Random;
+
+/**
+ * =============================================================
+ * AliasSampler - O(1) DRAWS FROM A DISCRETE DISTRIBUTION
+ * =============================================================
+ * Vose's alias method: n weights are turned into n columns of
+ * height 1, each holding at most two outcomes (its own index with
+ * probability prob[i], else alias[i]). A draw is one uniform
+ * column pick plus one biased coin, independent of n.
+ *
+ * Construction is O(n); the weights need not be normalised.
+ * Zero weights are never drawn.
+ * =============================================================
+ */
+public final class AliasSampler {
+
+    private final double[] prob;
+    private final int[] alias;
+    private final double total;
+
+    public AliasSampler(double[] weights) {
+        this(weights, weights.length);
+    }
+
+    /** Uses weights[0 .. n). */
+    public AliasSampler(double[] weights, int n) {
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (!(weights[i] >= 0) || Double.isInfinite(weights[i])) {
+                throw new IllegalArgumentException("Bad weight at " + i + ": " + weights[i]);
+            }
+            sum += weights[i];
+        }
+        if (n == 0 || !(sum > 0)) {
+            throw new IllegalArgumentException("Need at least one positive weight");
+        }
+        this.total = sum;
+        this.prob = new double[n];
+        this.alias = new int[n];
+
+        // Scaled weights: mean 1. Small (< 1) and large (>= 1) work
+        // lists share one array, filled from both ends.
+        double[] scaled = new double[n];
+        int[] work = new int[n];
+        int small = 0, large = n;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1.0) work[small++] = i; else work[--large] = i;
+        }
+
+        while (small > 0 && large < n) {
+            int s = work[--small];
+            int l = work[large++];
+            prob[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0) work[small++] = l; else work[--large] = l;
+        }
+        // Leftovers are 1 up to rounding
+        while (large < n) { int l = work[large++]; prob[l] = 1.0; alias[l] = l; }
+        while (small > 0) { int s = work[--small]; prob[s] = 1.0; alias[s] = s; }
+    }
+
+    public int size() { return prob.length; }
+
+    /** Sum of the weights it was built from. */
+    public double total() { return total; }
+
+    public int sample(Random rnd) {
+        int i = rnd.nextInt(prob.length);
+        return rnd.nextDouble() < prob[i] ? i : alias[i];
+    }
+}
@@ -0,0 +1,297 @@
+import javax.swing.SwingUtilities;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * =============================================================
+ * AnalyticsBenchmark (HEADLESS)
+ * =============================================================
+ * Timing for the network analytics on a synthetic grid
+ * (grid 317 = ~100k nodes). Betweenness runs the same sources
+ * with 1..N threads; every line reports wall time, the projected
+ * time for all n sources, and the largest relative difference to
+ * the single-thread scores.
+ *
+ *   java AnalyticsBenchmark --grid 317 --sources 2000 \
+ *        --threads 8 --weight time --out analytics.jsonl
+ *
+ * --sources 0 runs exact betweenness (every node a source);
+ * --weight length weights by road length instead of free-flow
+ * travel time. --epsilon 0.02 adds an ApproximateBetweenness run
+ * to that error bound (confidence 0.9), reporting the samples and
+ * wall time it took.
+ *
+ * --analysis closeness times ClosenessCentrality over the same
+ * number of (sorted) pivots: hop counts by bit-parallel BFS and
+ * the chosen weights by Dijkstra, 1..N threads each.
+ *
+ * --analysis vulnerability closes every road in turn
+ * (VulnerabilityScan) with 1..N threads, then prints the ranked
+ * report (--top entries) after the timing lines:
+ *
+ *   java AnalyticsBenchmark --analysis vulnerability --network panel
+ *   java AnalyticsBenchmark --analysis vulnerability --grid 60 --zones 40
+ *
+ * --network panel uses the built-in city graph instead of a grid;
+ * --zones k rates trips between k random nodes (0 = all pairs);
+ * --scan nodes closes junctions instead of roads.
+ * =============================================================
+ */
+public class AnalyticsBenchmark {
+
+    private int grid = 317;
+    private int sources = 1000;
+    private int maxThreads = Runtime.getRuntime().availableProcessors();
+    private String weight = "time";
+    private String outPath = null;
+    private long seed = 1133;
+    private double epsilon = 0;
+    private String analysis = "betweenness";
+    private String network = "grid";
+    private int zones = 0;
+    private int top = 20;
+    private String scan = "edges";
+
+    public static void main(String[] args) throws Exception {
+        AnalyticsBenchmark bench = new AnalyticsBenchmark();
+        bench.parseArgs(args);
+
+        List<String> lines;
+        switch (bench.analysis) {
+            case "closeness":     lines = bench.runCloseness(); break;
+            case "vulnerability": lines = bench.runVulnerability(); break;
+            default:              lines = bench.runBetweenness(); break;
+        }
+
+        if (bench.outPath == null) {
+            lines.forEach(System.out::println);
+        } else {
+            try (PrintWriter w = new PrintWriter(new FileWriter(bench.outPath))) {
+                lines.forEach(w::println);
+            }
+            System.out.println("Wrote " + lines.size() + " results to " + bench.outPath);
+        }
+        System.exit(0);   // --network panel leaves Swing timers running
+    }
+
+    // ---------------------------------------------------------
+    // Argument parsing
+    // ---------------------------------------------------------
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--grid":    grid = Integer.parseInt(v); break;
+                case "--sources": sources = Integer.parseInt(v); break;
+                case "--threads": maxThreads = Integer.parseInt(v); break;
+                case "--weight":  weight = v; break;
+                case "--seed":    seed = Long.parseLong(v); break;
+                case "--epsilon": epsilon = Double.parseDouble(v); break;
+                case "--analysis": analysis = v; break;
+                case "--network": network = v; break;
+                case "--zones":   zones = Integer.parseInt(v); break;
+                case "--top":     top = Integer.parseInt(v); break;
+                case "--scan":    scan = v; break;
+                case "--out":     outPath = v; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!weight.equals("time") && !weight.equals("length")) {
+            throw new IllegalArgumentException("--weight must be time or length");
+        }
+        if (!analysis.equals("betweenness") && !analysis.equals("closeness")
+                && !analysis.equals("vulnerability")) {
+            throw new IllegalArgumentException("--analysis must be betweenness, closeness or vulnerability");
+        }
+        if (!network.equals("grid") && !network.equals("panel")) {
+            throw new IllegalArgumentException("--network must be grid or panel");
+        }
+        if (!scan.equals("edges") && !scan.equals("nodes")) {
+            throw new IllegalArgumentException("--scan must be edges or nodes");
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Betweenness
+    // ---------------------------------------------------------
+
+    private List<String> runBetweenness() {
+        RoadNetwork net = RoadNetwork.synthetic(grid, grid, 6000, 4000, seed);
+        float[] w = weight.equals("time") ? net.edgeFreeFlowTime : net.edgeLength;
+        int n = net.nodeCount();
+        int[] src = pickSources(n);
+
+        List<String> out = new ArrayList<>();
+        double[] reference = null;
+        double refMs = 0;
+        for (int t = 1; t <= maxThreads; t++) {
+            long t0 = System.nanoTime();
+            BetweennessCentrality bc = BetweennessCentrality.compute(net, w, src, t);
+            double ms = (System.nanoTime() - t0) / 1e6;
+
+            double[] s = bc.scores();
+            if (reference == null) {
+                reference = s;
+                refMs = ms;
+            }
+            out.add(String.format(Locale.ROOT,
+                    "{\"analysis\":\"betweenness\",\"weight\":\"%s\",\"threads\":%d,"
+                            + "\"nodes\":%d,\"edges\":%d,\"sources\":%d,\"wall_ms\":%.1f,"
+                            + "\"ms_per_source\":%.3f,\"projected_exact_s\":%.1f,"
+                            + "\"speedup\":%.2f,\"max_rel_diff\":%.2e,\"top_node\":\"%s\"}",
+                    weight, t, n, net.edgeCount(), src.length, ms,
+                    ms / src.length, ms / src.length * n / 1000.0,
+                    refMs / ms, maxRelDiff(reference, s), net.nodeName(argMax(s))));
+        }
+        if (epsilon > 0) out.add(runApproximate(net, w));
+        return out;
+    }
+
+    private String runApproximate(RoadNetwork net, float[] w) {
+        double delta = ApproximateBetweenness.DEFAULT_DELTA;
+        long t0 = System.nanoTime();
+        ApproximateBetweenness ap = new ApproximateBetweenness(net, w, seed);
+        while (!ap.isConverged(epsilon, delta)) ap.sampleFor(1_000_000_000L, epsilon, delta);
+        double ms = (System.nanoTime() - t0) / 1e6;
+        return String.format(Locale.ROOT,
+                "{\"analysis\":\"betweenness_sampled\",\"weight\":\"%s\",\"nodes\":%d,"
+                        + "\"edges\":%d,\"epsilon\":%.4f,\"delta\":%.2f,\"vertex_diameter_bound\":%d,"
+                        + "\"samples\":%d,\"wall_ms\":%.1f,\"top_node\":\"%s\"}",
+                weight, net.nodeCount(), net.edgeCount(), ap.epsilon(delta), delta,
+                ap.getVertexDiameter(), ap.getSampleCount(), ms, net.nodeName(argMax(ap.scores())));
+    }
+
+    // ---------------------------------------------------------
+    // Closeness
+    // ---------------------------------------------------------
+
+    private List<String> runCloseness() {
+        RoadNetwork net = RoadNetwork.synthetic(grid, grid, 6000, 4000, seed);
+        float[] w = weight.equals("time") ? net.edgeFreeFlowTime : net.edgeLength;
+        int n = net.nodeCount();
+        int[] pivots = pickSources(n);
+        Arrays.sort(pivots);
+
+        List<String> out = new ArrayList<>();
+        for (String mode : new String[] {"hops", weight}) {
+            float[] weights = mode.equals("hops") ? null : w;
+            double[] reference = null;
+            double refMs = 0;
+            for (int t = 1; t <= maxThreads; t++) {
+                long t0 = System.nanoTime();
+                ClosenessCentrality cc = ClosenessCentrality.compute(net, weights, pivots, t);
+                double ms = (System.nanoTime() - t0) / 1e6;
+
+                double[] h = new double[n];
+                for (int v = 0; v < n; v++) h[v] = cc.harmonic(v);
+                if (reference == null) {
+                    reference = h;
+                    refMs = ms;
+                }
+                out.add(String.format(Locale.ROOT,
+                        "{\"analysis\":\"closeness\",\"weight\":\"%s\",\"method\":\"%s\","
+                                + "\"threads\":%d,\"nodes\":%d,\"edges\":%d,\"pivots\":%d,"
+                                + "\"wall_ms\":%.1f,\"ms_per_pivot\":%.3f,\"projected_exact_s\":%.1f,"
+                                + "\"speedup\":%.2f,\"max_rel_diff\":%.2e,\"top_node\":\"%s\"}",
+                        mode, weights == null ? "bit-parallel-bfs" : "dijkstra", t, n,
+                        net.edgeCount(), pivots.length, ms, ms / pivots.length,
+                        ms / pivots.length * n / 1000.0, refMs / ms,
+                        maxRelDiff(reference, h), net.nodeName(argMax(h))));
+            }
+        }
+        return out;
+    }
+
+    // ---------------------------------------------------------
+    // Vulnerability
+    // ---------------------------------------------------------
+
+    private List<String> runVulnerability() throws Exception {
+        RoadNetwork net;
+        if (network.equals("panel")) {
+            RoadNetwork[] built = new RoadNetwork[1];
+            SwingUtilities.invokeAndWait(() -> built[0] = RoadNetwork.fromPanel(new UrbanFlowPanel()));
+            net = built[0];
+        } else {
+            net = RoadNetwork.synthetic(grid, grid, 6000, 4000, seed);
+        }
+        float[] w = weight.equals("time") ? net.edgeFreeFlowTime : net.edgeLength;
+        int saved = sources;
+        sources = zones;
+        int[] zoneNodes = pickSources(net.nodeCount());
+        sources = saved;
+        OdMatrix od = OdMatrix.allPairs(net, zoneNodes);
+
+        List<String> out = new ArrayList<>();
+        List<String> report = null;
+        List<VulnerabilityScan.Impact> reference = null;
+        for (int t = 1; t <= maxThreads; t++) {
+            long t0 = System.nanoTime();
+            VulnerabilityScan vs = new VulnerabilityScan(net, w, od);
+            vs.setThreads(t);
+            List<VulnerabilityScan.Impact> ranked =
+                    scan.equals("nodes") ? vs.scanNodes() : vs.scanEdges();
+            double ms = (System.nanoTime() - t0) / 1e6;
+
+            long reruns = 0;
+            for (VulnerabilityScan.Impact im : ranked) reruns += im.reroutedOrigins;
+            boolean identical = true;
+            if (reference == null) {
+                reference = ranked;
+                report = vs.report(ranked, top);
+            } else {
+                for (int i = 0; i < ranked.size(); i++) {
+                    identical &= ranked.get(i).element == reference.get(i).element
+                            && ranked.get(i).addedSeconds == reference.get(i).addedSeconds;
+                }
+            }
+            out.add(String.format(Locale.ROOT,
+                    "{\"analysis\":\"vulnerability\",\"scan\":\"%s\",\"weight\":\"%s\","
+                            + "\"threads\":%d,\"nodes\":%d,\"edges\":%d,\"od_pairs\":%d,"
+                            + "\"candidates\":%d,\"reroutes\":%d,\"wall_ms\":%.1f,"
+                            + "\"identical\":%b}",
+                    scan, weight, t, net.nodeCount(), net.edgeCount(), od.pairCount(),
+                    ranked.size(), reruns, ms, identical));
+        }
+        out.addAll(report);
+        return out;
+    }
+
+    /** All nodes, or a seeded uniform sample without repeats. */
+    private int[] pickSources(int n) {
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        if (sources <= 0 || sources >= n) return all;
+
+        Random rnd = new Random(seed);
+        for (int i = 0; i < sources; i++) {
+            int j = i + rnd.nextInt(n - i);
+            int tmp = all[i]; all[i] = all[j]; all[j] = tmp;
+        }
+        int[] pick = new int[sources];
+        System.arraycopy(all, 0, pick, 0, sources);
+        return pick;
+    }
+
+    private static double maxRelDiff(double[] a, double[] b) {
+        double max = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            double scale = Math.max(1.0, Math.abs(a[i]));
+            max = Math.max(max, Math.abs(a[i] - b[i]) / scale);
+        }
+        return max;
+    }
+
+    private static int argMax(double[] a) {
+        int best = 0;
+        for (int i = 1; i < a.length; i++) if (a[i] > a[best]) best = i;
+        return best;
+    }
+}
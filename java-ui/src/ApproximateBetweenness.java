@@ -0,0 +1,143 @@
+import java.util.Random;
+
+/**
+ * =============================================================
+ * ApproximateBetweenness - PATH SAMPLING WITH AN ERROR BOUND
+ * =============================================================
+ * Riondato-Kornaropoulos estimate of BetweennessCentrality for
+ * networks where one search per node is too slow:
+ *   1. PAIR    draw an ordered pair s != t uniformly
+ *   2. PATH    one early-stopping Brandes search s → t, then one
+ *              of the shortest paths drawn uniformly, t back to s
+ *   3. COUNT   every node strictly inside that path gets +1
+ * count(v) / r estimates the share of pairs whose shortest paths
+ * run through v. With
+ *     r >= (c / eps^2) · (floor(log2(VD - 2)) + 1 + ln(1 / delta))
+ * samples (c = 0.5, VD = vertex diameter) every node's share is
+ * within eps with probability 1 - delta, all nodes at once.
+ *
+ * Refinable: sample() and sampleFor() only add to the counts, so
+ * a caller can show an estimate after a short time budget and
+ * keep tightening it (epsilon() shrinks as 1/sqrt(r)). Methods
+ * are synchronized so a background sampler and the EDT may share
+ * one instance; sampleFor() locks per batch, not per budget.
+ *
+ * VD is bounded by the node count: a shortest path visits every
+ * node at most once, which holds for weighted and one-way roads
+ * alike. Tree depths from a few sources are NOT a bound there (a
+ * weighted shortest path may have more hops than any BFS depth),
+ * and VD only enters through log2, so the loose bound costs a few
+ * samples, not a factor.
+ * =============================================================
+ */
+public final class ApproximateBetweenness {
+
+    public static final double DEFAULT_EPSILON = 0.02;
+    public static final double DEFAULT_DELTA = 0.1;
+
+    private static final double C = 0.5;
+    private static final int BATCH = 16;
+
+    private final RoadNetwork net;
+    private final BetweennessCentrality.Workspace work;
+    private final Random rnd;
+    private final long[] count;
+    private final int vertexDiameter;
+    private long samples = 0;
+
+    public ApproximateBetweenness(RoadNetwork net, float[] weights, long seed) {
+        this.net = net;
+        this.work = new BetweennessCentrality.Workspace(net, weights);
+        this.rnd = new Random(seed);
+        this.count = new long[net.nodeCount()];
+        this.vertexDiameter = net.nodeCount();
+    }
+
+    // ---------------------------------------------------------
+    // Sampling
+    // ---------------------------------------------------------
+
+    /** Adds the given number of path samples. */
+    public synchronized void sample(int paths) {
+        int n = net.nodeCount();
+        if (n < 3) return;
+        for (int i = 0; i < paths; i++) {
+            int s = rnd.nextInt(n);
+            int t = rnd.nextInt(n - 1);
+            if (t >= s) t++;
+            work.search(s, t);
+            work.samplePath(s, t, rnd, v -> count[v]++);
+            samples++;
+        }
+    }
+
+    /**
+     * Samples in small batches until budgetNanos have passed or the
+     * target error bound is met. Returns the samples added.
+     */
+    public long sampleFor(long budgetNanos, double epsilon, double delta) {
+        long deadline = System.nanoTime() + budgetNanos;
+        long before = getSampleCount();
+        long target = requiredSamples(epsilon, delta);
+        while (System.nanoTime() < deadline && getSampleCount() < target) {
+            sample(BATCH);
+        }
+        return getSampleCount() - before;
+    }
+
+    /** Samples needed for error eps with confidence 1 - delta. */
+    public long requiredSamples(double epsilon, double delta) {
+        return (long) Math.ceil(C / (epsilon * epsilon) * diameterTerm(delta));
+    }
+
+    /** Error bound reached so far at confidence 1 - delta. */
+    public synchronized double epsilon(double delta) {
+        return samples == 0 ? 1.0 : Math.min(1.0, Math.sqrt(C * diameterTerm(delta) / samples));
+    }
+
+    public boolean isConverged(double epsilon, double delta) {
+        return getSampleCount() >= requiredSamples(epsilon, delta);
+    }
+
+    private double diameterTerm(double delta) {
+        int vd = Math.max(3, vertexDiameter);
+        int log2 = 31 - Integer.numberOfLeadingZeros(Math.max(1, vd - 2));
+        return log2 + 1 + Math.log(1.0 / delta);
+    }
+
+    // ---------------------------------------------------------
+    // Results (same scale as BetweennessCentrality)
+    // ---------------------------------------------------------
+
+    public synchronized long getSampleCount() { return samples; }
+    /** Upper bound on the nodes of any shortest path used for the error bound. */
+    public int getVertexDiameter() { return vertexDiameter; }
+    public int nodeCount() { return count.length; }
+
+    /** Estimated pair dependencies through node (ordered pairs). */
+    public synchronized double score(int node) {
+        if (samples == 0) return 0.0;
+        long n = count.length;
+        return (double) count[node] / samples * n * (n - 1);
+    }
+
+    /** Estimated score over (n-1)(n-2). */
+    public double normalized(int node) {
+        long n = count.length;
+        return n > 2 ? score(node) / ((n - 1) * (n - 2)) : 0.0;
+    }
+
+    /** Estimated score relative to the most-sampled node (0..1). */
+    public synchronized double relative(int node) {
+        long max = 0;
+        for (long c : count) max = Math.max(max, c);
+        return max > 0 ? (double) count[node] / max : 0.0;
+    }
+
+    /** Snapshot of all estimated scores. */
+    public synchronized double[] scores() {
+        double[] s = new double[count.length];
+        for (int v = 0; v < s.length; v++) s[v] = score(v);
+        return s;
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * =============================================================
+ * BetweennessCentrality - WEIGHTED BRANDES, PARALLEL SOURCES
+ * =============================================================
+ * Node betweenness: how many shortest paths between other node
+ * pairs pass through each node (ties split evenly). Brandes:
+ *   1. FORWARD  one Dijkstra per source over the given weights
+ *               (edgeLength or edgeFreeFlowTime), counting the
+ *               shortest paths sigma(v) on the way
+ *   2. BACKWARD walk the settled nodes in reverse, pushing the
+ *               dependency delta(v) back to every tight incoming
+ *               edge's tail: delta(u) += sigma(u)/sigma(v)·(1+delta(v))
+ *   3. SUM      score(v) += delta(v) for every source s != v
+ * Predecessors are not stored: an incoming edge u→v is on a
+ * shortest path iff dist(u) + w = dist(v), checked on the way back.
+ *
+ * Sources are cut into fixed chunks, one per thread, each with
+ * its own distance / sigma / delta arrays and its own score
+ * accumulator; the accumulators are summed at the end. Thread
+ * counts only change the order of that final sum (last-bit
+ * rounding). Weights must be positive.
+ *
+ * Exact betweenness is one search per node, O(n·m log n); pass a
+ * source subset to estimate it (scores scaled by n / sources).
+ * =============================================================
+ */
+public final class BetweennessCentrality {
+
+    private final double[] score;
+    private final int sources;
+    private double max = -1;
+
+    private BetweennessCentrality(double[] score, int sources) {
+        this.score = score;
+        this.sources = sources;
+    }
+
+    // ---------------------------------------------------------
+    // Results
+    // ---------------------------------------------------------
+
+    public int nodeCount() { return score.length; }
+
+    /** Number of searched sources (nodeCount() when exact). */
+    public int sourceCount() { return sources; }
+
+    /** Pair dependencies through node (ordered pairs, directed graph). */
+    public double score(int node) { return score[node]; }
+
+    /** Score over (n-1)(n-2): the share of all other pairs. */
+    public double normalized(int node) {
+        long n = score.length;
+        return n > 2 ? score[node] / ((n - 1) * (n - 2)) : 0.0;
+    }
+
+    /** Score relative to the most central node (0..1). */
+    public double relative(int node) {
+        double m = maxScore();
+        return m > 0 ? score[node] / m : 0.0;
+    }
+
+    public double maxScore() {
+        if (max < 0) {
+            double m = 0.0;
+            for (double s : score) m = Math.max(m, s);
+            max = m;
+        }
+        return max;
+    }
+
+    /** Copy of all scores. */
+    public double[] scores() { return score.clone(); }
+
+    // ---------------------------------------------------------
+    // Computation
+    // ---------------------------------------------------------
+
+    /** Exact betweenness: every node is a source. */
+    public static BetweennessCentrality compute(RoadNetwork net, float[] weights, int threads) {
+        int n = net.nodeCount();
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        return compute(net, weights, all, threads);
+    }
+
+    /**
+     * Betweenness from the given sources only, scaled by
+     * n / sources.length so it estimates the exact score.
+     */
+    public static BetweennessCentrality compute(RoadNetwork net, float[] weights,
+                                                int[] sources, int threads) {
+        final int n = net.nodeCount();
+        final int k = sources.length;
+        threads = Math.max(1, Math.min(threads, k));
+
+        double[] score;
+        if (threads == 1) {
+            score = new Workspace(net, weights).accumulate(sources, 0, k);
+        } else {
+            score = new double[n];
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "betweenness");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Callable<double[]>> tasks = new ArrayList<>();
+                int chunk = (k + threads - 1) / threads;
+                for (int lo = 0; lo < k; lo += chunk) {
+                    final int from = lo, to = Math.min(k, lo + chunk);
+                    tasks.add(() -> new Workspace(net, weights).accumulate(sources, from, to));
+                }
+                // Reduction in chunk order
+                for (Future<double[]> f : pool.invokeAll(tasks)) {
+                    double[] part = f.get();
+                    for (int v = 0; v < n; v++) score[v] += part[v];
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Betweenness interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Betweenness failed", ex.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        if (k > 0 && k < n) {
+            double scale = (double) n / k;
+            for (int v = 0; v < n; v++) score[v] *= scale;
+        }
+        return new BetweennessCentrality(score, k);
+    }
+
+    // ---------------------------------------------------------
+    // Per-thread search state
+    // ---------------------------------------------------------
+
+    /**
+     * One Brandes workspace; only touched entries are reset per
+     * source. Also drives ApproximateBetweenness's path sampling.
+     */
+    static final class Workspace {
+
+        private final RoadNetwork net;
+        private final float[] weights;
+        private final double[] dist;
+        private final double[] sigma;
+        private final double[] delta;
+        private final int[] order;        // settled, non-decreasing dist
+        private final int[] touched;
+        private final IndexedMinHeap heap;
+        private int orderCount = 0;
+        private int touchedCount = 0;
+
+        Workspace(RoadNetwork net, float[] weights) {
+            this.net = net;
+            this.weights = weights;
+            int n = net.nodeCount();
+            dist = new double[n];
+            sigma = new double[n];
+            delta = new double[n];
+            order = new int[n];
+            touched = new int[n];
+            heap = new IndexedMinHeap(n);
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        }
+
+        /** Sum of the dependencies of sources[from .. to) per node. */
+        double[] accumulate(int[] sources, int from, int to) {
+            double[] acc = new double[net.nodeCount()];
+            for (int i = from; i < to; i++) {
+                int s = sources[i];
+                search(s, -1);
+                dependencies();
+                for (int j = 0; j < orderCount; j++) {
+                    int v = order[j];
+                    if (v != s) acc[v] += delta[v];
+                }
+            }
+            return acc;
+        }
+
+        /**
+         * Shortest-path DAG from s: dist, sigma and settle order.
+         * Stops once target is settled (target < 0: all nodes); sigma
+         * is final for every settled node.
+         */
+        void search(int s, int target) {
+            for (int i = 0; i < touchedCount; i++) {
+                int v = touched[i];
+                dist[v] = Double.POSITIVE_INFINITY;
+                sigma[v] = 0.0;
+                delta[v] = 0.0;
+            }
+            touchedCount = 0;
+            orderCount = 0;
+
+            final int[] outStart = net.outStart;
+            final int[] outEdges = net.outEdges;
+            final int[] edgeTo = net.edgeTo;
+
+            dist[s] = 0.0;
+            sigma[s] = 1.0;
+            touched[touchedCount++] = s;
+            heap.insertOrDecrease(s, 0.0);
+
+            while (!heap.isEmpty()) {
+                int u = heap.pollMin();
+                order[orderCount++] = u;
+                if (u == target) break;
+                double du = dist[u];
+                double su = sigma[u];
+                for (int k = outStart[u]; k < outStart[u + 1]; k++) {
+                    int e = outEdges[k];
+                    int v = edgeTo[e];
+                    double d = du + weights[e];
+                    double dv = dist[v];
+                    if (d < dv) {
+                        if (dv == Double.POSITIVE_INFINITY) touched[touchedCount++] = v;
+                        dist[v] = d;
+                        sigma[v] = su;
+                        heap.insertOrDecrease(v, d);
+                    } else if (d == dv) {
+                        sigma[v] += su;
+                    }
+                }
+            }
+            heap.clear();
+        }
+
+        /** delta over the last search, leaves first. */
+        void dependencies() {
+            final int[] inStart = net.inStart;
+            final int[] inEdges = net.inEdges;
+            final int[] edgeFrom = net.edgeFrom;
+
+            for (int j = orderCount - 1; j > 0; j--) {
+                int v = order[j];
+                double dv = dist[v];
+                double coeff = (1.0 + delta[v]) / sigma[v];
+                for (int k = inStart[v]; k < inStart[v + 1]; k++) {
+                    int e = inEdges[k];
+                    int u = edgeFrom[e];
+                    if (dist[u] + weights[e] == dv) delta[u] += sigma[u] * coeff;
+                }
+            }
+        }
+
+        /**
+         * After search(s, t): one shortest s→t path drawn uniformly
+         * (each tight predecessor u of v with chance sigma(u)/sigma(v)).
+         * Calls visit for every node strictly between s and t; returns
+         * false if t is unreachable.
+         */
+        boolean samplePath(int s, int t, Random rnd, IntConsumer visit) {
+            if (dist[t] == Double.POSITIVE_INFINITY) return false;
+            final int[] inStart = net.inStart;
+            final int[] inEdges = net.inEdges;
+            final int[] edgeFrom = net.edgeFrom;
+
+            int v = t;
+            while (v != s) {
+                double dv = dist[v];
+                double pick = rnd.nextDouble() * sigma[v];
+                int next = -1;
+                for (int k = inStart[v]; k < inStart[v + 1]; k++) {
+                    int e = inEdges[k];
+                    int u = edgeFrom[e];
+                    if (dist[u] + weights[e] == dv) {
+                        next = u;
+                        pick -= sigma[u];
+                        if (pick < 0) break;
+                    }
+                }
+                v = next;
+                if (v != s) visit.accept(v);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * =============================================================
+ * CellTransmissionModel - MESOSCOPIC QUEUE / SPILLBACK MODE
+ * =============================================================
+ * Daganzo's cell transmission model over a RoadNetwork. Every
+ * edge is cut into cells of one tick of free-flow travel, and
+ * traffic is a continuous vehicle count per cell instead of
+ * individual vehicles. Per cell (flat arrays over ALL cells):
+ *   n  vehicles in the cell
+ *   Q  max flow per tick   = edgeFlowCapacity (veh/h) * dt / 3600
+ *   N  jam vehicles        = Q * (1 + δ) / δ   (triangular
+ *      fundamental diagram, backward wave speed δ x free speed)
+ * Each tick
+ *   sending    S = min(n, Q)
+ *   receiving  R = min(Q, δ (N - n))
+ *   inside an edge  y = min(S[c], R[c+1])
+ *   at a node       in-edges' S (and the node's source queue) are
+ *                   split over out-edges by turn fractions; each
+ *                   out-edge admits at most its R, and an in-edge
+ *                   is held back by its most restrictive out-edge
+ *                   (FIFO), so a full downstream road BLOCKS the
+ *                   roads feeding it and the queue spills back
+ *   a fraction of what reaches a node leaves the network there
+ *
+ * Demand is aggregate: source rates (veh/h) per node, turn
+ * fractions per edge and exit fractions per node, usually taken
+ * from a TrafficAssignment equilibrium. Vehicles have no identity
+ * or destination, which is what makes region-scale runs cheap:
+ * cost per tick is O(cells + node turns), independent of demand.
+ * =============================================================
+ */
+public class CellTransmissionModel {
+
+    private final RoadNetwork net;
+    private final double dt;
+    private final float waveRatio;            // δ
+
+    // --- Cells (edge e owns cells cellStart[e] .. cellStart[e+1]) ---
+    private final int[] cellStart;
+    private final float[] n;
+    private final float[] maxFlow;            // Q
+    private final float[] jam;                // N
+    private final float[] cellOut;            // flow leaving the cell this tick
+    private final float[] cellIn;             // flow entering the cell this tick
+
+    // --- Nodes and turns ---
+    private final float[] split;              // share of from-node's onward flow per edge
+    private final float[] exitFraction;       // per node
+    private final float[] sourceRate;         // veh per tick, per node
+    private final double[] sourceQueue;       // vehicles waiting to enter, per node
+    private final float[] admit;              // scratch: α per out-edge
+
+    private double simTime = 0.0;
+    private double exited = 0.0;
+
+    public CellTransmissionModel(RoadNetwork net, double dt, double waveRatio) {
+        this.net = net;
+        this.dt = dt;
+        this.waveRatio = (float) waveRatio;
+
+        int m = net.edgeCount();
+        cellStart = new int[m + 1];
+        for (int e = 0; e < m; e++) {
+            int cells = Math.max(1, (int) Math.round(net.edgeFreeFlowTime[e] / dt));
+            cellStart[e + 1] = cellStart[e] + cells;
+        }
+        int c = cellStart[m];
+        n = new float[c];
+        maxFlow = new float[c];
+        jam = new float[c];
+        cellOut = new float[c];
+        cellIn = new float[c];
+        for (int e = 0; e < m; e++) setEdgeCapacity(e, net.edgeFlowCapacity[e]);
+
+        split = new float[m];
+        exitFraction = new float[net.nodeCount()];
+        sourceRate = new float[net.nodeCount()];
+        sourceQueue = new double[net.nodeCount()];
+        admit = new float[m];
+        setTurnWeights(net.edgeFlowCapacity);
+        for (int v = 0; v < net.nodeCount(); v++) {
+            if (net.outDegree(v) == 0) exitFraction[v] = 1f;
+        }
+    }
+
+    /** Cells of dt seconds, backward wave at half the free-flow speed. */
+    public CellTransmissionModel(RoadNetwork net, double dt) {
+        this(net, dt, 0.5);
+    }
+
+    // ---------------------------------------------------------
+    // Setup
+    // ---------------------------------------------------------
+
+    /** Capacity of every cell of e in veh/h (e.g. an incident: a fraction of it). */
+    public void setEdgeCapacity(int e, double vehiclesPerHour) {
+        float q = (float) Math.max(0.0, vehiclesPerHour * dt / 3600.0);
+        float nj = q * (1f + waveRatio) / waveRatio;
+        for (int c = cellStart[e]; c < cellStart[e + 1]; c++) {
+            maxFlow[c] = q;
+            jam[c] = nj;
+        }
+    }
+
+    /** Bottleneck at the END of e only (lane drop before the junction). */
+    public void setExitCapacity(int e, double vehiclesPerHour) {
+        maxFlow[cellStart[e + 1] - 1] = (float) Math.max(0.0, vehiclesPerHour * dt / 3600.0);
+    }
+
+    /** Turn fractions ∝ weight[e] among each node's out-edges (all 0: equal shares). */
+    public void setTurnWeights(float[] weight) {
+        for (int v = 0; v < net.nodeCount(); v++) {
+            int lo = net.outStart[v], hi = net.outStart[v + 1];
+            double sum = 0;
+            for (int k = lo; k < hi; k++) sum += Math.max(0f, weight[net.outEdges[k]]);
+            for (int k = lo; k < hi; k++) {
+                int e = net.outEdges[k];
+                split[e] = sum > 0 ? (float) (Math.max(0f, weight[e]) / sum) : 1f / (hi - lo);
+            }
+        }
+    }
+
+    public void setExitFraction(int node, double fraction) {
+        exitFraction[node] = net.outDegree(node) == 0
+                ? 1f : (float) Math.max(0.0, Math.min(1.0, fraction));
+    }
+
+    public void setSourceRate(int node, double vehiclesPerHour) {
+        sourceRate[node] = (float) (vehiclesPerHour * dt / 3600.0);
+    }
+
+    /**
+     * Stationary demand from an assignment: sources = trips per
+     * origin, turn fractions ∝ equilibrium edge flows, and exit
+     * fraction at v = trips ending at v / flow arriving at v.
+     * Pairs the assignment could not route are left out.
+     */
+    public void setDemand(OdMatrix od, TrafficAssignment.Result eq) {
+        int nodes = net.nodeCount();
+        double[] origin = new double[nodes];
+        double[] dest = new double[nodes];
+        for (int o = 0; o < nodes; o++) {
+            for (int k = od.originStart[o]; k < od.originStart[o + 1]; k++) {
+                if (!eq.isAssigned(k)) continue;
+                origin[o] += od.trips[k];
+                dest[od.dest[k]] += od.trips[k];
+            }
+        }
+        double[] arriving = new double[nodes];
+        float[] weight = new float[net.edgeCount()];
+        for (int e = 0; e < weight.length; e++) {
+            weight[e] = (float) eq.flow(e);
+            arriving[net.edgeTo[e]] += eq.flow(e);
+        }
+        setTurnWeights(weight);
+        for (int v = 0; v < nodes; v++) {
+            setSourceRate(v, origin[v]);
+            setExitFraction(v, arriving[v] > 0 ? dest[v] / arriving[v] : 0.0);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Tick
+    // ---------------------------------------------------------
+
+    public void step() {
+        simTime += dt;
+        moveWithinEdges();
+        moveThroughNodes();
+
+        final float[] n = this.n;
+        for (int c = 0; c < n.length; c++) n[c] += cellIn[c] - cellOut[c];
+    }
+
+    public void run(double seconds) {
+        long ticks = Math.round(seconds / dt);
+        for (long i = 0; i < ticks; i++) step();
+    }
+
+    private void moveWithinEdges() {
+        final float[] n = this.n, q = this.maxFlow, jam = this.jam;
+        final float[] out = this.cellOut, in = this.cellIn;
+        final float d = waveRatio;
+        final int m = net.edgeCount();
+
+        for (int e = 0; e < m; e++) {
+            int first = cellStart[e], last = cellStart[e + 1] - 1;
+            for (int c = first; c < last; c++) {
+                float send = Math.min(n[c], q[c]);
+                float recv = Math.min(q[c + 1], d * (jam[c + 1] - n[c + 1]));
+                float y = Math.max(0f, Math.min(send, recv));
+                out[c] = y;
+                in[c + 1] = y;
+            }
+        }
+    }
+
+    private void moveThroughNodes() {
+        final float[] n = this.n, q = this.maxFlow, jam = this.jam;
+        final float d = waveRatio;
+        final int[] inStart = net.inStart, inEdges = net.inEdges;
+        final int[] outStart = net.outStart, outEdges = net.outEdges;
+
+        for (int v = 0; v < net.nodeCount(); v++) {
+            float x = exitFraction[v];
+            sourceQueue[v] += sourceRate[v];
+            float source = (float) sourceQueue[v];
+
+            // demand on each out-edge: through traffic + source
+            int oLo = outStart[v], oHi = outStart[v + 1];
+            float through = source;
+            for (int k = inStart[v]; k < inStart[v + 1]; k++) {
+                int c = cellStart[inEdges[k] + 1] - 1;
+                through += Math.min(n[c], q[c]) * (1f - x);
+            }
+            float held = 1f;           // α of the most restrictive out-edge
+            for (int k = oLo; k < oHi; k++) {
+                int e = outEdges[k];
+                int c = cellStart[e];
+                float demand = through * split[e];
+                float recv = Math.max(0f, Math.min(q[c], d * (jam[c] - n[c])));
+                float a = demand > recv ? recv / demand : 1f;
+                admit[e] = a;
+                if (split[e] > 0f && a < held) held = a;
+            }
+            if (oHi == oLo) held = 1f;
+
+            // in-edges (FIFO: all held back by the same α) and the source
+            float entering = 0f;
+            for (int k = inStart[v]; k < inStart[v + 1]; k++) {
+                int c = cellStart[inEdges[k] + 1] - 1;
+                float send = Math.min(n[c], q[c]);
+                // vehicles exiting here are not blocked by downstream roads
+                float moved = send * x + send * (1f - x) * held;
+                cellOut[c] = moved;
+                exited += send * x;
+                entering += send * (1f - x) * held;
+            }
+            float fromSource = oHi > oLo ? source * held : 0f;
+            sourceQueue[v] -= fromSource;
+            entering += fromSource;
+
+            for (int k = oLo; k < oHi; k++) {
+                int e = outEdges[k];
+                cellIn[cellStart[e]] = entering * split[e];
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Output
+    // ---------------------------------------------------------
+
+    public double getSimTime() { return simTime; }
+    public double getDt() { return dt; }
+    public RoadNetwork getNetwork() { return net; }
+    public int cellCount() { return n.length; }
+    public int cellCount(int e) { return cellStart[e + 1] - cellStart[e]; }
+
+    /** Vehicles that have left the network at their exit node. */
+    public double getExited() { return exited; }
+
+    public double edgeVehicles(int e) {
+        double s = 0;
+        for (int c = cellStart[e]; c < cellStart[e + 1]; c++) s += n[c];
+        return s;
+    }
+
+    public double totalVehicles() {
+        double s = 0;
+        for (float v : n) s += v;
+        return s;
+    }
+
+    /** Vehicles waiting at origins because the first road is full. */
+    public double totalSourceQueue() {
+        double s = 0;
+        for (double v : sourceQueue) s += v;
+        return s;
+    }
+
+    /**
+     * Occupancy relative to critical density: 1 at capacity,
+     * (1 + δ) / δ when fully jammed. Same scale as the flow /
+     * capacity tint of EdgeView and UrbanFlowPanel's overlay.
+     */
+    public double congestion(int e) {
+        double veh = 0, crit = 0;
+        for (int c = cellStart[e]; c < cellStart[e + 1]; c++) {
+            veh += n[c];
+            crit += maxFlow[c];
+        }
+        return crit > 0 ? veh / crit : 1.0;
+    }
+
+    /**
+     * Seconds to cross e: free-flow time below critical density,
+     * else the time to discharge its vehicles at capacity (Little's
+     * law), i.e. free-flow time x congestion(e). A lower bound while
+     * a blocked exit holds the outflow under capacity.
+     */
+    public double travelTime(int e) {
+        return net.edgeFreeFlowTime[e] * Math.max(1.0, congestion(e));
+    }
+
+    /** congestion(e) for every edge, e.g. for setCongestionOverlay. */
+    public float[] congestionArray(float[] out) {
+        if (out == null || out.length != net.edgeCount()) out = new float[net.edgeCount()];
+        for (int e = 0; e < out.length; e++) out[e] = (float) congestion(e);
+        return out;
+    }
+
+    /**
+     * Fraction of e's cells in the congested branch (above critical
+     * density, i.e. part of a queue).
+     */
+    public double queuedFraction(int e) {
+        int queued = 0;
+        for (int c = cellStart[e]; c < cellStart[e + 1]; c++) {
+            if (n[c] > maxFlow[c] * 1.01f) queued++;
+        }
+        return (double) queued / cellCount(e);
+    }
+
+    // ---------------------------------------------------------
+    // Command line
+    // ---------------------------------------------------------
+
+    /**
+     *   java CellTransmissionModel --data java-ui/data --random 200 --scale 1 \
+     *        --duration 86400 --dt 30 --incident LHR-ISL:0.1 --report 3600
+     *
+     * Demand: random OD (trips/h) x scale, turn fractions from a
+     * Frank-Wolfe equilibrium; --incident cuts one road's exit
+     * capacity to a fraction so the queue spills upstream.
+     */
+    public static void main(String[] args) throws IOException {
+        String data = "java-ui/data", incident = null;
+        int randomPairs = 200;
+        double scale = 1, duration = 86400, dt = 30, report = 3600;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--data":     data = v; break;
+                case "--random":   randomPairs = Integer.parseInt(v); break;
+                case "--scale":    scale = Double.parseDouble(v); break;
+                case "--duration": duration = Double.parseDouble(v); break;
+                case "--dt":       dt = Double.parseDouble(v); break;
+                case "--incident": incident = v; break;
+                case "--report":   report = Double.parseDouble(v); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        RoadNetwork net = RoadNetwork.loadCsv(data + "/intersections.csv", data + "/roads.csv");
+        OdMatrix base = OdMatrix.random(net, randomPairs, 10, 1133);
+        OdMatrix.Builder scaled = new OdMatrix.Builder(net.nodeCount());
+        for (int o = 0; o < net.nodeCount(); o++) {
+            for (int k = base.originStart[o]; k < base.originStart[o + 1]; k++) {
+                scaled.add(o, base.dest[k], base.trips[k] * scale);
+            }
+        }
+        OdMatrix od = scaled.build();
+
+        CellTransmissionModel ctm = new CellTransmissionModel(net, dt);
+        try (TrafficAssignment ta = new TrafficAssignment(net, 1)) {
+            ctm.setDemand(od, ta.solve(od));
+        }
+
+        int blocked = -1;
+        if (incident != null) {
+            String[] p = incident.split("[-:]");
+            blocked = p.length == 3 ? net.findEdge(net.indexOf(p[0]), net.indexOf(p[1])) : -1;
+            if (blocked < 0) throw new IllegalArgumentException("Unknown road " + incident);
+            ctm.setExitCapacity(blocked, net.edgeFlowCapacity[blocked] * Double.parseDouble(p[2]));
+        }
+
+        System.out.printf(Locale.ROOT, "Network: %d nodes, %d edges, %d cells; demand %.0f veh/h%n",
+                net.nodeCount(), net.edgeCount(), ctm.cellCount(), od.totalTrips());
+        System.out.println("   time   in network   source queue   exited   queued edges");
+
+        long t0 = System.nanoTime();
+        double nextReport = report;
+        while (ctm.getSimTime() < duration) {
+            ctm.step();
+            if (ctm.getSimTime() >= nextReport) {
+                int queued = 0;
+                for (int e = 0; e < net.edgeCount(); e++) if (ctm.queuedFraction(e) > 0.5) queued++;
+                System.out.printf(Locale.ROOT, "%7.0f %12.0f %14.0f %8.0f %14d%n",
+                        ctm.getSimTime(), ctm.totalVehicles(), ctm.totalSourceQueue(),
+                        ctm.getExited(), queued);
+                nextReport += report;
+            }
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+        System.out.printf(Locale.ROOT, "%.0f s simulated in %.1f ms (%.2f us per tick)%n",
+                ctm.getSimTime(), ms, ms * 1000 / Math.round(duration / dt));
+
+        if (blocked >= 0) {
+            System.out.println();
+            System.out.println("Roads into " + net.nodeName(net.edgeFrom[blocked])
+                    + " (upstream of the incident):");
+            int u = net.edgeFrom[blocked];
+            for (int k = net.inStart[u]; k < net.inStart[u + 1]; k++) {
+                int e = net.inEdges[k];
+                System.out.printf(Locale.ROOT, "  %s->%s  congestion %.2f  queued %.0f%%%n",
+                        net.nodeName(net.edgeFrom[e]), net.nodeName(net.edgeTo[e]),
+                        ctm.congestion(e), ctm.queuedFraction(e) * 100);
+            }
+        }
+    }
+}
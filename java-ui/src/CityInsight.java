@@ -16,9 +16,11 @@ public class CityInsight {
     // -----------------------------
     public final String city;          // City code (e.g., LHR)
     public final int connectivity;     // Number of direct connections
-    public final double centrality;    // Importance score (0.0 – 1.0)
+    public final double centrality;    // Betweenness vs. top hub (0.0 – 1.0)
     public final int trafficPressure;  // Traffic load percentage (0 – 100)
     public final String classification; // CRITICAL / MAJOR / MINOR hub
+    public final double closeness;     // Closeness vs. best-placed city (0.0 – 1.0)
+    public final double harmonic;      // Harmonic centrality vs. best (0.0 – 1.0)
 
     // -----------------------------
     // Constructor
@@ -29,12 +31,26 @@ public class CityInsight {
             double centrality,
             int trafficPressure,
             String classification
+    ) {
+        this(city, connectivity, centrality, trafficPressure, classification, 0.0, 0.0);
+    }
+
+    public CityInsight(
+            String city,
+            int connectivity,
+            double centrality,
+            int trafficPressure,
+            String classification,
+            double closeness,
+            double harmonic
     ) {
         this.city = city;
         this.connectivity = connectivity;
         this.centrality = centrality;
         this.trafficPressure = trafficPressure;
         this.classification = classification;
+        this.closeness = closeness;
+        this.harmonic = harmonic;
     }
 
     // -----------------------------
@@ -60,6 +76,8 @@ public class CityInsight {
                 ", centrality=" + centrality +
                 ", trafficPressure=" + trafficPressure +
                 ", classification='" + classification + '\'' +
+                ", closeness=" + closeness +
+                ", harmonic=" + harmonic +
                 '}';
     }
 }
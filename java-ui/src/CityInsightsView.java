@@ -3,6 +3,10 @@ import javax.swing.border.*;
 import javax.swing.plaf.basic.BasicProgressBarUI;
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 
 public class CityInsightsView extends JPanel {
 
@@ -19,11 +23,19 @@ public class CityInsightsView extends JPanel {
     private final JLabel centralVal = new JLabel("0.000");
     private final SupremeGauge mainGauge = new SupremeGauge();
     private final JTextArea terminalLog = new JTextArea(6, 20);
+    private final JTextArea rankingList = new JTextArea(RANKING_SIZE, 20);
     private final StatusBadge currentStatus = new StatusBadge("SYSTEM READY");
 
+    private static final long REFINE_SLICE_NANOS = 250_000_000L;
+    private static final int RANKING_SIZE = 5;
+    private String currentCity = null;
+    private SwingWorker<Void, Double> refiner = null;
+
     public CityInsightsView(UrbanFlowPanel map) {
         this.map = map;
         setupMainLayout();
+        rankingList.setText(" COMPUTING CENTRALITY...");
+        map.loadCentrality(this::onCentralityReady);
     }
 
     private void setupMainLayout() {
@@ -69,6 +81,16 @@ public class CityInsightsView extends JPanel {
         statsGrid.add(createMetricBox("DEGREE_INDEX", degreeVal));
         statsGrid.add(createMetricBox("CENTRALITY", centralVal));
         centerBody.add(statsGrid);
+        centerBody.add(Box.createVerticalStrut(30));
+
+        centerBody.add(createHudLabel("ACCESSIBILITY_RANKING"));
+        centerBody.add(Box.createVerticalStrut(10));
+        rankingList.setBackground(new Color(10, 12, 15));
+        rankingList.setForeground(TEXT_HUD);
+        rankingList.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        rankingList.setEditable(false);
+        rankingList.setAlignmentX(Component.LEFT_ALIGNMENT);
+        centerBody.add(rankingList);
 
         // 3. TERMINAL (BOTTOM)
         JPanel bottomTerminal = new JPanel(new BorderLayout());
@@ -90,10 +112,73 @@ public class CityInsightsView extends JPanel {
         add(bottomTerminal, BorderLayout.SOUTH);
     }
 
+    // Best-placed cities by harmonic centrality (unreachable pairs count 0)
+    private void showRanking() {
+        List<CityInsight> ranked = new ArrayList<>(map.getCityInsights());
+        ranked.sort(Comparator.comparingDouble((CityInsight c) -> -c.harmonic)
+                .thenComparing(c -> c.city));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(RANKING_SIZE, ranked.size()); i++) {
+            CityInsight c = ranked.get(i);
+            if (i > 0) sb.append('\n');
+            sb.append(String.format(Locale.ROOT, " %d. %-5s HARMONIC %.3f  CLOSENESS %.3f",
+                    i + 1, c.city, c.harmonic, c.closeness));
+        }
+        rankingList.setText(sb.toString());
+    }
+
+    // Centrality is in (runs on the EDT): fill in what was waiting for it
+    private void onCentralityReady() {
+        showRanking();
+        if (currentCity != null) {
+            showInsight(currentCity);
+            logCentrality(currentCity);
+            terminalLog.setCaretPosition(terminalLog.getDocument().getLength());
+        }
+    }
+
     public void onCityClicked(String id) {
+        String previous = currentCity;
+        currentCity = id;
         cityHeader.setText(id.toUpperCase());
-        int d = map.getCityDegree(id);
-        double c = Math.min(1.0, d / 9.0);
+
+        terminalLog.append(" > SYNCING NODE [" + id + "]\n");
+        if (map.isCentralityReady()) {
+            showInsight(id);
+            logCentrality(id);
+        } else {
+            terminalLog.append(" > COMPUTING CENTRALITY...\n");
+        }
+
+        // Two cities in a row: capacity between them, bottlenecks on the map
+        if (previous != null && !previous.equals(id)) {
+            MaxFlowDinic.Result flow = map.showCapacity(previous, id);
+            if (flow != null) {
+                terminalLog.append(String.format(" > CAPACITY %s -> %s: %,.0f VEH/H, %d BOTTLENECK ROAD(S)%n",
+                        previous, id, flow.maxFlow, flow.cutCount()));
+            }
+        }
+        terminalLog.setCaretPosition(terminalLog.getDocument().getLength());
+        
+        map.highlightCity(id, true);
+    }
+
+    private void logCentrality(String id) {
+        terminalLog.append(" > CALCULATING TOPOLOGICAL WEIGHT...\n");
+        CityInsight insight = map.getCityInsight(id);
+        terminalLog.append(String.format(" > CLOSENESS %.3f  HARMONIC %.3f%n",
+                insight.closeness, insight.harmonic));
+        if (map.needsCentralityRefinement()) {
+            terminalLog.append(String.format(" > ESTIMATE +/-%.3f, REFINING...%n", map.getCentralityError()));
+            startRefinement();
+        }
+    }
+
+    private void showInsight(String id) {
+        cityHeader.setText(id.toUpperCase());
+        CityInsight insight = map.getCityInsight(id);
+        int d = insight.connectivity;
+        double c = insight.centrality;
         
         degreeVal.setText(String.format("%02d", d));
         centralVal.setText(String.format("%.3f", c));
@@ -104,12 +189,38 @@ public class CityInsightsView extends JPanel {
         } else {
             currentStatus.refresh("STABLE_NODE", NEON_CYAN);
         }
+    }
 
-        terminalLog.append(" > SYNCING NODE [" + id + "]\n");
-        terminalLog.append(" > CALCULATING TOPOLOGICAL WEIGHT...\n");
-        terminalLog.setCaretPosition(terminalLog.getDocument().getLength());
-        
-        map.highlightCity(id, true);
+    // --- BACKGROUND CENTRALITY REFINEMENT (large networks) ---
+
+    // Samples in short slices off the EDT; each slice re-renders the
+    // selected city with the tighter estimate.
+    private void startRefinement() {
+        if (refiner != null && !refiner.isDone()) return;
+        refiner = new SwingWorker<Void, Double>() {
+            @Override protected Void doInBackground() {
+                while (!isCancelled() && map.refineCentrality(REFINE_SLICE_NANOS)) {
+                    publish(map.getCentralityError());
+                }
+                return null;
+            }
+            @Override protected void process(java.util.List<Double> errors) {
+                if (currentCity != null) showInsight(currentCity);
+            }
+            @Override protected void done() {
+                if (isCancelled()) return;
+                if (currentCity != null) showInsight(currentCity);
+                terminalLog.append(String.format(" > CENTRALITY CONVERGED +/-%.3f%n", map.getCentralityError()));
+                terminalLog.setCaretPosition(terminalLog.getDocument().getLength());
+            }
+        };
+        refiner.execute();
+    }
+
+    @Override
+    public void removeNotify() {
+        if (refiner != null) refiner.cancel(false);
+        super.removeNotify();
     }
 
     private JPanel createMetricBox(String title, JLabel val) {
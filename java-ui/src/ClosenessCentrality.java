@@ -0,0 +1,274 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * =============================================================
+ * ClosenessCentrality - CLOSENESS + HARMONIC, ONE BATCH
+ * =============================================================
+ * For every node v, from its distances d(v, t) to the other nodes:
+ *   closeness(v) = (r / (n-1)) · (r / sum d(v, t))      r = reached
+ *   harmonic(v)  = sum 1 / d(v, t)  /  (n-1)
+ * (closeness with the Wasserman-Faust factor, so nodes that reach
+ * only a small island do not score high). Both come out of the
+ * same sweeps, one per target t ("pivot"), searching backwards
+ * from t so a single sweep gives d(v, t) for all v at once:
+ *   - weights == null  hop counts by bit-parallel BFS: 64 pivots
+ *                      per long word, one frontier pass per level
+ *                      for all of them; each node adds
+ *                      level · popcount(newly reached bits)
+ *   - weights given    one reverse Dijkstra per pivot
+ *
+ * Pivots are cut into fixed chunks (whole 64-pivot words), one per
+ * thread, each with its own sums; the sums are added at the end.
+ * All nodes as pivots is exact; a pivot subset estimates the sums
+ * (scaled by n / pivots). BFS words fill up fastest when nearby
+ * nodes are adjacent in the pivot list (their frontiers merge),
+ * so pass sampled pivots sorted.
+ * =============================================================
+ */
+public final class ClosenessCentrality {
+
+    private final double[] closeness;
+    private final double[] harmonic;
+    private final int pivots;
+    private double maxCloseness = -1, maxHarmonic = -1;
+
+    private ClosenessCentrality(double[] closeness, double[] harmonic, int pivots) {
+        this.closeness = closeness;
+        this.harmonic = harmonic;
+        this.pivots = pivots;
+    }
+
+    // ---------------------------------------------------------
+    // Results
+    // ---------------------------------------------------------
+
+    public int nodeCount() { return closeness.length; }
+    public int pivotCount() { return pivots; }
+
+    /** 1 / mean distance, times the reached share (1/seconds or 1/hops). */
+    public double closeness(int node) { return closeness[node]; }
+
+    /** Mean of 1 / distance over all other nodes (0 for unreached). */
+    public double harmonic(int node) { return harmonic[node]; }
+
+    /** Closeness relative to the best-placed node (0..1). */
+    public double relativeCloseness(int node) {
+        if (maxCloseness < 0) maxCloseness = max(closeness);
+        return maxCloseness > 0 ? closeness[node] / maxCloseness : 0.0;
+    }
+
+    /** Harmonic centrality relative to the best-placed node (0..1). */
+    public double relativeHarmonic(int node) {
+        if (maxHarmonic < 0) maxHarmonic = max(harmonic);
+        return maxHarmonic > 0 ? harmonic[node] / maxHarmonic : 0.0;
+    }
+
+    private static double max(double[] a) {
+        double m = 0.0;
+        for (double x : a) m = Math.max(m, x);
+        return m;
+    }
+
+    // ---------------------------------------------------------
+    // Computation
+    // ---------------------------------------------------------
+
+    /** Exact: every node is a pivot. weights == null counts hops. */
+    public static ClosenessCentrality compute(RoadNetwork net, float[] weights, int threads) {
+        int n = net.nodeCount();
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        return compute(net, weights, all, threads);
+    }
+
+    /** Distances to the given pivots only, scaled to n - 1 targets. */
+    public static ClosenessCentrality compute(RoadNetwork net, float[] weights,
+                                              int[] pivots, int threads) {
+        final int n = net.nodeCount();
+        final int k = pivots.length;
+        final int units = weights == null ? (k + 63) / 64 : k;   // BFS runs whole words
+        threads = Math.max(1, Math.min(threads, units));
+
+        Sums total;
+        if (threads == 1) {
+            total = sweep(net, weights, pivots, 0, k);
+        } else {
+            total = new Sums(n);
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "closeness");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Callable<Sums>> tasks = new ArrayList<>();
+                int per = (units + threads - 1) / threads;
+                int chunk = weights == null ? per * 64 : per;
+                for (int lo = 0; lo < k; lo += chunk) {
+                    final int from = lo, to = Math.min(k, lo + chunk);
+                    tasks.add(() -> sweep(net, weights, pivots, from, to));
+                }
+                // Reduction in chunk order
+                for (Future<Sums> f : pool.invokeAll(tasks)) total.add(f.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Closeness interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Closeness failed", ex.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        // Pivot sums stand for all n - 1 other nodes
+        double scale = k < n ? (double) n / k : 1.0;
+        double[] closeness = new double[n];
+        double[] harmonic = new double[n];
+        for (int v = 0; v < n; v++) {
+            double reached = Math.min(n - 1, total.reached[v] * scale);
+            double sum = total.distance[v] * scale;
+            if (reached > 0 && sum > 0) {
+                closeness[v] = reached / (n - 1) * (reached / sum);
+                harmonic[v] = total.inverse[v] * scale / (n - 1);
+            }
+        }
+        return new ClosenessCentrality(closeness, harmonic, k);
+    }
+
+    /** Per-node sums over pivots[from .. to), self excluded. */
+    private static Sums sweep(RoadNetwork net, float[] weights, int[] pivots, int from, int to) {
+        Sums s = new Sums(net.nodeCount());
+        if (weights == null) {
+            BitBfs bfs = new BitBfs(net);
+            for (int lo = from; lo < to; lo += 64) bfs.run(pivots, lo, Math.min(to, lo + 64), s);
+        } else {
+            DijkstraEngine router = new DijkstraEngine(net);
+            for (int i = from; i < to; i++) {
+                int t = pivots[i];
+                router.runReverse(t, weights);
+                for (int j = 0; j < router.settledCount(); j++) {
+                    int v = router.settledNode(j);
+                    double d = router.dist(v);
+                    if (v == t || d <= 0) continue;
+                    s.distance[v] += d;
+                    s.inverse[v] += 1.0 / d;
+                    s.reached[v]++;
+                }
+            }
+        }
+        return s;
+    }
+
+    private static final class Sums {
+        final double[] distance;
+        final double[] inverse;
+        final long[] reached;
+
+        Sums(int n) {
+            distance = new double[n];
+            inverse = new double[n];
+            reached = new long[n];
+        }
+
+        void add(Sums o) {
+            for (int v = 0; v < distance.length; v++) {
+                distance[v] += o.distance[v];
+                inverse[v] += o.inverse[v];
+                reached[v] += o.reached[v];
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Bit-parallel BFS (up to 64 pivots per run)
+    // ---------------------------------------------------------
+
+    /** Reverse BFS workspace; bit i of a word = pivot from + i. */
+    private static final class BitBfs {
+
+        private final RoadNetwork net;
+        private final long[] seen;
+        private final long[] frontier;    // bits that arrived last level
+        private final long[] next;
+        private final int[] active;       // nodes with frontier != 0
+        private final int[] touched;      // nodes with next != 0
+        private final int[] visited;      // nodes with seen != 0
+        private int activeCount, visitedCount;
+
+        BitBfs(RoadNetwork net) {
+            this.net = net;
+            int n = net.nodeCount();
+            seen = new long[n];
+            frontier = new long[n];
+            next = new long[n];
+            active = new int[n];
+            touched = new int[n];
+            visited = new int[n];
+        }
+
+        void run(int[] pivots, int from, int to, Sums s) {
+            for (int i = 0; i < visitedCount; i++) {
+                int v = visited[i];
+                seen[v] = 0L;
+                frontier[v] = 0L;
+            }
+            visitedCount = 0;
+            activeCount = 0;
+
+            for (int i = from; i < to; i++) {
+                int t = pivots[i];
+                long bit = 1L << (i - from);
+                if (seen[t] == 0L) {
+                    visited[visitedCount++] = t;
+                    active[activeCount++] = t;
+                }
+                seen[t] |= bit;
+                frontier[t] |= bit;
+            }
+
+            final int[] inStart = net.inStart;
+            final int[] inEdges = net.inEdges;
+            final int[] edgeFrom = net.edgeFrom;
+
+            for (int level = 1; activeCount > 0; level++) {
+                // Push every pivot's frontier one road backwards
+                int touchedCount = 0;
+                for (int a = 0; a < activeCount; a++) {
+                    int u = active[a];
+                    long bits = frontier[u];
+                    frontier[u] = 0L;
+                    for (int k = inStart[u]; k < inStart[u + 1]; k++) {
+                        int w = edgeFrom[inEdges[k]];
+                        long fresh = bits & ~seen[w];
+                        if (fresh == 0L) continue;
+                        if (next[w] == 0L) touched[touchedCount++] = w;
+                        next[w] |= fresh;
+                    }
+                }
+
+                // Newly reached (node, pivot) pairs are `level` hops apart
+                activeCount = 0;
+                double inv = 1.0 / level;
+                for (int i = 0; i < touchedCount; i++) {
+                    int w = touched[i];
+                    long fresh = next[w];
+                    next[w] = 0L;
+                    if (seen[w] == 0L) visited[visitedCount++] = w;
+                    seen[w] |= fresh;
+                    frontier[w] = fresh;
+                    active[activeCount++] = w;
+
+                    int c = Long.bitCount(fresh);
+                    s.distance[w] += (double) level * c;
+                    s.inverse[w] += inv * c;
+                    s.reached[w] += c;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * =============================================================
+ * CongestionModel (JAVA PORT OF C++ TrafficModel)
+ * =============================================================
+ * Travel time of a road as a function of flow / capacity:
+ *   LINEAR       base * (1 + flow/cap)
+ *   BPR          base * (1 + alpha * (flow/cap)^beta)
+ *   EXPONENTIAL  base * e^(flow/cap)
+ * Roads with capacity <= 0 saturate at base * 1000, as in C++.
+ *
+ * The bulk methods recompute EVERY edge in one flat loop over
+ * primitive arrays (no per-object calls), writing straight into
+ * the weight array the routing engines read.
+ * =============================================================
+ */
+public class CongestionModel {
+
+    public enum Function { LINEAR, BPR, EXPONENTIAL }
+
+    private static final float SATURATED = 1000f;
+
+    private Function func;
+    private double alpha;
+    private double beta;
+
+    public CongestionModel(Function f, double alpha, double beta) {
+        this.func = f;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /** LINEAR with the typical BPR parameters (alpha=0.15, beta=4). */
+    public CongestionModel() {
+        this(Function.LINEAR, 0.15, 4.0);
+    }
+
+    // Allow changing formulas at runtime
+    public void setCongestionFunction(Function f) { this.func = f; }
+
+    public void setBPRParameters(double alpha, double beta) {
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    public Function getFunction() { return func; }
+    public double getAlpha() { return alpha; }
+    public double getBeta() { return beta; }
+
+    // ---------------------------------------------------------
+    // Single edge (same as TrafficModel::computeTravelTime)
+    // ---------------------------------------------------------
+
+    public double computeTravelTime(double baseTime, double flow,
+                                    double capacity, double vehicleSpeedFactor) {
+        double base = baseTime / vehicleSpeedFactor;
+        if (capacity <= 0.0) return base * SATURATED;
+        double r = flow / capacity;
+        switch (func) {
+            case LINEAR:      return base * (1.0 + r);
+            case BPR:         return base * (1.0 + alpha * Math.pow(r, beta));
+            case EXPONENTIAL: return base * Math.exp(r);
+            default:          return base;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Whole network (tight loops, one per formula)
+    // ---------------------------------------------------------
+
+    /** out[e] = travel time of edge e for integer flows (simulation). */
+    public void computeTravelTimes(float[] freeFlow, float[] capacity,
+                                   int[] flow, float[] out) {
+        prepare(freeFlow, capacity);
+        computeRange(flow, out, 0, out.length);
+    }
+
+    public void computeTravelTimes(RoadNetwork net, int[] flow, float[] out) {
+        computeTravelTimes(net.edgeFreeFlowTime, net.edgeCapacity, flow, out);
+    }
+
+    /**
+     * out[e] for continuous flows in vehicles per hour (e.g. from
+     * TrafficAssignment), against edgeFlowCapacity; same formulas
+     * as the integer version.
+     */
+    public void computeTravelTimes(RoadNetwork net, double[] flow, float[] out) {
+        prepare(net.edgeFreeFlowTime, net.edgeFlowCapacity);
+        final float[] base = this.base;
+        final float[] invCap = this.invCap;
+        final int n = out.length;
+        final double a = alpha;
+
+        switch (func) {
+            case LINEAR:
+                for (int e = 0; e < n; e++) {
+                    out[e] = (float) (base[e] * (1.0 + flow[e] * invCap[e]));
+                }
+                break;
+
+            case BPR:
+                for (int e = 0; e < n; e++) {
+                    double r = flow[e] * invCap[e];
+                    double rb = beta == 4.0 ? (r * r) * (r * r) : Math.pow(r, beta);
+                    out[e] = (float) (base[e] * (1.0 + a * rb));
+                }
+                break;
+
+            case EXPONENTIAL:
+                for (int e = 0; e < n; e++) {
+                    out[e] = (float) (base[e] * Math.exp(flow[e] * invCap[e]));
+                }
+                break;
+        }
+    }
+
+    /**
+     * out[e] = d travel time / d flow of edge e (seconds per veh/h)
+     * at continuous flows, against edgeFlowCapacity; 0 for roads
+     * without capacity. TrafficAssignment uses it as the diagonal
+     * Hessian of the Beckmann objective.
+     */
+    public void computeDerivatives(RoadNetwork net, double[] flow, double[] out) {
+        prepare(net.edgeFreeFlowTime, net.edgeFlowCapacity);
+        final float[] base = this.base;
+        final float[] invCap = this.invCap;
+        final int n = out.length;
+        final double a = alpha;
+
+        switch (func) {
+            case LINEAR:
+                for (int e = 0; e < n; e++) out[e] = base[e] * invCap[e];
+                break;
+
+            case BPR:
+                for (int e = 0; e < n; e++) {
+                    double r = flow[e] * invCap[e];
+                    double rb1 = beta == 4.0 ? r * r * r : Math.pow(r, beta - 1.0);
+                    out[e] = base[e] * a * beta * rb1 * invCap[e];
+                }
+                break;
+
+            case EXPONENTIAL:
+                for (int e = 0; e < n; e++) {
+                    out[e] = base[e] * Math.exp(flow[e] * invCap[e]) * invCap[e];
+                }
+                break;
+        }
+    }
+
+    /**
+     * Same as computeTravelTimes, for edges [from, to) only. Several
+     * threads may update disjoint ranges at once once prepare(net)
+     * has been called; each edge gets exactly the value the
+     * whole-network loop would give it.
+     */
+    public void computeTravelTimes(RoadNetwork net, int[] flow, float[] out,
+                                   int from, int to) {
+        prepare(net.edgeFreeFlowTime, net.edgeCapacity);
+        computeRange(flow, out, from, to);
+    }
+
+    private void computeRange(int[] flow, float[] out, int from, int to) {
+        final float[] base = this.base;
+        final float[] invCap = this.invCap;
+        final float a = (float) alpha;
+
+        switch (func) {
+            case LINEAR:
+                for (int e = from; e < to; e++) {
+                    out[e] = base[e] * (1f + flow[e] * invCap[e]);
+                }
+                break;
+
+            case BPR:
+                if (beta == 4.0) {
+                    // the standard BPR exponent: r^4 as two multiplies
+                    for (int e = from; e < to; e++) {
+                        float r = flow[e] * invCap[e];
+                        float r2 = r * r;
+                        out[e] = base[e] * (1f + a * r2 * r2);
+                    }
+                } else {
+                    for (int e = from; e < to; e++) {
+                        out[e] = base[e] * (1f + a * (float) Math.pow(flow[e] * invCap[e], beta));
+                    }
+                }
+                break;
+
+            case EXPONENTIAL:
+                for (int e = from; e < to; e++) {
+                    out[e] = base[e] * (float) Math.exp(flow[e] * invCap[e]);
+                }
+                break;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Branch-free inputs (rebuilt only when the network changes)
+    // ---------------------------------------------------------
+
+    private float[] preparedFreeFlow, preparedCapacity;
+    private float[] base = new float[0];     // free-flow time, or saturated
+    private float[] invCap = new float[0];   // 1 / capacity, 0 if none
+
+    /**
+     * Folds the capacity <= 0 special case into the inputs, so the
+     * hot loops above contain no branch and no division. Call once
+     * before updating ranges from several threads.
+     */
+    public void prepare(RoadNetwork net) {
+        prepare(net.edgeFreeFlowTime, net.edgeCapacity);
+    }
+
+    private void prepare(float[] freeFlow, float[] capacity) {
+        if (freeFlow == preparedFreeFlow && capacity == preparedCapacity) return;
+        int n = freeFlow.length;
+        base = new float[n];
+        invCap = new float[n];
+        for (int e = 0; e < n; e++) {
+            boolean ok = capacity[e] > 0f;
+            base[e] = ok ? freeFlow[e] : freeFlow[e] * SATURATED;
+            invCap[e] = ok ? 1f / capacity[e] : 0f;
+        }
+        preparedFreeFlow = freeFlow;
+        preparedCapacity = capacity;
+    }
+}
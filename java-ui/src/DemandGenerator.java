@@ -0,0 +1,164 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * DemandGenerator - GRAVITY-MODEL OD MATRIX
+ * =============================================================
+ * Synthesises origin-destination demand instead of hand-written
+ * trips:
+ *   1. MASS     every node gets a mass: its degree (in + out
+ *               roads) or a population read from a CSV file
+ *   2. ZONES    the maxZones heaviest nodes become zones (keeps
+ *               the matrix at zones^2 pairs on large networks)
+ *   3. TIMES    free-flow zone-to-zone times (TravelTimeMatrix)
+ *   4. GRAVITY  T(i,j) = M(i) · M(j) · f(c(i,j)),  i != j
+ *               with deterrence f(c) = max(c, 1 min)^-gamma
+ *               (c in minutes), scaled so all pairs sum to the
+ *               requested trips per day
+ * The result is an ordinary OdMatrix (trips per hour, daily mean)
+ * for TrafficAssignment, CellTransmissionModel or TripStream.
+ * =============================================================
+ */
+public class DemandGenerator {
+
+    public static final int DEFAULT_MAX_ZONES = 256;
+    public static final double DEFAULT_GAMMA = 2.0;
+
+    // Odd multiplier and its inverse mod 2^32 (tie-break order)
+    private static final int SCRAMBLE = 0x9E3779B1;
+    private static final int UNSCRAMBLE = 0x0E8B2F51;
+
+    private final RoadNetwork net;
+    private double[] mass;
+    private int maxZones = DEFAULT_MAX_ZONES;
+    private double gamma = DEFAULT_GAMMA;
+    private int threads = 1;
+
+    private TravelTimeMatrix times;        // from the last build()
+
+    /** Starts with degree mass. */
+    public DemandGenerator(RoadNetwork net) {
+        this.net = net;
+        useDegreeMass();
+    }
+
+    // ---------------------------------------------------------
+    // Setup
+    // ---------------------------------------------------------
+
+    /** Mass = number of roads in and out of the node. */
+    public void useDegreeMass() {
+        mass = new double[net.nodeCount()];
+        for (int v = 0; v < mass.length; v++) {
+            mass[v] = net.inDegree(v) + net.outDegree(v);
+        }
+    }
+
+    /** One mass per node (e.g. population); negative means 0. */
+    public void setMass(double[] mass) {
+        if (mass.length != net.nodeCount()) {
+            throw new IllegalArgumentException("Need one mass per node");
+        }
+        this.mass = mass.clone();
+    }
+
+    /**
+     * Reads name,mass lines (e.g. intersection,population). Nodes
+     * not listed get mass 0; '#', header and unknown-node lines are
+     * skipped.
+     */
+    public void loadMassCsv(String file) throws IOException {
+        double[] m = new double[net.nodeCount()];
+        int found = 0;
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] p = line.split(",");
+                if (p.length < 2) continue;
+                int v = net.indexOf(p[0].trim());
+                if (v < 0) continue;
+                try {
+                    m[v] += Double.parseDouble(p[1].trim());
+                    found++;
+                } catch (NumberFormatException ex) {
+                    // header line
+                }
+            }
+        }
+        if (found == 0) throw new IOException("No node masses in " + file);
+        mass = m;
+    }
+
+    public void setMaxZones(int zones) { this.maxZones = Math.max(2, zones); }
+    public void setDeterrence(double gamma) { this.gamma = gamma; }
+    public void setThreads(int threads) { this.threads = Math.max(1, threads); }
+
+    /** Zone-to-zone times used by the last build(), or null. */
+    public TravelTimeMatrix getTravelTimes() { return times; }
+
+    // ---------------------------------------------------------
+    // Build
+    // ---------------------------------------------------------
+
+    /** Gravity OdMatrix whose pairs sum to tripsPerDay / 24 trips per hour. */
+    public OdMatrix build(double tripsPerDay) {
+        int[] zones = selectZones();
+        times = TravelTimeMatrix.freeFlow(net, zones, threads);
+
+        int z = zones.length;
+        double[] weight = new double[z * z];
+        double sum = 0.0;
+        for (int i = 0; i < z; i++) {
+            double mi = mass[zones[i]];
+            for (int j = 0; j < z; j++) {
+                float c = times.time(i, j);
+                if (i == j || Float.isInfinite(c)) continue;
+                double minutes = Math.max(1.0, c / 60.0);
+                double w = mi * mass[zones[j]] * Math.pow(minutes, -gamma);
+                weight[i * z + j] = w;
+                sum += w;
+            }
+        }
+
+        OdMatrix.Builder b = new OdMatrix.Builder(net.nodeCount());
+        if (sum > 0) {
+            double scale = tripsPerDay / 24.0 / sum;
+            for (int i = 0; i < z; i++) {
+                for (int j = 0; j < z; j++) {
+                    double w = weight[i * z + j];
+                    if (w > 0) b.add(zones[i], zones[j], w * scale);
+                }
+            }
+        }
+        return b.build();
+    }
+
+    /**
+     * The maxZones heaviest nodes with positive mass. Equal masses
+     * (e.g. degree on a grid) are broken by a scrambled index, so
+     * the zones spread over the network instead of clustering at
+     * low node numbers.
+     */
+    private int[] selectZones() {
+        int n = net.nodeCount();
+        long[] keyed = new long[n];
+        int c = 0;
+        for (int v = 0; v < n; v++) {
+            if (mass[v] > 0) {
+                // Positive floats order like their bits; inverted for descending
+                long order = ~Float.floatToIntBits((float) mass[v]) & 0xFFFFFFFFL;
+                keyed[c++] = (order << 32) | ((v * SCRAMBLE) & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(keyed, 0, c);
+        int[] zones = new int[Math.min(c, maxZones)];
+        for (int i = 0; i < zones.length; i++) zones[i] = (int) keyed[i] * UNSCRAMBLE;
+        Arrays.sort(zones);
+        return zones;
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * DijkstraEngine
+ * =============================================================
+ * Reusable single-source / single-target shortest paths over a
+ * RoadNetwork with a caller-supplied float[] edge weight array
+ * (e.g. the travel times written by CongestionModel).
+ *
+ * - One engine = one workspace; create one per thread
+ * - Only touched nodes are reset between runs, so repeated
+ *   queries on large graphs cost O(visited), not O(n)
+ * - run():        distances FROM a source, parentEdge = edge
+ *                 used to reach each node
+ * - runReverse(): distances TO a target over incoming edges,
+ *                 parentEdge = next edge toward the target
+ * - setClosedEdges(): optional bitset (bit e of word e >> 6) of
+ *                 roads both searches skip, so what-if closures
+ *                 need no copy of the network
+ * =============================================================
+ */
+public class DijkstraEngine {
+
+    private final RoadNetwork net;
+    private final double[] dist;
+    private final int[] parentEdge;
+    private final IndexedMinHeap heap;
+
+    private final int[] touched;
+    private int touchedCount = 0;
+    private final int[] settled;      // nodes in the order they were finalised
+    private int settledCount = 0;
+    private long[] closed = null;     // bit e set = edge e skipped
+
+    public DijkstraEngine(RoadNetwork net) {
+        this.net = net;
+        int n = net.nodeCount();
+        dist = new double[n];
+        parentEdge = new int[n];
+        heap = new IndexedMinHeap(n);
+        touched = new int[n];
+        settled = new int[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(parentEdge, -1);
+    }
+
+    // ---------------------------------------------------------
+    // Closures
+    // ---------------------------------------------------------
+
+    /**
+     * Edges whose bit is set in mask ((edgeCount + 63) / 64 words)
+     * are skipped by later runs; the mask is read live, not copied.
+     * null opens every edge again.
+     */
+    public void setClosedEdges(long[] mask) { this.closed = mask; }
+
+    // ---------------------------------------------------------
+    // Queries
+    // ---------------------------------------------------------
+
+    /** Forward search; stops early once target is settled (target < 0: all). */
+    public void run(int source, float[] weights, int target) {
+        reset();
+        relax(source, 0.0, -1);
+
+        final int[] outStart = net.outStart;
+        final int[] outEdges = net.outEdges;
+        final int[] edgeTo = net.edgeTo;
+        final long[] mask = closed;
+
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled[settledCount++] = u;
+            if (u == target) break;
+            double du = dist[u];
+            for (int k = outStart[u]; k < outStart[u + 1]; k++) {
+                int e = outEdges[k];
+                if (mask != null && (mask[e >>> 6] & (1L << e)) != 0) continue;
+                relax(edgeTo[e], du + weights[e], e);
+            }
+        }
+        heap.clear();
+    }
+
+    /** Reverse search: dist(v) = cost from v to target. */
+    public void runReverse(int target, float[] weights) {
+        reset();
+        relax(target, 0.0, -1);
+
+        final int[] inStart = net.inStart;
+        final int[] inEdges = net.inEdges;
+        final int[] edgeFrom = net.edgeFrom;
+        final long[] mask = closed;
+
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled[settledCount++] = u;
+            double du = dist[u];
+            for (int k = inStart[u]; k < inStart[u + 1]; k++) {
+                int e = inEdges[k];
+                if (mask != null && (mask[e >>> 6] & (1L << e)) != 0) continue;
+                relax(edgeFrom[e], du + weights[e], e);
+            }
+        }
+    }
+
+    private void relax(int v, double d, int viaEdge) {
+        if (d < dist[v]) {
+            if (dist[v] == Double.POSITIVE_INFINITY) touched[touchedCount++] = v;
+            dist[v] = d;
+            parentEdge[v] = viaEdge;
+            heap.insertOrDecrease(v, d);
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < touchedCount; i++) {
+            int v = touched[i];
+            dist[v] = Double.POSITIVE_INFINITY;
+            parentEdge[v] = -1;
+        }
+        touchedCount = 0;
+        settledCount = 0;
+    }
+
+    // ---------------------------------------------------------
+    // Results
+    // ---------------------------------------------------------
+
+    public double dist(int node) { return dist[node]; }
+    public int parentEdge(int node) { return parentEdge[node]; }
+
+    /** Nodes reached by the last run (settled or queued). */
+    public int touchedCount() { return touchedCount; }
+    public int touchedNode(int i) { return touched[i]; }
+
+    /**
+     * Settled nodes in non-decreasing distance order: walking them
+     * backwards visits every node before its shortest-path parent
+     * (used to push loads up the tree in one pass).
+     */
+    public int settledCount() { return settledCount; }
+    public int settledNode(int i) { return settled[i]; }
+
+    /**
+     * After run(source, ...): writes the edges source → target into out
+     * (in travel order) and returns their count, or -1 if unreachable.
+     */
+    public int extractPath(int target, int[] out) {
+        if (dist[target] == Double.POSITIVE_INFINITY) return -1;
+        int n = 0;
+        for (int v = target; parentEdge[v] >= 0; v = net.edgeFrom[parentEdge[v]]) n++;
+        int i = n;
+        for (int v = target; parentEdge[v] >= 0; v = net.edgeFrom[parentEdge[v]]) {
+            out[--i] = parentEdge[v];
+        }
+        return n;
+    }
+
+    /**
+     * After runReverse(target, ...): writes the edges from → target
+     * (in travel order) and returns their count, or -1 if unreachable.
+     */
+    public int extractReversePath(int from, int[] out) {
+        if (dist[from] == Double.POSITIVE_INFINITY) return -1;
+        int n = 0;
+        for (int v = from; parentEdge[v] >= 0; v = net.edgeTo[parentEdge[v]]) {
+            out[n++] = parentEdge[v];
+        }
+        return n;
+    }
+}
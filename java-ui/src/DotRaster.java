@@ -0,0 +1,83 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * DotRaster - BATCHED POINT SPLATTING
+ * =============================================================
+ * Screen-space int[] raster that many 2x2 dots are written into
+ * directly, then blitted with ONE drawImage. Used by
+ * UrbanFlowPanel for the vehicle positions of a
+ * SimulationSnapshot. The image is reused between frames; only
+ * a resize reallocates it.
+ * =============================================================
+ */
+final class DotRaster {
+
+    private final int color;
+
+    private BufferedImage raster;
+    private int[] pixels;
+    private int width;
+
+    // Visible screen rectangle for the current frame
+    private int cx0, cy0, cx1, cy1;
+
+    DotRaster(int argb) {
+        this.color = argb;
+    }
+
+    /**
+     * Clears the raster for a width x height frame clipped to g.
+     * Returns false when nothing can be visible.
+     */
+    boolean begin(Graphics2D g, int width, int height) {
+        if (width <= 0 || height <= 0) return false;
+
+        if (raster == null || raster.getWidth() != width || raster.getHeight() != height) {
+            raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) raster.getRaster().getDataBuffer()).getData();
+        } else {
+            Arrays.fill(pixels, 0);
+        }
+        this.width = width;
+
+        // 1px margin so dots on the border still show
+        Rectangle clip = g.getClipBounds();
+        cx0 = 0; cy0 = 0; cx1 = width - 2; cy1 = height - 2;
+        if (clip != null) {
+            cx0 = Math.max(cx0, clip.x);
+            cy0 = Math.max(cy0, clip.y);
+            cx1 = Math.min(cx1, clip.x + clip.width - 2);
+            cy1 = Math.min(cy1, clip.y + clip.height - 2);
+        }
+        return cx1 >= cx0 && cy1 >= cy0;
+    }
+
+    /** Plots a 2x2 dot at screen pixel (sx, sy) if it is visible. */
+    void dot(int sx, int sy) {
+        if (sx < cx0 || sy < cy0 || sx > cx1 || sy > cy1) return;
+        int i = sy * width + sx;
+        int[] px = pixels;
+        px[i] = color;
+        px[i + 1] = color;
+        px[i + width] = color;
+        px[i + width + 1] = color;
+    }
+
+    /** Plots n world-space points under the view transform. */
+    void dots(float[] xs, float[] ys, int n, double zoom, double tx, double ty) {
+        final float z = (float) zoom;
+        final float ox = (float) tx;
+        final float oy = (float) ty;
+        for (int i = 0; i < n; i++) {
+            dot((int) (xs[i] * z + ox), (int) (ys[i] * z + oy));
+        }
+    }
+
+    void end(Graphics2D g) {
+        g.drawImage(raster, 0, 0, null);
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * DynamicRerouter - EN-ROUTE REROUTING IN BATCHES
+ * =============================================================
+ * Every intervalTicks ticks of a TrafficSimulation:
+ *   1. SCAN     each vehicle's remaining cost (edges after the
+ *               one it is on, at current travel times) is compared
+ *               with the planned cost of the same edges, kept per
+ *               path entry (TrafficSimulation.pathPlanCost) when
+ *               the route was last planned; vehicles above
+ *               (1 + threshold) x plan are flagged
+ *   2. GROUP    flagged vehicles are sorted by destination node
+ *   3. SEARCH   ONE reverse Dijkstra per distinct destination
+ *               gives the best cost-to-destination from every node
+ *   4. SWAP     a vehicle whose decision node (end of its current
+ *               edge) now has a clearly cheaper way home gets that
+ *               path appended to the simulation's path pool
+ *
+ * Cost per batch is one search per DESTINATION plus the scan, not
+ * one search per vehicle. Vehicles stay on their current edge;
+ * only what comes after it changes.
+ * =============================================================
+ */
+public class DynamicRerouter {
+
+    private final TrafficSimulation sim;
+    private final RoadNetwork net;
+    private final DijkstraEngine router;
+    private final int[] pathBuf;
+
+    private int intervalTicks;
+    private double threshold;
+    private double minImprovement = 0.05;
+
+    // Flagged vehicles, packed as (destination << 32 | slot) for sorting
+    private long[] flagged = new long[64];
+
+    private long batches = 0;
+    private long checked = 0;
+    private long searches = 0;
+    private long rerouted = 0;
+
+    /**
+     * @param intervalTicks run a batch every this many ticks
+     * @param threshold     reroute candidates: remaining cost above
+     *                      (1 + threshold) x planned cost
+     */
+    public DynamicRerouter(TrafficSimulation sim, int intervalTicks, double threshold) {
+        this.sim = sim;
+        this.net = sim.getNetwork();
+        this.router = new DijkstraEngine(net);
+        this.pathBuf = new int[Math.max(1, net.nodeCount())];
+        this.intervalTicks = Math.max(1, intervalTicks);
+        this.threshold = threshold;
+    }
+
+    public DynamicRerouter(TrafficSimulation sim) {
+        this(sim, 30, 0.25);
+    }
+
+    public void setInterval(int ticks) { this.intervalTicks = Math.max(1, ticks); }
+    public void setThreshold(double threshold) { this.threshold = threshold; }
+
+    /** A new path must be at least this fraction cheaper (avoids flapping). */
+    public void setMinImprovement(double fraction) { this.minImprovement = fraction; }
+
+    public long getBatchCount() { return batches; }
+    public long getCheckedCount() { return checked; }
+    public long getSearchCount() { return searches; }
+    public long getReroutedCount() { return rerouted; }
+
+    // ---------------------------------------------------------
+    // Driving
+    // ---------------------------------------------------------
+
+    /** Call after every sim.update(); runs a batch every intervalTicks. */
+    public void afterTick() {
+        if (sim.getTick() % intervalTicks == 0) reroute();
+    }
+
+    /** Runs one batch now. Returns the number of vehicles rerouted. */
+    public int reroute() {
+        batches++;
+        final float[] tt = sim.edgeTravelTime;
+        int n = collectFlagged(tt);
+        if (n == 0) return 0;
+
+        Arrays.sort(flagged, 0, n);
+
+        int changed = 0;
+        int i = 0;
+        while (i < n) {
+            int dest = (int) (flagged[i] >>> 32);
+            router.runReverse(dest, tt);
+            searches++;
+            for (; i < n && (int) (flagged[i] >>> 32) == dest; i++) {
+                if (swap((int) flagged[i], tt)) changed++;
+            }
+        }
+        rerouted += changed;
+        return changed;
+    }
+
+    // ---------------------------------------------------------
+    // Steps
+    // ---------------------------------------------------------
+
+    private int collectFlagged(float[] tt) {
+        final int[] vehEdge = sim.vehEdge;
+        final int[] vehPathIdx = sim.vehPathIdx;
+        final int[] vehPathEnd = sim.vehPathEnd;
+        final float[] plan = sim.pathPlanCost;
+        final int[] pool = sim.pathPool;
+        final double limit = 1.0 + threshold;
+
+        int n = 0;
+        for (int v = 0; v < sim.count; v++) {
+            if (vehEdge[v] < 0) continue;
+            int from = vehPathIdx[v] + 1, end = vehPathEnd[v];
+            if (from >= end) continue;                     // on its last edge
+            checked++;
+
+            if (plan[from] < 0f) {
+                plan(from, end, tt);                       // first sighting
+                continue;
+            }
+            float cost = 0f;
+            for (int k = from; k < end; k++) cost += tt[pool[k]];
+
+            if (cost > plan[from] * limit) {
+                if (n == flagged.length) flagged = Arrays.copyOf(flagged, n * 2);
+                int dest = net.edgeTo[pool[end - 1]];
+                flagged[n++] = ((long) dest << 32) | v;
+            }
+        }
+        return n;
+    }
+
+    private boolean swap(int v, float[] tt) {
+        final int[] pool = sim.pathPool;
+        int from = sim.vehPathIdx[v] + 1, end = sim.vehPathEnd[v];
+        float current = 0f;
+        for (int k = from; k < end; k++) current += tt[pool[k]];
+
+        int decision = net.edgeTo[sim.vehEdge[v]];
+        double best = router.dist(decision);
+        if (best < current * (1.0 - minImprovement)) {
+            int len = router.extractReversePath(decision, pathBuf);
+            if (len > 0) {
+                sim.replaceRemainingPath(v, pathBuf, len);
+                plan(sim.vehPathIdx[v] + 1, sim.vehPathEnd[v], tt);
+                return true;
+            }
+        }
+        // no better way: accept today's costs as the new plan
+        plan(from, end, tt);
+        return false;
+    }
+
+    /** Plans pool entries [from, end) at tt: cost from each entry to the end. */
+    private void plan(int from, int end, float[] tt) {
+        final int[] pool = sim.pathPool;
+        final float[] plan = sim.pathPlanCost;
+        float cost = 0f;
+        for (int k = end - 1; k >= from; k--) {
+            cost += tt[pool[k]];
+            plan[k] = cost;
+        }
+    }
+}
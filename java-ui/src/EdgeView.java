@@ -8,7 +8,7 @@ public class EdgeView {
     private final double toll;       // Rs
     private String motorwayName;     // M2, M9, N5, etc.
 
-    private double congestion = 0.0; // 0.0 – 1.0
+    private volatile double congestion = 0.0; // 0.0 – 1.0, may be set by a simulation thread
 
     public EdgeView(String from, String to, double length,
                     String motorwayName, double speed, double toll)
@@ -0,0 +1,328 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * EventDrivenSimulation - DISCRETE-EVENT TRAFFIC MODE
+ * =============================================================
+ * Alternative to the fixed-dt TrafficSimulation tick. Nothing is
+ * done for a vehicle while it is mid-edge; instead every vehicle
+ * has at most ONE pending event in an IndexedMinHeap:
+ *   - its departure time (not yet on the network), or
+ *   - if it is at the FRONT of its edge, its exit time:
+ *         max(enterTime + travelTime(edge) / speedFactor, now)
+ *     which is the tick mode's exit rule  t * speedFactor >= tt
+ *     in continuous time
+ *
+ * Edges are FIFO queues (intrusive per-edge list, oldest first):
+ * vehicles behind the front wait for it and are scheduled only
+ * once they reach the front, with the travel time at that moment.
+ * When a vehicle enters or leaves an edge, that edge's flow and
+ * travel time change and only its front vehicle is rescheduled.
+ * A red TrafficSignals phase at the edge's end moves the exit
+ * to the start of the next green (and holds the queue behind it).
+ *
+ * Cost is O(log n) per edge transition, however many vehicles
+ * share the edge, instead of O(vehicles + edges) per tick, so
+ * long low-density horizons run far faster. Per-edge entries and
+ * vehicle-seconds are recorded for comparison with tick mode
+ * (which lets faster vehicles overtake, so times differ a little).
+ * =============================================================
+ */
+public class EventDrivenSimulation {
+
+    private static final int WAITING = -2;    // vehEdge before departure
+    private static final int ARRIVED = -1;    // vehEdge after the last edge
+
+    private final RoadNetwork net;
+    private CongestionModel model = new CongestionModel();
+    private TrafficSignals signals;               // null = no signals
+    private TrafficSimulation.ArrivalListener arrivalListener;
+
+    private double simTime = 0.0;
+    private long events = 0;
+
+    // --- Vehicles (structure of arrays, slots recycled) ---
+    private int slots = 0;
+    private int live = 0;
+    private int[] vehEdge = new int[0];
+    private int[] vehPathIdx = new int[0];
+    private int[] vehPathEnd = new int[0];
+    private double[] vehEnter = new double[0];     // entry time of current edge
+    private float[] vehSpeedFactor = new float[0];
+    private int[] vehTag = new int[0];
+    private double[] vehDepart = new double[0];
+    private int[] nextOnEdge = new int[0];         // intrusive per-edge queue, toward the tail
+    private int[] freeSlots = new int[0];
+    private int freeCount = 0;
+
+    // --- Paths (edge indices) ---
+    private int[] pathPool = new int[0];
+    private int poolSize = 0;
+    private int livePath = 0;                      // entries not yet passed
+
+    // --- Edges ---
+    private final int[] edgeHead;                  // front (oldest) vehicle on edge, -1 if none
+    private final int[] edgeTail;                  // newest vehicle on edge
+    private final int[] edgeFlow;
+    private final float[] edgeTravelTime;
+    private final long[] edgeEntries;
+    private final double[] edgeVehicleSeconds;
+
+    private final IndexedMinHeap queue = new IndexedMinHeap(0);
+
+    public EventDrivenSimulation(RoadNetwork net) {
+        this.net = net;
+        int m = net.edgeCount();
+        edgeHead = new int[m];
+        edgeTail = new int[m];
+        Arrays.fill(edgeHead, -1);
+        edgeFlow = new int[m];
+        edgeTravelTime = new float[m];
+        edgeEntries = new long[m];
+        edgeVehicleSeconds = new double[m];
+        model.computeTravelTimes(net, edgeFlow, edgeTravelTime);
+    }
+
+    public void setCongestionModel(CongestionModel model) {
+        this.model = model;
+        model.computeTravelTimes(net, edgeFlow, edgeTravelTime);
+        for (int e = 0; e < edgeHead.length; e++) reschedule(e);
+    }
+
+    public CongestionModel getCongestionModel() { return model; }
+
+    /** Same rule as TrafficSimulation.setSignals; reschedules everyone. */
+    public void setSignals(TrafficSignals signals) {
+        this.signals = signals;
+        for (int e = 0; e < edgeHead.length; e++) reschedule(e);
+    }
+
+    public void setArrivalListener(TrafficSimulation.ArrivalListener l) { this.arrivalListener = l; }
+
+    /**
+     * Back to an empty network at time 0, keeping every array's
+     * capacity, so one instance can run many scenarios without
+     * reallocating.
+     */
+    public void reset() {
+        queue.clear();
+        simTime = 0.0;
+        events = 0;
+        slots = 0;
+        live = 0;
+        freeCount = 0;
+        poolSize = 0;
+        livePath = 0;
+        Arrays.fill(edgeHead, -1);
+        Arrays.fill(edgeFlow, 0);
+        Arrays.fill(edgeEntries, 0);
+        Arrays.fill(edgeVehicleSeconds, 0.0);
+        model.computeTravelTimes(net, edgeFlow, edgeTravelTime);
+    }
+
+    // ---------------------------------------------------------
+    // Population
+    // ---------------------------------------------------------
+
+    /**
+     * Adds a vehicle that departs at departTime (clamped to now) and
+     * follows the given edge indices. Returns its slot, or -1 for an
+     * empty path.
+     */
+    public int addVehicle(int tag, int[] pathEdges, int length, float speedFactor,
+                          double departTime) {
+        if (length <= 0) return -1;
+        ensurePoolCapacity(poolSize + length);
+        System.arraycopy(pathEdges, 0, pathPool, poolSize, length);
+
+        int v = allocateSlot();
+        vehEdge[v] = WAITING;
+        vehPathIdx[v] = poolSize;
+        vehPathEnd[v] = poolSize + length;
+        vehSpeedFactor[v] = speedFactor;
+        vehTag[v] = tag;
+        vehDepart[v] = Math.max(departTime, simTime);
+        vehEnter[v] = vehDepart[v];
+        poolSize += length;
+        livePath += length;
+        live++;
+
+        queue.insertOrDecrease(v, vehDepart[v]);
+        return v;
+    }
+
+    public int addVehicle(int tag, int[] pathEdges, int length, float speedFactor) {
+        return addVehicle(tag, pathEdges, length, speedFactor, simTime);
+    }
+
+    // ---------------------------------------------------------
+    // Event loop
+    // ---------------------------------------------------------
+
+    /** Processes every event up to and including time t, then sets the clock to t. */
+    public void runUntil(double t) {
+        while (!queue.isEmpty() && queue.minKey() <= t) {
+            processNext();
+        }
+        simTime = Math.max(simTime, t);
+    }
+
+    /** Runs until every vehicle has arrived. */
+    public void runToCompletion() {
+        while (!queue.isEmpty()) processNext();
+    }
+
+    /** Time of the next pending event, or +inf if none. */
+    public double nextEventTime() {
+        return queue.isEmpty() ? Double.POSITIVE_INFINITY : queue.minKey();
+    }
+
+    private void processNext() {
+        double t = queue.minKey();
+        int v = queue.pollMin();
+        simTime = t;
+        events++;
+
+        int e = vehEdge[v];
+        if (e == WAITING) {
+            enterEdge(v, pathPool[vehPathIdx[v]], t);
+            return;
+        }
+
+        leaveEdge(v, e, t);
+
+        int next = vehPathIdx[v] + 1;
+        vehPathIdx[v] = next;
+        livePath--;
+        if (next < vehPathEnd[v]) {
+            enterEdge(v, pathPool[next], t);
+        } else {
+            arrive(v, t);
+        }
+    }
+
+    private void enterEdge(int v, int e, double t) {
+        vehEdge[v] = e;
+        vehEnter[v] = t;
+
+        nextOnEdge[v] = -1;
+        if (edgeHead[e] < 0) edgeHead[e] = v; else nextOnEdge[edgeTail[e]] = v;
+        edgeTail[e] = v;
+
+        edgeFlow[e]++;
+        edgeEntries[e]++;
+        reschedule(e);
+    }
+
+    // Only the front vehicle is ever scheduled, so v is edgeHead[e]
+    private void leaveEdge(int v, int e, double t) {
+        edgeHead[e] = nextOnEdge[v];
+
+        edgeFlow[e]--;
+        edgeVehicleSeconds[e] += t - vehEnter[v];
+        reschedule(e);
+    }
+
+    /**
+     * Travel time of e changed (or its front moved up): the front
+     * vehicle gets the exit time the tick rule would give it, or
+     * leaves now if that is already past. The rest of the queue
+     * waits behind it.
+     */
+    private void reschedule(int e) {
+        model.computeTravelTimes(net, edgeFlow, edgeTravelTime, e, e + 1);
+        int v = edgeHead[e];
+        if (v < 0) return;
+        double exit = Math.max(vehEnter[v] + edgeTravelTime[e] / vehSpeedFactor[v], simTime);
+        // a red signal ahead delays the exit to the next green
+        if (signals != null && vehPathIdx[v] + 1 < vehPathEnd[v]) {
+            exit = signals.nextGreen(net.edgeTo[e], exit);
+        }
+        queue.update(v, exit);
+    }
+
+    private void arrive(int v, double t) {
+        vehEdge[v] = ARRIVED;
+        live--;
+        if (arrivalListener != null) {
+            arrivalListener.onArrival(vehTag[v], vehDepart[v], t);
+        }
+        ensureFreeCapacity(freeCount + 1);
+        freeSlots[freeCount++] = v;
+
+        if (poolSize > 1024 && livePath < poolSize / 2) {
+            compactPool();
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Output
+    // ---------------------------------------------------------
+
+    public double getSimTime() { return simTime; }
+    public long getEventCount() { return events; }
+    public int getVehicleCount() { return live; }
+    public RoadNetwork getNetwork() { return net; }
+
+    public int getEdgeFlow(int e) { return edgeFlow[e]; }
+    public float getEdgeTravelTime(int e) { return edgeTravelTime[e]; }
+    public float[] getEdgeTravelTimes() { return edgeTravelTime; }
+
+    /** Vehicles that have entered edge e so far. */
+    public long getEdgeEntries(int e) { return edgeEntries[e]; }
+
+    /** Total time vehicles have spent on edge e (completed traversals). */
+    public double getEdgeVehicleSeconds(int e) { return edgeVehicleSeconds[e]; }
+
+    public double congestion(int e) {
+        float cap = net.edgeCapacity[e];
+        return cap > 0f ? edgeFlow[e] / cap : 1.0;
+    }
+
+    // ---------------------------------------------------------
+    // Storage
+    // ---------------------------------------------------------
+
+    private int allocateSlot() {
+        if (freeCount > 0) return freeSlots[--freeCount];
+        int v = slots++;
+        if (v >= vehEdge.length) {
+            int cap = vehEdge.length * 2 + 16;
+            vehEdge = Arrays.copyOf(vehEdge, cap);
+            vehPathIdx = Arrays.copyOf(vehPathIdx, cap);
+            vehPathEnd = Arrays.copyOf(vehPathEnd, cap);
+            vehEnter = Arrays.copyOf(vehEnter, cap);
+            vehSpeedFactor = Arrays.copyOf(vehSpeedFactor, cap);
+            vehTag = Arrays.copyOf(vehTag, cap);
+            vehDepart = Arrays.copyOf(vehDepart, cap);
+            nextOnEdge = Arrays.copyOf(nextOnEdge, cap);
+            queue.ensureCapacity(cap);
+        }
+        return v;
+    }
+
+    private void compactPool() {
+        int[] fresh = new int[Math.max(64, livePath * 2)];
+        int w = 0;
+        for (int v = 0; v < slots; v++) {
+            if (vehEdge[v] == ARRIVED) continue;
+            int len = vehPathEnd[v] - vehPathIdx[v];
+            System.arraycopy(pathPool, vehPathIdx[v], fresh, w, len);
+            vehPathIdx[v] = w;
+            vehPathEnd[v] = w + len;
+            w += len;
+        }
+        pathPool = fresh;
+        poolSize = w;
+    }
+
+    private void ensurePoolCapacity(int needed) {
+        if (needed <= pathPool.length) return;
+        pathPool = Arrays.copyOf(pathPool, Math.max(needed, pathPool.length * 2 + 64));
+    }
+
+    private void ensureFreeCapacity(int needed) {
+        if (needed <= freeSlots.length) return;
+        freeSlots = Arrays.copyOf(freeSlots, Math.max(needed, freeSlots.length * 2 + 16));
+    }
+}
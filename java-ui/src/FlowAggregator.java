@@ -0,0 +1,256 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * FlowAggregator - EDGE FLOWS -> NODE / GRID HEAT
+ * =============================================================
+ * Keeps per-node and per-grid-cell sums of edge flow up to date
+ * INCREMENTALLY: only an edge whose flow changed since the last
+ * update touches anything, and it touches exactly three entries
+ * (its two end nodes and the grid cell of its midpoint) with the
+ * flow DELTA. Intensity = flow sum / capacity sum of the same
+ * edges, i.e. capacity-weighted congestion.
+ *
+ * Time smoothing is an exponential moving average evaluated
+ * LAZILY and exactly: between two changes an entry's raw value r
+ * is constant, so its smoothed value follows
+ *     s(t) = r + (s(t0) - r) * exp(-(t - t0) / tau)
+ * Each entry stores s(t0) and t0; nothing is decayed per tick.
+ * update() on a quiet network therefore costs one flat compare
+ * per edge. Reading the heat is separate: nodeIntensities /
+ * cellIntensities evaluate every entry (one pass each), so a
+ * caller pays for them only as often as it reads them.
+ * =============================================================
+ */
+public final class FlowAggregator {
+
+    /** Default grid resolution: cells along the longer side of the network. */
+    public static final int DEFAULT_CELLS_ACROSS = 64;
+    public static final double DEFAULT_HALF_LIFE = 60.0;   // seconds
+
+    /** Beyond this many time constants s(t) is taken as r. */
+    private static final double SETTLED = 20.0;
+
+    private final RoadNetwork net;
+    private final Grid grid;
+
+    // --- Edges ---
+    private final float[] lastFlow;      // value seen at the last update
+    private final int[] edgeCell;        // grid cell of the edge midpoint
+
+    // --- Nodes / cells: raw sum, smoothed value at stamp, stamp ---
+    private final float[] nodeCapacity;
+    private final double[] nodeRaw;
+    private final double[] nodeSmooth;
+    private final double[] nodeStamp;
+
+    private final float[] cellCapacity;
+    private final double[] cellRaw;
+    private final double[] cellSmooth;
+    private final double[] cellStamp;
+
+    private double tau;                  // seconds, 0 = no smoothing
+    private long changedEdges = 0;
+
+    public FlowAggregator(RoadNetwork net, double cellSize, double halfLifeSeconds) {
+        this.net = net;
+        this.grid = Grid.covering(net, cellSize);
+        setHalfLife(halfLifeSeconds);
+
+        int m = net.edgeCount();
+        int n = net.nodeCount();
+        int cells = grid.cellCount();
+
+        lastFlow = new float[m];
+        edgeCell = new int[m];
+        nodeCapacity = new float[n];
+        nodeRaw = new double[n];
+        nodeSmooth = new double[n];
+        nodeStamp = new double[n];
+        cellCapacity = new float[cells];
+        cellRaw = new double[cells];
+        cellSmooth = new double[cells];
+        cellStamp = new double[cells];
+
+        for (int e = 0; e < m; e++) {
+            int a = net.edgeFrom[e], b = net.edgeTo[e];
+            float cap = net.edgeCapacity[e];
+            nodeCapacity[a] += cap;
+            nodeCapacity[b] += cap;
+            int c = grid.cellOf((net.nodeX[a] + net.nodeX[b]) * 0.5f,
+                                (net.nodeY[a] + net.nodeY[b]) * 0.5f);
+            edgeCell[e] = c;
+            cellCapacity[c] += cap;
+        }
+    }
+
+    /** Grid of DEFAULT_CELLS_ACROSS cells, DEFAULT_HALF_LIFE smoothing. */
+    public FlowAggregator(RoadNetwork net) {
+        this(net, 0.0, DEFAULT_HALF_LIFE);
+    }
+
+    /** Half-life of the smoothing in simulated seconds; <= 0 follows flows exactly. */
+    public void setHalfLife(double seconds) {
+        this.tau = seconds > 0 ? seconds / Math.log(2.0) : 0.0;
+    }
+
+    public RoadNetwork getNetwork() { return net; }
+    public Grid getGrid() { return grid; }
+
+    /** Edges whose flow changed, summed over all updates. */
+    public long getChangedEdgeCount() { return changedEdges; }
+
+    // ---------------------------------------------------------
+    // Updates
+    // ---------------------------------------------------------
+
+    /**
+     * Takes a whole flow array (e.g. TrafficSimulation.edgeFlow) at
+     * simulated time t. Unchanged edges cost one compare.
+     * Returns the number of edges that changed.
+     */
+    public int update(int[] flow, double t) {
+        final float[] last = this.lastFlow;
+        int changed = 0;
+        for (int e = 0; e < last.length; e++) {
+            float f = flow[e];
+            if (f != last[e]) {
+                apply(e, f, t);
+                changed++;
+            }
+        }
+        changedEdges += changed;
+        return changed;
+    }
+
+    /** One edge, for sources that already know what changed. */
+    public void setEdgeFlow(int e, float flow, double t) {
+        if (flow != lastFlow[e]) {
+            apply(e, flow, t);
+            changedEdges++;
+        }
+    }
+
+    /** Forgets all flows and history (e.g. after the simulation was reset). */
+    public void reset() {
+        Arrays.fill(lastFlow, 0f);
+        Arrays.fill(nodeRaw, 0.0);
+        Arrays.fill(nodeSmooth, 0.0);
+        Arrays.fill(nodeStamp, 0.0);
+        Arrays.fill(cellRaw, 0.0);
+        Arrays.fill(cellSmooth, 0.0);
+        Arrays.fill(cellStamp, 0.0);
+        changedEdges = 0;
+    }
+
+    private void apply(int e, float flow, double t) {
+        double delta = flow - lastFlow[e];
+        lastFlow[e] = flow;
+
+        int a = net.edgeFrom[e], b = net.edgeTo[e];
+        nodeSmooth[a] = smoothed(nodeRaw[a], nodeSmooth[a], nodeStamp[a], t);
+        nodeStamp[a] = t;
+        nodeRaw[a] += delta;
+        nodeSmooth[b] = smoothed(nodeRaw[b], nodeSmooth[b], nodeStamp[b], t);
+        nodeStamp[b] = t;
+        nodeRaw[b] += delta;
+
+        int c = edgeCell[e];
+        cellSmooth[c] = smoothed(cellRaw[c], cellSmooth[c], cellStamp[c], t);
+        cellStamp[c] = t;
+        cellRaw[c] += delta;
+    }
+
+    private double smoothed(double raw, double smooth, double stamp, double t) {
+        if (tau <= 0 || raw == smooth) return raw;
+        double age = (t - stamp) / tau;
+        if (age <= 0) return smooth;
+        if (age > SETTLED) return raw;
+        return raw + (smooth - raw) * Math.exp(-age);
+    }
+
+    // ---------------------------------------------------------
+    // Queries (smoothed, at simulated time t)
+    // ---------------------------------------------------------
+
+    /** Capacity-weighted congestion of node n's incident edges. */
+    public double nodeIntensity(int n, double t) {
+        float cap = nodeCapacity[n];
+        if (cap <= 0f) return 0.0;
+        return smoothed(nodeRaw[n], nodeSmooth[n], nodeStamp[n], t) / cap;
+    }
+
+    /** Capacity-weighted congestion of the edges whose midpoint is in cell c. */
+    public double cellIntensity(int c, double t) {
+        float cap = cellCapacity[c];
+        if (cap <= 0f) return 0.0;
+        return smoothed(cellRaw[c], cellSmooth[c], cellStamp[c], t) / cap;
+    }
+
+    /** nodeIntensity for every node, capped at 1. */
+    public void nodeIntensities(float[] out, double t) {
+        for (int n = 0; n < nodeCapacity.length; n++) {
+            out[n] = (float) Math.min(1.0, nodeIntensity(n, t));
+        }
+    }
+
+    /** cellIntensity for every cell, capped at 1 (cells without roads are 0). */
+    public void cellIntensities(float[] out, double t) {
+        for (int c = 0; c < cellCapacity.length; c++) {
+            out[c] = (float) Math.min(1.0, cellIntensity(c, t));
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Grid
+    // ---------------------------------------------------------
+
+    /** Square cells over the network's bounding box (immutable). */
+    public static final class Grid {
+        public final double originX, originY, cellSize;
+        public final int columns, rows;
+
+        private Grid(double originX, double originY, double cellSize, int columns, int rows) {
+            this.originX = originX;
+            this.originY = originY;
+            this.cellSize = cellSize;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        /** cellSize <= 0 picks DEFAULT_CELLS_ACROSS cells along the longer side. */
+        static Grid covering(RoadNetwork net, double cellSize) {
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < net.nodeCount(); i++) {
+                minX = Math.min(minX, net.nodeX[i]);
+                maxX = Math.max(maxX, net.nodeX[i]);
+                minY = Math.min(minY, net.nodeY[i]);
+                maxY = Math.max(maxY, net.nodeY[i]);
+            }
+            if (net.nodeCount() == 0) {
+                minX = minY = maxX = maxY = 0f;
+            }
+            double span = Math.max(maxX - minX, maxY - minY);
+            if (!(cellSize > 0)) {
+                cellSize = span > 0 ? span / DEFAULT_CELLS_ACROSS : 1.0;
+            }
+            int cols = Math.max(1, (int) Math.floor((maxX - minX) / cellSize) + 1);
+            int rows = Math.max(1, (int) Math.floor((maxY - minY) / cellSize) + 1);
+            return new Grid(minX, minY, cellSize, cols, rows);
+        }
+
+        public int cellCount() { return columns * rows; }
+
+        public int cellOf(double x, double y) {
+            int cx = (int) Math.floor((x - originX) / cellSize);
+            int cy = (int) Math.floor((y - originY) / cellSize);
+            cx = Math.max(0, Math.min(columns - 1, cx));
+            cy = Math.max(0, Math.min(rows - 1, cy));
+            return cy * columns + cx;
+        }
+
+        public double centerX(int c) { return originX + (c % columns + 0.5) * cellSize; }
+        public double centerY(int c) { return originY + (c / columns + 0.5) * cellSize; }
+    }
+}
@@ -0,0 +1,617 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * =============================================================
+ * HeadlessSimulation - BATCH RUN WITHOUT MainUI
+ * =============================================================
+ * Loads the network and demand from the data folder and ticks
+ * the simulator as fast as possible (no pacing, no Swing):
+ *
+ *   java HeadlessSimulation --data java-ui/data --duration 86400 \
+ *        --interval 300 --threads 4 --out day.bin
+ *
+ * Input
+ *   intersections.csv, roads.csv    network (RoadNetwork.loadCsv)
+ *   vehicles.csv                    id,source,destination
+ *   vehicle_paths.csv               id;NODE,NODE,...  (optional
+ *                                   explicit route for that id)
+ *   --trips N                       extra seeded random trips,
+ *                                   departing across the horizon
+ *   --signals csv|junctions|none    signals from the hasSignal
+ *                                   column of intersections.csv
+ *                                   (junctions, with a warning,
+ *                                   if it has none), or at every
+ *                                   3+-way junction
+ *   --reroute N                     DynamicRerouter batch every N
+ *                                   ticks (0 = fixed paths)
+ *   --gravity TRIPS_PER_DAY         gravity-model demand
+ *                                   (DemandGenerator), streamed in
+ *                                   by TripStream during the run
+ *   --mass degree|FILE              gravity masses: node degree or
+ *                                   name,population lines
+ *   --zones N                       heaviest N nodes become zones
+ *   --model vehicles|ctm            individual vehicles (default)
+ *                                   or the CellTransmissionModel
+ * Vehicles without an explicit path take the free-flow shortest
+ * path. Entries naming unknown intersections are skipped.
+ *
+ * --model ctm runs the same demand as aggregate flow with queue
+ * spillback: the gravity matrix as is, or the CSV and --trips
+ * demand spread evenly over --duration as trips per hour; turn
+ * fractions come from its Frank-Wolfe equilibrium. The output has
+ * the same layout, with vehicles on the edge as its flow and
+ * CellTransmissionModel.travelTime as its travel time. Signals,
+ * rerouting, recording and checkpoints apply to vehicles only.
+ * Cells are one tick of free-flow travel long, so long CTM runs
+ * want a coarser --dt (e.g. 10).
+ *
+ * Output (binary, big-endian DataOutputStream)
+ *   header:  int magic 'UFES', int version, int edgeCount,
+ *            float dt, float intervalSeconds (dt <= interval)
+ *   record:  int interval, double simTimeEnd, int vehicles,
+ *            then per edge: float meanFlow, float maxFlow,
+ *            float meanTravelTimeSeconds
+ * plus <out>.edges.csv mapping edge index → from,to.
+ *
+ * --record FILE also writes every tick as a SimulationRecorder log
+ * (replayable with SimulationReplay on the CSV network; ReplayBar
+ * replays the panel's own network, recorded with its Record button).
+ *
+ * --checkpoint FILE saves a SimulationCheckpoint every
+ * --checkpoint-every seconds (default 3600), written in the
+ * background; --resume FILE continues a run from one. Trips from
+ * the CSV files and --trips resume exactly; a --gravity stream
+ * restarts its sampling at the checkpoint time. Interval numbers
+ * continue from the checkpoint time.
+ * =============================================================
+ */
+public class HeadlessSimulation {
+
+    private static final int MAGIC = 0x55464553;   // "UFES"
+    private static final int VERSION = 1;
+
+    private String dataDir = "java-ui/data";
+    private double duration = 86_400;
+    private double dt = 1.0;
+    private double interval = 300;
+    private int threads = 1;
+    private int extraTrips = 0;
+    private long seed = 1133;
+    private String signalMode = "csv";
+    private String recordPath = null;
+    private int rerouteTicks = 0;
+    private double gravityTrips = 0;
+    private String massSource = "degree";
+    private int zones = DemandGenerator.DEFAULT_MAX_ZONES;
+    private String outPath = "edge_stats.bin";
+    private String checkpointPath = null;
+    private double checkpointEvery = 3600;
+    private String resumePath = null;
+    private String model = "vehicles";
+
+    // --- Demand, sorted by departure before the run ---
+    private int tripCount = 0;
+    private double[] tripDepart = new double[0];
+    private int[] tripTag = new int[0];
+    private float[] tripSpeed = new float[0];
+    private int[] tripStart = new int[0];          // into tripEdges
+    private int[] tripLength = new int[0];
+    private int[] tripEdges = new int[0];
+    private int tripEdgeCount = 0;
+    private int skipped = 0;
+    private int[] pathScratch = new int[0];
+
+    public static void main(String[] args) throws IOException {
+        HeadlessSimulation run = new HeadlessSimulation();
+        run.parseArgs(args);
+        run.run();
+    }
+
+    // ---------------------------------------------------------
+    // Argument parsing
+    // ---------------------------------------------------------
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--data":     dataDir = v; break;
+                case "--duration": duration = Double.parseDouble(v); break;
+                case "--dt":       dt = Double.parseDouble(v); break;
+                case "--interval": interval = Double.parseDouble(v); break;
+                case "--threads":  threads = Integer.parseInt(v); break;
+                case "--trips":    extraTrips = Integer.parseInt(v); break;
+                case "--seed":     seed = Long.parseLong(v); break;
+                case "--signals":  signalMode = v; break;
+                case "--record":   recordPath = v; break;
+                case "--reroute":  rerouteTicks = Integer.parseInt(v); break;
+                case "--gravity":  gravityTrips = Double.parseDouble(v); break;
+                case "--mass":     massSource = v; break;
+                case "--zones":    zones = Integer.parseInt(v); break;
+                case "--out":      outPath = v; break;
+                case "--checkpoint":       checkpointPath = v; break;
+                case "--checkpoint-every": checkpointEvery = Double.parseDouble(v); break;
+                case "--resume":           resumePath = v; break;
+                case "--model":            model = v; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Run
+    // ---------------------------------------------------------
+
+    private void run() throws IOException {
+        // One record per interval needs at most one boundary per tick
+        if (!(dt > 0) || !(interval >= dt)) {
+            throw new IllegalArgumentException("Need 0 < --dt <= --interval (got dt " + dt
+                    + ", interval " + interval + ")");
+        }
+        RoadNetwork net = RoadNetwork.loadCsv(dataDir + "/intersections.csv",
+                dataDir + "/roads.csv");
+        loadDemand(net);
+        sortTrips();
+
+        System.out.printf(Locale.ROOT, "Network: %d intersections, %d roads%n", net.nodeCount(), net.edgeCount());
+        System.out.printf(Locale.ROOT, "Demand:  %d trips (%d skipped: unknown node or no route)%n", tripCount, skipped);
+        switch (model) {
+            case "vehicles":
+                break;
+            case "ctm":
+                runCellTransmission(net);
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown model " + model);
+        }
+        TripStream stream = gravityTrips > 0 ? new TripStream(net, gravityDemand(net), seed) : null;
+
+        TrafficSimulation sim = threads > 1
+                ? new ParallelTrafficSimulation(net, dt, seed, threads)
+                : new TrafficSimulation(net, dt, seed);
+        TrafficSignals signals = loadSignals(net);
+        if (signals.signalCount() > 0) sim.setSignals(signals);
+        if (resumePath != null) {
+            SimulationCheckpoint cp = SimulationCheckpoint.read(resumePath);
+            cp.restoreInto(sim);
+            if (stream != null) stream.setStartTime(sim.getSimTime());
+            System.out.printf(Locale.ROOT, "Resumed at %.0f s (tick %d, %d vehicles) from %s%n",
+                    sim.getSimTime(), sim.getTick(), sim.getVehicleCount(), resumePath);
+        }
+        DynamicRerouter rerouter = rerouteTicks > 0
+                ? new DynamicRerouter(sim, rerouteTicks, 0.25) : null;
+        long[] arrivals = new long[1];
+        double[] tripSeconds = new double[1];
+        sim.setArrivalListener((tag, depart, arrive) -> {
+            arrivals[0]++;
+            tripSeconds[0] += arrive - depart;
+        });
+
+        int m = net.edgeCount();
+        double[] flowSum = new double[m];
+        int[] flowMax = new int[m];
+        double[] timeSum = new double[m];
+
+        writeEdgeIndex(net);
+
+        SimulationRecorder recorder = recordPath != null
+                ? new SimulationRecorder(net, recordPath) : null;
+        SimulationSnapshot frame = new SimulationSnapshot();
+
+        ExecutorService checkpointWriter = checkpointPath == null ? null
+                : Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "simulation-checkpoint");
+                    t.setDaemon(true);
+                    return t;
+                });
+        CompletableFuture<Void> pendingCheckpoint = null;
+        int checkpoints = 0;
+
+        long wall0 = System.nanoTime();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(outPath), 1 << 16))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(m);
+            out.writeFloat((float) dt);
+            out.writeFloat((float) interval);
+
+            // After a resume, trips up to the checkpoint time are already driving
+            int nextTrip = 0;
+            while (nextTrip < tripCount && tripDepart[nextTrip] <= sim.getSimTime()) nextTrip++;
+            // Intervals stay on the 0, interval, 2·interval, ... grid, so a
+            // resumed run continues the numbering (its first one may be partial)
+            int ticksInInterval = 0;
+            int intervalIndex = (int) Math.floor(sim.getSimTime() / interval + 1e-9);
+            double intervalEnd = (intervalIndex + 1) * interval;
+            double nextCheckpoint = sim.getSimTime() + checkpointEvery;
+
+            while (sim.getSimTime() < duration) {
+                // departures due by the start of this tick
+                while (nextTrip < tripCount && tripDepart[nextTrip] <= sim.getSimTime()) {
+                    sim.addVehicle(tripTag[nextTrip], tripPath(nextTrip),
+                            tripLength[nextTrip], tripSpeed[nextTrip]);
+                    nextTrip++;
+                }
+                if (stream != null) stream.injectUntil(sim, sim.getSimTime());
+
+                // Between departures and the tick, so a resume skips exactly the trips added so far
+                if (checkpointWriter != null && sim.getSimTime() >= nextCheckpoint) {
+                    if (pendingCheckpoint != null) pendingCheckpoint.join();
+                    pendingCheckpoint = SimulationCheckpoint.capture(sim)
+                            .writeAsync(checkpointPath, checkpointWriter);
+                    nextCheckpoint += checkpointEvery;
+                    checkpoints++;
+                }
+
+                sim.update();
+                if (rerouter != null) rerouter.afterTick();
+                if (recorder != null) {
+                    frame.capture(sim, sim.getTick());
+                    recorder.record(frame);
+                }
+
+                final int[] flow = sim.edgeFlow;
+                final float[] tt = sim.edgeTravelTime;
+                for (int e = 0; e < m; e++) {
+                    int f = flow[e];
+                    flowSum[e] += f;
+                    if (f > flowMax[e]) flowMax[e] = f;
+                    timeSum[e] += tt[e];
+                }
+                ticksInInterval++;
+
+                if (sim.getSimTime() >= intervalEnd || sim.getSimTime() >= duration) {
+                    writeInterval(out, intervalIndex++, sim, ticksInInterval,
+                            flowSum, flowMax, timeSum);
+                    ticksInInterval = 0;
+                    intervalEnd += interval;
+                }
+            }
+            if (pendingCheckpoint != null) pendingCheckpoint.join();
+        } finally {
+            if (checkpointWriter != null) checkpointWriter.shutdown();
+            if (recorder != null) recorder.close();
+            if (sim instanceof ParallelTrafficSimulation) {
+                ((ParallelTrafficSimulation) sim).close();
+            }
+        }
+        double wall = (System.nanoTime() - wall0) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Simulated %.0f s in %.2f s wall: %.0f sim-s per wall-s%n",
+                sim.getSimTime(), wall, sim.getSimTime() / Math.max(wall, 1e-9));
+        System.out.printf(Locale.ROOT, "Ticks: %d, arrived: %d, still driving: %d%n",
+                sim.getTick(), arrivals[0], sim.getVehicleCount());
+        System.out.printf(Locale.ROOT, "Mean trip: %.1f s%n", tripSeconds[0] / Math.max(1, arrivals[0]));
+        if (stream != null) {
+            System.out.printf(Locale.ROOT, "Gravity trips: %d streamed, %d unroutable, %d route searches%n",
+                    stream.getEmittedCount(), stream.getUnroutableCount(),
+                    stream.getRouteSearchCount());
+        }
+        if (rerouter != null) {
+            System.out.printf(Locale.ROOT, "Rerouting: %d batches, %d searches, %d vehicles rerouted%n",
+                    rerouter.getBatchCount(), rerouter.getSearchCount(), rerouter.getReroutedCount());
+        }
+        System.out.println("Edge statistics written to " + outPath);
+        if (checkpointPath != null) {
+            System.out.printf(Locale.ROOT, "Checkpoints: %d written to %s%n", checkpoints, checkpointPath);
+        }
+        if (recorder != null) {
+            System.out.printf(Locale.ROOT, "Recorded %d frames to %s%n", recorder.getFrameCount(), recordPath);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Cell transmission run (--model ctm)
+    // ---------------------------------------------------------
+
+    private void runCellTransmission(RoadNetwork net) throws IOException {
+        if (recordPath != null || checkpointPath != null || resumePath != null || rerouteTicks > 0) {
+            throw new IllegalArgumentException(
+                    "--record, --checkpoint, --resume and --reroute need --model vehicles");
+        }
+        OdMatrix od = gravityTrips > 0 ? gravityDemand(net) : tripDemand(net);
+        CellTransmissionModel ctm = new CellTransmissionModel(net, dt);
+        try (TrafficAssignment ta = new TrafficAssignment(net, threads)) {
+            TrafficAssignment.Result eq = ta.solve(od);
+            ctm.setDemand(od, eq);
+            System.out.printf(Locale.ROOT, "CTM:     %d cells, %.0f trips/h (%.0f unassigned: no route)%n",
+                    ctm.cellCount(), od.totalTrips(), eq.unassignedTrips());
+        }
+
+        int m = net.edgeCount();
+        double[] vehSum = new double[m];
+        double[] vehMax = new double[m];
+        double[] timeSum = new double[m];
+        writeEdgeIndex(net);
+
+        long wall0 = System.nanoTime();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(outPath), 1 << 16))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(m);
+            out.writeFloat((float) dt);
+            out.writeFloat((float) interval);
+
+            int ticksInInterval = 0;
+            int intervalIndex = 0;
+            double intervalEnd = interval;
+            while (ctm.getSimTime() < duration) {
+                ctm.step();
+                for (int e = 0; e < m; e++) {
+                    double veh = ctm.edgeVehicles(e);
+                    vehSum[e] += veh;
+                    if (veh > vehMax[e]) vehMax[e] = veh;
+                    timeSum[e] += ctm.travelTime(e);
+                }
+                ticksInInterval++;
+
+                if (ctm.getSimTime() >= intervalEnd || ctm.getSimTime() >= duration) {
+                    out.writeInt(intervalIndex++);
+                    out.writeDouble(ctm.getSimTime());
+                    out.writeInt((int) Math.round(ctm.totalVehicles()));
+                    for (int e = 0; e < m; e++) {
+                        out.writeFloat((float) (vehSum[e] / ticksInInterval));
+                        out.writeFloat((float) vehMax[e]);
+                        out.writeFloat((float) (timeSum[e] / ticksInInterval));
+                    }
+                    Arrays.fill(vehSum, 0);
+                    Arrays.fill(vehMax, 0);
+                    Arrays.fill(timeSum, 0);
+                    ticksInInterval = 0;
+                    intervalEnd += interval;
+                }
+            }
+        }
+        double wall = (System.nanoTime() - wall0) / 1e9;
+
+        int queued = 0;
+        for (int e = 0; e < m; e++) if (ctm.queuedFraction(e) > 0.5) queued++;
+        System.out.printf(Locale.ROOT, "Simulated %.0f s in %.2f s wall: %.0f sim-s per wall-s%n",
+                ctm.getSimTime(), wall, ctm.getSimTime() / Math.max(wall, 1e-9));
+        System.out.printf(Locale.ROOT, "In network: %.0f, waiting at origins: %.0f, exited: %.0f, queued roads: %d%n",
+                ctm.totalVehicles(), ctm.totalSourceQueue(), ctm.getExited(), queued);
+        System.out.println("Edge statistics written to " + outPath);
+    }
+
+    private TrafficSignals loadSignals(RoadNetwork net) throws IOException {
+        TrafficSignals signals;
+        switch (signalMode) {
+            case "csv":
+                signals = csvSignals(net);
+                break;
+            case "junctions":
+                signals = junctionSignals(net);
+                break;
+            case "none":
+                signals = new TrafficSignals(net);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown signal mode " + signalMode);
+        }
+        System.out.printf(Locale.ROOT, "Signals: %d%n", signals.signalCount());
+        return signals;
+    }
+
+    // data/intersections.csv ships without the signal column: warn
+    // and use junction signals rather than silently running with none
+    private TrafficSignals csvSignals(RoadNetwork net) throws IOException {
+        String file = dataDir + "/intersections.csv";
+        if (TrafficSignals.hasSignalColumn(file)) return TrafficSignals.loadCsv(net, file);
+        System.out.println("Warning: " + file + " has no signal column; using signals at 3+-way junctions");
+        return junctionSignals(net);
+    }
+
+    private TrafficSignals junctionSignals(RoadNetwork net) {
+        return TrafficSignals.atJunctions(net, TrafficSignals.DEFAULT_CYCLE,
+                TrafficSignals.DEFAULT_GREEN_RATIO, seed);
+    }
+
+    private void writeInterval(DataOutputStream out, int index, TrafficSimulation sim,
+                               int ticks, double[] flowSum, int[] flowMax,
+                               double[] timeSum) throws IOException {
+        out.writeInt(index);
+        out.writeDouble(sim.getSimTime());
+        out.writeInt(sim.getVehicleCount());
+        for (int e = 0; e < flowSum.length; e++) {
+            out.writeFloat((float) (flowSum[e] / ticks));
+            out.writeFloat(flowMax[e]);
+            out.writeFloat((float) (timeSum[e] / ticks));
+        }
+        Arrays.fill(flowSum, 0);
+        Arrays.fill(flowMax, 0);
+        Arrays.fill(timeSum, 0);
+    }
+
+    private void writeEdgeIndex(RoadNetwork net) throws IOException {
+        try (PrintWriter w = new PrintWriter(new FileWriter(outPath + ".edges.csv"))) {
+            w.println("edge,from,to,capacity,free_flow_s");
+            for (int e = 0; e < net.edgeCount(); e++) {
+                w.println(e + "," + net.nodeName(net.edgeFrom[e]) + ","
+                        + net.nodeName(net.edgeTo[e]) + "," + net.edgeCapacity[e]
+                        + "," + net.edgeFreeFlowTime[e]);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Demand
+    // ---------------------------------------------------------
+
+    private void loadDemand(RoadNetwork net) throws IOException {
+        Map<String, String[]> explicitPaths = readPaths(dataDir + "/vehicle_paths.csv");
+        DijkstraEngine router = new DijkstraEngine(net);
+        int[] buf = new int[Math.max(1, net.nodeCount())];
+
+        try (BufferedReader in = new BufferedReader(new FileReader(dataDir + "/vehicles.csv"))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.contains("id")) continue;
+                String[] p = line.split(",");
+                if (p.length < 3) continue;
+
+                String id = p[0].trim();
+                int len = explicitPaths.containsKey(id)
+                        ? nodesToEdges(net, explicitPaths.get(id), buf)
+                        : route(net, router, net.indexOf(p[1].trim()), net.indexOf(p[2].trim()), buf);
+                addTrip(parseTag(id), 0.0, 1f, buf, len);
+            }
+        }
+
+        Random rnd = new Random(seed);
+        for (int i = 0; i < extraTrips && net.nodeCount() > 1; i++) {
+            int a = rnd.nextInt(net.nodeCount());
+            int b = rnd.nextInt(net.nodeCount());
+            int len = a == b ? -1 : route(net, router, a, b, buf);
+            addTrip(1_000_000 + i, rnd.nextDouble() * duration,
+                    (float) (0.8 + 0.4 * rnd.nextDouble()), buf, len);
+        }
+    }
+
+    private OdMatrix gravityDemand(RoadNetwork net) throws IOException {
+        long t0 = System.nanoTime();
+        DemandGenerator gen = new DemandGenerator(net);
+        if (!massSource.equals("degree")) gen.loadMassCsv(massSource);
+        gen.setMaxZones(zones);
+        gen.setThreads(threads);
+        OdMatrix od = gen.build(gravityTrips);
+        if (od.pairCount() == 0) {
+            throw new IllegalArgumentException("Gravity model found no connected zone pairs");
+        }
+        System.out.printf(Locale.ROOT, "Gravity: %d zones, %d pairs, %.0f trips/h mean (%.2f s)%n",
+                gen.getTravelTimes().zoneCount(), od.pairCount(), od.totalTrips(),
+                (System.nanoTime() - t0) / 1e9);
+        return od;
+    }
+
+    /** CSV and --trips demand as a steady rate over the run (trips/h). */
+    private OdMatrix tripDemand(RoadNetwork net) {
+        OdMatrix.Builder b = new OdMatrix.Builder(net.nodeCount());
+        double perHour = 3600.0 / duration;
+        for (int i = 0; i < tripCount; i++) {
+            int first = tripEdges[tripStart[i]];
+            int last = tripEdges[tripStart[i] + tripLength[i] - 1];
+            b.add(net.edgeFrom[first], net.edgeTo[last], perHour);
+        }
+        return b.build();
+    }
+
+    private static Map<String, String[]> readPaths(String file) throws IOException {
+        Map<String, String[]> paths = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                int sep = line.indexOf(';');
+                if (sep <= 0 || line.startsWith("#")) continue;
+                paths.put(line.substring(0, sep).trim(), line.substring(sep + 1).split(","));
+            }
+        } catch (java.io.FileNotFoundException ex) {
+            // explicit paths are optional
+        }
+        return paths;
+    }
+
+    private static int nodesToEdges(RoadNetwork net, String[] names, int[] out) {
+        if (names.length < 2 || names.length - 1 > out.length) return -1;
+        int n = 0;
+        for (int i = 0; i + 1 < names.length; i++) {
+            int e = net.findEdge(net.indexOf(names[i].trim()), net.indexOf(names[i + 1].trim()));
+            if (e < 0) return -1;
+            out[n++] = e;
+        }
+        return n;
+    }
+
+    private static int route(RoadNetwork net, DijkstraEngine router, int src, int dst, int[] out) {
+        if (src < 0 || dst < 0 || src == dst) return -1;
+        router.run(src, net.edgeFreeFlowTime, dst);
+        return router.extractPath(dst, out);
+    }
+
+    private static int parseTag(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException ex) {
+            return id.hashCode();
+        }
+    }
+
+    private void addTrip(int tag, double depart, float speed, int[] edges, int length) {
+        if (length <= 0) {
+            skipped++;
+            return;
+        }
+        if (tripCount == tripDepart.length) {
+            int cap = tripCount * 2 + 16;
+            tripDepart = Arrays.copyOf(tripDepart, cap);
+            tripTag = Arrays.copyOf(tripTag, cap);
+            tripSpeed = Arrays.copyOf(tripSpeed, cap);
+            tripStart = Arrays.copyOf(tripStart, cap);
+            tripLength = Arrays.copyOf(tripLength, cap);
+        }
+        if (tripEdgeCount + length > tripEdges.length) {
+            tripEdges = Arrays.copyOf(tripEdges, Math.max(tripEdgeCount + length, tripEdges.length * 2 + 64));
+        }
+        System.arraycopy(edges, 0, tripEdges, tripEdgeCount, length);
+
+        tripDepart[tripCount] = depart;
+        tripTag[tripCount] = tag;
+        tripSpeed[tripCount] = speed;
+        tripStart[tripCount] = tripEdgeCount;
+        tripLength[tripCount] = length;
+        tripEdgeCount += length;
+        tripCount++;
+    }
+
+    /** Orders trips by departure (stable), permuting the parallel arrays. */
+    private void sortTrips() {
+        Integer[] order = new Integer[tripCount];
+        for (int i = 0; i < tripCount; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(tripDepart[a], tripDepart[b]));
+
+        double[] depart = new double[tripCount];
+        int[] tag = new int[tripCount], start = new int[tripCount], length = new int[tripCount];
+        float[] speed = new float[tripCount];
+        for (int i = 0; i < tripCount; i++) {
+            int k = order[i];
+            depart[i] = tripDepart[k];
+            tag[i] = tripTag[k];
+            speed[i] = tripSpeed[k];
+            start[i] = tripStart[k];
+            length[i] = tripLength[k];
+        }
+        tripDepart = depart;
+        tripTag = tag;
+        tripSpeed = speed;
+        tripStart = start;
+        tripLength = length;
+    }
+
+    private int[] tripPath(int trip) {
+        int len = tripLength[trip];
+        if (pathScratch.length < len) pathScratch = new int[len];
+        System.arraycopy(tripEdges, tripStart[trip], pathScratch, 0, len);
+        return pathScratch;
+    }
+}
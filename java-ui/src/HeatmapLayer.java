@@ -3,6 +3,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.ConvolveOp;
 import java.awt.image.Kernel;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
 
@@ -36,6 +37,12 @@ public class HeatmapLayer {
     private float temporalScale = 1.0f; // NEW: Used for the Temporal Pulsing effect
 
     private BufferedImage cachedImage;
+
+    // View the cached image was built for (re-projected when stale)
+    private double builtZoom = 1.0, builtTx = 0.0, builtTy = 0.0, builtScale = 1.0;
+    private int builtWidth, builtHeight;
+    private double resolutionScale = 1.0;
+    private boolean fastMode = false;
     private final Random random = new Random(1133);
     
     // NEW: Perlin Noise generator (Requires a utility class or external library for true Perlin)
@@ -58,16 +65,20 @@ public class HeatmapLayer {
         trafficIntensity = new double[nodeCount];
         trafficChangeRate = new double[nodeCount];
         noiseGen = new PerlinNoiseGenerator(random.nextLong());
-        for (int i = 0; i < nodeCount; i++) {
-            trafficIntensity[i] = 0.2 + random.nextDouble() * 0.6;
-            trafficChangeRate[i] = 0.0;
-        }
+        // No heat until a flow source (snapshot / static intensities) arrives
+        Arrays.fill(trafficIntensity, 0.1);
+        cellGrid = null;
         cachedImage = null;
     }
 
     // ---------------------------------------------------------
     // Traffic update (Advanced Temporal Pulsing)
     // ---------------------------------------------------------
+    /**
+     * Advances the pulse only. Intensities come from simulated
+     * flows (applySnapshot) or setNodeIntensities and stay as they
+     * were last set.
+     */
     public void updateTraffic() {
         pulse += 0.035;
         if (pulse > Math.PI * 2) pulse = 0;
@@ -76,22 +87,74 @@ public class HeatmapLayer {
         // The entire heatmap subtly pulses based on a sine wave.
         temporalScale = (float) (0.95 + 0.1 * Math.sin(pulse * 3)); // Pulse 3x faster than change rate
 
-        double oldIntensity;
-        for (int i = 0; i < trafficIntensity.length; i++) {
-            oldIntensity = trafficIntensity[i];
-            
-            double noise = random.nextDouble() * 0.06 - 0.03;
-            trafficIntensity[i] = clamp(
-                    trafficIntensity[i] * (0.97 + noise),
-                    0.1, 1.0
-            );
-            
-            // NEW: Calculate the magnitude of the change for the Motion Streak effect
-            trafficChangeRate[i] = Math.abs(trafficIntensity[i] - oldIntensity);
-        }
+        Arrays.fill(trafficChangeRate, 0.0);
         cachedImage = null;
     }
     
+    // ---------------------------------------------------------
+    // Traffic from a running simulation (SimulationRunner)
+    // ---------------------------------------------------------
+    private long snapshotSequence = 0;
+
+    // Grid-cell heat of the newest snapshot (null = draw per node)
+    private FlowAggregator.Grid cellGrid = null;
+    private float[] cellIntensity = new float[0];
+    private float[] cellChangeRate = new float[0];
+
+    /**
+     * Takes node (and, if present, grid-cell) intensities from the
+     * newest simulation snapshot. Nodes match by index (panel node
+     * order, as in RoadNetwork.fromPanel). The image is only rebuilt
+     * when a newer tick has arrived.
+     */
+    public void applySnapshot(SimulationSnapshot s) {
+        if (s == null || s.isEmpty() || trafficIntensity == null
+                || s.getSequence() == snapshotSequence) {
+            return;
+        }
+        snapshotSequence = s.getSequence();
+
+        int n = Math.min(trafficIntensity.length, s.nodeCount());
+        for (int i = 0; i < n; i++) {
+            double old = trafficIntensity[i];
+            trafficIntensity[i] = clamp(s.nodeIntensity(i), 0.1, 1.0);
+            trafficChangeRate[i] = Math.abs(trafficIntensity[i] - old);
+        }
+
+        // Grid cells are copied too: the snapshot is recycled
+        int cells = s.cellCount();
+        cellGrid = s.getGrid();
+        if (cellGrid != null) {
+            if (cellIntensity.length != cells) {
+                cellIntensity = new float[cells];
+                cellChangeRate = new float[cells];
+            }
+            for (int c = 0; c < cells; c++) {
+                float v = s.cellIntensity(c);
+                cellChangeRate[c] = Math.abs(v - cellIntensity[c]);
+                cellIntensity[c] = v;
+            }
+        }
+        cachedImage = null;
+    }
+
+    /**
+     * Static intensities (e.g. TrafficAssignment congestion mapped
+     * to nodes), indexed like the panel's nodes. They stay until the
+     * next snapshot.
+     */
+    public void setNodeIntensities(float[] values) {
+        if (trafficIntensity == null) return;
+        cellGrid = null;
+        int n = Math.min(trafficIntensity.length, values.length);
+        for (int i = 0; i < n; i++) {
+            double old = trafficIntensity[i];
+            trafficIntensity[i] = clamp(values[i], 0.1, 1.0);
+            trafficChangeRate[i] = Math.abs(trafficIntensity[i] - old);
+        }
+        cachedImage = null;
+    }
+
     // ---------------------------------------------------------
     // Set Mode for Advanced Color Mapping
     // ---------------------------------------------------------
@@ -122,32 +185,67 @@ public void setGlobalTrafficLevel(double level) {
             double tx,
             double ty
     ) {
-        if (cachedImage == null) {
+        boolean viewChanged = cachedImage != null
+                && (zoom != builtZoom || tx != builtTx || ty != builtTy
+                    || builtWidth != width || builtHeight != height);
+
+        // In fast mode a stale image is re-projected instead of rebuilt
+        if (cachedImage == null || (viewChanged && !fastMode)) {
             rebuildImage(width, height, nodes, zoom, tx, ty);
         }
 
         Composite old = g.getComposite();
+        Object oldInterp = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
         g.setComposite(AlphaComposite.getInstance(
                 AlphaComposite.SRC_OVER, 0.55f * temporalScale // Apply Temporal Pulsing
         ));
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, fastMode
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        // Maps cached-image pixels (built at builtZoom / builtTx / builtTy
+        // and builtScale) onto the current view.
+        double k = zoom / builtZoom;
+        AffineTransform place = new AffineTransform();
+        place.translate(tx - builtTx * k, ty - builtTy * k);
+        place.scale(k / builtScale, k / builtScale);
 
         // ADVANCED FEATURE 1: Motion Blur/Streak Effect
         // Apply a gentle blur/transform to simulate momentum.
-        if (currentAdvancedMode == AdvancedMode.DEFAULT_GRADIENT) {
+        if (currentAdvancedMode == AdvancedMode.DEFAULT_GRADIENT && !fastMode) {
             AffineTransform oldTx = g.getTransform();
             
             // Apply a slight horizontal/vertical offset based on the pulse for subtle "drift"
             g.translate(2 * Math.sin(pulse), 1 * Math.cos(pulse * 0.5)); 
             
             // The cached image is drawn with this transformation
-            g.drawImage(cachedImage, 0, 0, null);
+            g.drawImage(cachedImage, place, null);
             g.setTransform(oldTx);
         } else {
             // No blur in analytics mode for clear data visibility
-            g.drawImage(cachedImage, 0, 0, null);
+            g.drawImage(cachedImage, place, null);
         }
 
         g.setComposite(old);
+        if (oldInterp != null) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, oldInterp);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Interaction quality (driven by RenderQualityGovernor)
+    // ---------------------------------------------------------
+    public void setFastMode(boolean fast) {
+        this.fastMode = fast;
+    }
+
+    /** Offscreen resolution relative to the window (0.25 – 1.0). */
+    public void setResolutionScale(double scale) {
+        scale = clamp(scale, 0.25, 1.0);
+        if (scale != resolutionScale) {
+            resolutionScale = scale;
+            cachedImage = null;
+        }
     }
 
     // ---------------------------------------------------------
@@ -162,17 +260,35 @@ public void setGlobalTrafficLevel(double level) {
             double ty
     ) {
 
+        builtZoom = zoom;
+        builtTx = tx;
+        builtTy = ty;
+        builtScale = resolutionScale;
+        builtWidth = width;
+        builtHeight = height;
+
         cachedImage = new BufferedImage(
-                width, height,
+                Math.max(1, (int) Math.ceil(width * builtScale)),
+                Math.max(1, (int) Math.ceil(height * builtScale)),
                 BufferedImage.TYPE_INT_ARGB
         );
 
         Graphics2D g = cachedImage.createGraphics();
+        g.scale(builtScale, builtScale);
         
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, fastMode
+                ? RenderingHints.VALUE_ANTIALIAS_OFF
+                : RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, fastMode
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        // Large networks: one circle per heat-grid cell instead of per node
+        if (cellGrid != null && cellIntensity.length < nodes.size()) {
+            drawCells(g, zoom, tx, ty);
+            g.dispose();
+            return;
+        }
 
         int i = 0;
         for (UrbanFlowPanel.NodeView n : nodes.values()) {
@@ -202,6 +318,24 @@ public void setGlobalTrafficLevel(double level) {
         g.dispose();
     }
 
+    /**
+     * Cell centres are in network (= unzoomed screen) coordinates.
+     * Cells without traffic are skipped, so the cost follows the
+     * busy part of the map, not the grid size.
+     */
+    private void drawCells(Graphics2D g, double zoom, double tx, double ty) {
+        int radius = (int) Math.max(2, cellGrid.cellSize * zoom * 1.2);
+        for (int c = 0; c < cellIntensity.length; c++) {
+            double raw = clamp(cellIntensity[c], 0.1, 1.0) * globalTrafficLevel;
+            double intensity = clamp(Math.pow(raw, 3.0), 0.0, 1.0);
+            if (intensity < 0.01) continue;
+
+            int cx = (int) (cellGrid.centerX(c) * zoom + tx);
+            int cy = (int) (cellGrid.centerY(c) * zoom + ty);
+            drawHeatCircleWithCore(g, cx, cy, radius, intensity, cellChangeRate[c]);
+        }
+    }
+
     // ---------------------------------------------------------
     // Heat circle drawing - Two-Pass with Color Mode Switch
     // ---------------------------------------------------------
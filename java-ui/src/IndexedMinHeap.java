@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * IndexedMinHeap
+ * =============================================================
+ * Binary min-heap of int ids (0..capacity-1) keyed by double,
+ * with decrease-key. Backed by primitive arrays only, so a
+ * Dijkstra run allocates nothing (unlike PriorityQueue<Node>).
+ * update() / remove() also let it serve as an event queue whose
+ * entries are rescheduled in either direction.
+ * =============================================================
+ */
+final class IndexedMinHeap {
+
+    private int[] heap;            // heap slot → id
+    private int[] pos;             // id → heap slot, -1 if absent
+    private double[] key;          // id → key
+    private int size = 0;
+
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        key = new double[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    /** Grows the id range to at least capacity (amortised doubling). */
+    void ensureCapacity(int capacity) {
+        if (capacity <= pos.length) return;
+        int n = Math.max(capacity, pos.length * 2 + 16);
+        int old = pos.length;
+        heap = Arrays.copyOf(heap, n);
+        key = Arrays.copyOf(key, n);
+        pos = Arrays.copyOf(pos, n);
+        Arrays.fill(pos, old, n, -1);
+    }
+
+    boolean isEmpty() { return size == 0; }
+    int size() { return size; }
+
+    boolean contains(int id) { return pos[id] >= 0; }
+
+    double minKey() { return key[heap[0]]; }
+
+    /** Inserts id, or lowers its key if already queued with a larger one. */
+    void insertOrDecrease(int id, double k) {
+        int p = pos[id];
+        if (p < 0) {
+            key[id] = k;
+            heap[size] = id;
+            pos[id] = size;
+            siftUp(size++);
+        } else if (k < key[id]) {
+            key[id] = k;
+            siftUp(p);
+        }
+    }
+
+    /** Inserts id, or moves it to key k (up or down). */
+    void update(int id, double k) {
+        int p = pos[id];
+        if (p < 0) {
+            insertOrDecrease(id, k);
+        } else if (k < key[id]) {
+            key[id] = k;
+            siftUp(p);
+        } else if (k > key[id]) {
+            key[id] = k;
+            siftDown(p);
+        }
+    }
+
+    /** Removes id if it is queued. */
+    void remove(int id) {
+        int p = pos[id];
+        if (p < 0) return;
+        pos[id] = -1;
+        if (--size > p) {
+            int last = heap[size];
+            heap[p] = last;
+            pos[last] = p;
+            siftDown(p);
+            siftUp(pos[last]);
+        }
+    }
+
+    int pollMin() {
+        int top = heap[0];
+        pos[top] = -1;
+        if (--size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            pos[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /** Empties the heap in O(size). */
+    void clear() {
+        for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        double k = key[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int pid = heap[parent];
+            if (key[pid] <= k) break;
+            heap[i] = pid;
+            pos[pid] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        double k = key[id];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && key[heap[right]] < key[heap[child]]) child = right;
+            int cid = heap[child];
+            if (key[cid] >= k) break;
+            heap[i] = cid;
+            pos[cid] = i;
+            i = child;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+}
@@ -0,0 +1,224 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import java.util.List;
+
+/**
+ * =============================================================
+ * LabelPlacer - GREEDY LABEL PLACEMENT WITH COLLISION CULLING
+ * =============================================================
+ * - Labels are drawn in SCREEN space at a constant font size,
+ *   so how crowded they are depends on the zoom level
+ * - GlyphVector + bounds are built once per label and reused;
+ *   glyphs are kept per text anti-aliasing mode, since a
+ *   GlyphVector renders with the context it was built for
+ * - Placement visits nodes in priority order (highest first)
+ *   and rejects any label whose cells in a coarse occupancy
+ *   grid are already taken
+ * - Result is cached per zoom level: panning never re-places,
+ *   and zooming back to a seen level is free; setNodes()
+ *   (called whenever node positions change) drops the cache
+ * =============================================================
+ */
+public class LabelPlacer {
+
+    private static final int CELL = 6;               // occupancy grid cell (px)
+    private static final int LABEL_DX = 12;          // same offset as before
+    private static final int LABEL_DY = 5;
+    private static final int PADDING = 2;            // px kept free around labels
+    private static final int MAX_CACHED_ZOOMS = 32;
+
+    private final Font font;
+
+    private List<UrbanFlowPanel.NodeView> nodes = Collections.emptyList();
+    private int[] order = new int[0];                // node indices, priority desc
+
+    // --- Per-label caches (index = node index) ---
+    private GlyphVector[] glyphs = new GlyphVector[0];     // plain text
+    private GlyphVector[] aaGlyphs = new GlyphVector[0];   // anti-aliased text
+    private float[] labelW = new float[0];
+    private float[] labelAscent = new float[0];
+    private float[] labelH = new float[0];
+    private FontRenderContext metricsContext;
+
+    // --- Per-zoom placement cache (LRU) ---
+    private final Map<Long, int[]> placements =
+            new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, int[]> e) {
+                    return size() > MAX_CACHED_ZOOMS;
+                }
+            };
+
+    public LabelPlacer(Font font) {
+        this.font = font;
+    }
+
+    // ---------------------------------------------------------
+    // Input
+    // ---------------------------------------------------------
+
+    /**
+     * Sets the labelled nodes and their priority (e.g. hub degree
+     * or centrality). Higher priority labels win collisions.
+     */
+    public void setNodes(List<UrbanFlowPanel.NodeView> nodes, double[] priority) {
+        this.nodes = nodes;
+
+        Integer[] idx = new Integer[nodes.size()];
+        for (int i = 0; i < idx.length; i++) idx[i] = i;
+        Arrays.sort(idx, (a, b) -> {
+            int c = Double.compare(priority[b], priority[a]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        order = new int[idx.length];
+        for (int i = 0; i < idx.length; i++) order[i] = idx[i];
+
+        glyphs = new GlyphVector[nodes.size()];
+        aaGlyphs = new GlyphVector[nodes.size()];
+        labelW = new float[nodes.size()];
+        labelAscent = new float[nodes.size()];
+        labelH = new float[nodes.size()];
+        metricsContext = null;
+        placements.clear();
+    }
+
+    // ---------------------------------------------------------
+    // Drawing (screen space)
+    // ---------------------------------------------------------
+
+    public void draw(Graphics2D g, double zoom, double tx, double ty) {
+        if (nodes.isEmpty()) return;
+
+        FontRenderContext frc = g.getFontRenderContext();
+        int[] placed = placementFor(zoom, frc);
+        GlyphVector[] gvs = glyphsFor(frc);
+
+        Rectangle clip = g.getClipBounds();
+        g.setColor(Color.WHITE);
+
+        for (int i : placed) {
+            UrbanFlowPanel.NodeView n = nodes.get(i);
+            float x = (float) (n.screenX * zoom + tx) + LABEL_DX;
+            float y = (float) (n.screenY * zoom + ty) + LABEL_DY;
+
+            if (clip != null
+                    && (x > clip.x + clip.width || x + labelW[i] < clip.x
+                        || y - labelAscent[i] > clip.y + clip.height
+                        || y - labelAscent[i] + labelH[i] < clip.y)) {
+                continue;
+            }
+            g.drawGlyphVector(gvs[i], x, y);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Placement
+    // ---------------------------------------------------------
+
+    /** Node indices whose labels are shown at this zoom. */
+    public int[] placementFor(double zoom, FontRenderContext frc) {
+        ensureMetrics(frc);
+
+        long key = Math.round(zoom * 1000.0);
+        int[] cached = placements.get(key);
+        if (cached != null) return cached;
+
+        int[] placed = place(zoom);
+        placements.put(key, placed);
+        return placed;
+    }
+
+    private int[] place(double zoom) {
+        // Translation does not change overlaps, so place in
+        // zoom-scaled coordinates relative to the node bounding box.
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < nodes.size(); i++) {
+            UrbanFlowPanel.NodeView n = nodes.get(i);
+            float x = (float) (n.screenX * zoom);
+            float y = (float) (n.screenY * zoom);
+            minX = Math.min(minX, x + LABEL_DX);
+            minY = Math.min(minY, y + LABEL_DY - labelAscent[i]);
+            maxX = Math.max(maxX, x + LABEL_DX + labelW[i]);
+            maxY = Math.max(maxY, y + LABEL_DY - labelAscent[i] + labelH[i]);
+        }
+
+        int cols = (int) ((maxX - minX) / CELL) + 2;
+        int rows = (int) ((maxY - minY) / CELL) + 2;
+        long[] occupied = new long[(int) (((long) cols * rows + 63) >>> 6)];
+
+        int[] out = new int[nodes.size()];
+        int count = 0;
+
+        for (int i : order) {
+            UrbanFlowPanel.NodeView n = nodes.get(i);
+            float left = (float) (n.screenX * zoom) + LABEL_DX - minX - PADDING;
+            float top = (float) (n.screenY * zoom) + LABEL_DY - labelAscent[i] - minY - PADDING;
+
+            int c0 = Math.max(0, (int) (left / CELL));
+            int r0 = Math.max(0, (int) (top / CELL));
+            int c1 = Math.min(cols - 1, (int) ((left + labelW[i] + 2 * PADDING) / CELL));
+            int r1 = Math.min(rows - 1, (int) ((top + labelH[i] + 2 * PADDING) / CELL));
+
+            if (isFree(occupied, cols, c0, r0, c1, r1)) {
+                mark(occupied, cols, c0, r0, c1, r1);
+                out[count++] = i;
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    private static boolean isFree(long[] bits, int cols, int c0, int r0, int c1, int r1) {
+        for (int r = r0; r <= r1; r++) {
+            int base = r * cols;
+            for (int c = c0; c <= c1; c++) {
+                int k = base + c;
+                if ((bits[k >>> 6] & (1L << k)) != 0) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void mark(long[] bits, int cols, int c0, int r0, int c1, int r1) {
+        for (int r = r0; r <= r1; r++) {
+            int base = r * cols;
+            for (int c = c0; c <= c1; c++) {
+                int k = base + c;
+                bits[k >>> 6] |= 1L << k;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Text metrics (built once per label)
+    // ---------------------------------------------------------
+
+    // Bounds come from the first context and serve both modes, so a
+    // FAST frame does not re-place labels.
+    private void ensureMetrics(FontRenderContext frc) {
+        if (metricsContext != null) return;
+        metricsContext = frc;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            Rectangle2D b = font.getStringBounds(nodes.get(i).name, frc);
+            labelW[i] = (float) b.getWidth();
+            labelAscent[i] = (float) -b.getY();
+            labelH[i] = (float) b.getHeight();
+        }
+        placements.clear();
+    }
+
+    /** Glyphs for frc's text anti-aliasing, built on first use. */
+    private GlyphVector[] glyphsFor(FontRenderContext frc) {
+        GlyphVector[] gvs = frc.isAntiAliased() ? aaGlyphs : glyphs;
+        if (gvs.length > 0 && gvs[0] == null) {
+            for (int i = 0; i < gvs.length; i++) {
+                gvs[i] = font.createGlyphVector(frc, nodes.get(i).name);
+            }
+        }
+        return gvs;
+    }
+}
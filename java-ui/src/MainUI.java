@@ -148,6 +148,7 @@ public class MainUI {
                 JPanel wrapper = new JPanel(new BorderLayout());
                 wrapper.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
                 wrapper.add(map, BorderLayout.CENTER);
+                wrapper.add(new ReplayBar(map), BorderLayout.SOUTH);
 
                 setCenterView(wrapper);
             });
@@ -0,0 +1,224 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * MaxFlowDinic - ROAD CAPACITY BETWEEN TWO NODES
+ * =============================================================
+ * "How many vehicles per hour can get from LHR to KHI": the
+ * maximum flow under per-road capacities (edgeFlowCapacity, veh/h
+ * like TrafficAssignment's flows), plus the minimum cut,
+ * i.e. the bottleneck roads that limit it.
+ *
+ * Dinic's algorithm over a flat residual graph:
+ *   - RESIDUAL  arc 2e = road e, arc 2e+1 = its reverse; residual
+ *               capacity in one double[], per-node arc lists in
+ *               one CSR (nodeStart / nodeArcs), built once
+ *   - LEVELS    BFS from the source over arcs with capacity left
+ *   - BLOCKING  iterative DFS along level + 1 arcs with a current
+ *               arc per node (arcs that led nowhere are never
+ *               retried in the same phase); after each augmenting
+ *               path it resumes from the first saturated arc
+ * At most O(n) phases; O(n^2 m) worst case, far less on roads.
+ *
+ * The cut: nodes still reachable from the source in the final
+ * residual graph form side S; roads S → not-S are saturated and
+ * their capacities add up exactly to the max flow.
+ *
+ * One instance = one workspace (not thread-safe); solve() may be
+ * called repeatedly for different pairs or capacities.
+ * =============================================================
+ */
+public final class MaxFlowDinic {
+
+    private static final double EPS = 1e-9;
+
+    private final RoadNetwork net;
+    private final int[] nodeStart;     // size n+1
+    private final int[] nodeArcs;      // arc ids grouped by tail
+    private final int[] arcHead;
+    private final double[] residual;
+
+    private final int[] level;
+    private final int[] queue;
+    private final int[] current;       // current arc position per node
+    private final int[] pathArcs;
+
+    public MaxFlowDinic(RoadNetwork net) {
+        this.net = net;
+        int n = net.nodeCount();
+        int m = net.edgeCount();
+
+        arcHead = new int[2 * m];
+        for (int e = 0; e < m; e++) {
+            arcHead[2 * e] = net.edgeTo[e];
+            arcHead[2 * e + 1] = net.edgeFrom[e];
+        }
+
+        // Arcs leaving v: its outgoing roads and the reverses of its incoming ones
+        nodeStart = new int[n + 1];
+        nodeArcs = new int[2 * m];
+        int k = 0;
+        for (int v = 0; v < n; v++) {
+            nodeStart[v] = k;
+            for (int i = net.outStart[v]; i < net.outStart[v + 1]; i++) nodeArcs[k++] = 2 * net.outEdges[i];
+            for (int i = net.inStart[v]; i < net.inStart[v + 1]; i++) nodeArcs[k++] = 2 * net.inEdges[i] + 1;
+        }
+        nodeStart[n] = k;
+
+        residual = new double[2 * m];
+        level = new int[n];
+        queue = new int[n];
+        current = new int[n];
+        pathArcs = new int[n];
+    }
+
+    // ---------------------------------------------------------
+    // Solve
+    // ---------------------------------------------------------
+
+    /** Max flow over the network's own road capacities. */
+    public Result solve(int source, int sink) {
+        return solve(source, sink, net.edgeFlowCapacity);
+    }
+
+    /** Max flow with one capacity per road (veh/h, negative = closed). */
+    public Result solve(int source, int sink, float[] capacity) {
+        if (source == sink) throw new IllegalArgumentException("Source and sink are the same node");
+        int m = net.edgeCount();
+        for (int e = 0; e < m; e++) {
+            residual[2 * e] = Math.max(0.0, capacity[e]);
+            residual[2 * e + 1] = 0.0;
+        }
+
+        double total = 0.0;
+        int phases = 0;
+        while (buildLevels(source, sink)) {
+            phases++;
+            for (int v = 0; v < current.length; v++) current[v] = nodeStart[v];
+            total += blockingFlow(source, sink);
+        }
+
+        // Source side of the min cut = last BFS's reached nodes
+        boolean[] sourceSide = new boolean[net.nodeCount()];
+        for (int v = 0; v < sourceSide.length; v++) sourceSide[v] = level[v] >= 0;
+
+        int cutCount = 0;
+        int[] cut = new int[m];
+        double[] flow = new double[m];
+        for (int e = 0; e < m; e++) {
+            flow[e] = residual[2 * e + 1];
+            if (sourceSide[net.edgeFrom[e]] && !sourceSide[net.edgeTo[e]] && capacity[e] > 0) {
+                cut[cutCount++] = e;
+            }
+        }
+        return new Result(source, sink, total, phases, flow, sourceSide,
+                Arrays.copyOf(cut, cutCount));
+    }
+
+    /** BFS levels from source; false once sink is unreachable. */
+    private boolean buildLevels(int source, int sink) {
+        Arrays.fill(level, -1);
+        int head = 0, tail = 0;
+        level[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int k = nodeStart[u]; k < nodeStart[u + 1]; k++) {
+                int a = nodeArcs[k];
+                int v = arcHead[a];
+                if (level[v] < 0 && residual[a] > EPS) {
+                    level[v] = level[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return level[sink] >= 0;
+    }
+
+    /** Augments along level-graph paths until none is left. */
+    private double blockingFlow(int source, int sink) {
+        double pushed = 0.0;
+        int depth = 0;             // arcs on the partial path
+        int u = source;
+
+        while (true) {
+            if (u == sink) {
+                double bottleneck = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < depth; i++) bottleneck = Math.min(bottleneck, residual[pathArcs[i]]);
+                int firstSaturated = depth;
+                for (int i = 0; i < depth; i++) {
+                    int a = pathArcs[i];
+                    residual[a] -= bottleneck;
+                    residual[a ^ 1] += bottleneck;
+                    if (firstSaturated == depth && residual[a] <= EPS) firstSaturated = i;
+                }
+                pushed += bottleneck;
+                // Resume at the tail of the first arc that ran out
+                depth = firstSaturated;
+                u = depth == 0 ? source : arcHead[pathArcs[depth - 1]];
+                continue;
+            }
+
+            // Advance along the current arc, skipping useless ones
+            int next = -1;
+            for (; current[u] < nodeStart[u + 1]; current[u]++) {
+                int a = nodeArcs[current[u]];
+                int v = arcHead[a];
+                if (residual[a] > EPS && level[v] == level[u] + 1) {
+                    next = a;
+                    break;
+                }
+            }
+
+            if (next >= 0) {
+                pathArcs[depth++] = next;
+                u = arcHead[next];
+            } else {
+                // Dead end: u is done for this phase, retreat one arc
+                if (depth == 0) return pushed;
+                level[u] = -1;
+                depth--;
+                u = depth == 0 ? source : arcHead[pathArcs[depth - 1]];
+                current[u]++;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Result
+    // ---------------------------------------------------------
+
+    public static final class Result {
+        public final int source;
+        public final int sink;
+        /** Maximum flow, veh/h. */
+        public final double maxFlow;
+        /** Dinic phases (level graphs) it took. */
+        public final int phases;
+        private final double[] flow;
+        private final boolean[] sourceSide;
+        private final int[] cutEdges;
+
+        private Result(int source, int sink, double maxFlow, int phases,
+                       double[] flow, boolean[] sourceSide, int[] cutEdges) {
+            this.source = source;
+            this.sink = sink;
+            this.maxFlow = maxFlow;
+            this.phases = phases;
+            this.flow = flow;
+            this.sourceSide = sourceSide;
+            this.cutEdges = cutEdges;
+        }
+
+        /** Flow on road e in the max-flow solution (veh/h). */
+        public double edgeFlow(int e) { return flow[e]; }
+
+        /** True if node is on the source side of the min cut. */
+        public boolean isSourceSide(int node) { return sourceSide[node]; }
+
+        /** Bottleneck roads (min cut), ascending edge index. */
+        public int[] cutEdges() { return cutEdges.clone(); }
+        public int cutCount() { return cutEdges.length; }
+        public int cutEdge(int i) { return cutEdges[i]; }
+    }
+}
@@ -0,0 +1,467 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * =============================================================
+ * MonteCarloScenarioRunner - DEMAND / INCIDENT UNCERTAINTY
+ * =============================================================
+ * Runs many independent seeded scenarios of the same base demand
+ * and reports DISTRIBUTIONS instead of one number:
+ *
+ *   per scenario s (Random seeded from seed and s only)
+ *     - demand factor f uniform in [1 - v, 1 + v]; every base trip
+ *       is driven floor(f) times, plus once more with p = frac(f)
+ *     - one closure candidate (default: every motorway "M..."
+ *       road) is closed in both directions, if any are given
+ *     - trips are routed on free-flow times avoiding the closure
+ *       (one Dijkstra tree per origin) and run to completion in
+ *       EventDrivenSimulation
+ *     - each tracked route gets one probe vehicle; its travel time
+ *       goes into that route's StreamingHistogram (or counts as
+ *       unreachable)
+ *     - every edge's mean congestion over the run (vehicle-seconds
+ *       / duration / capacity) goes into that edge's histogram
+ *
+ * Scenarios are cut into fixed chunks, one per worker. A worker
+ * keeps its simulation, router, weight array and histograms for
+ * the whole run (and across runs), and the worker histograms are
+ * merged at the end, so quantiles do not depend on the thread
+ * count.
+ * =============================================================
+ */
+public class MonteCarloScenarioRunner implements AutoCloseable {
+
+    // Histogram layouts: travel time 1 s .. ~115 days at ~2%,
+    // congestion 0.001 .. 100 at ~9%
+    private static final StreamingHistogram TIME_LAYOUT = new StreamingHistogram(1.0, 1e7, 32);
+    private static final StreamingHistogram CONGESTION_LAYOUT = new StreamingHistogram(1e-3, 100, 8);
+
+    private final RoadNetwork net;
+    private final int threads;
+    private final ExecutorService pool;
+    private final Worker[] workers;
+    private CongestionModel model = new CongestionModel();
+
+    // --- Base demand ---
+    private int tripCount = 0;
+    private int[] tripOrigin = new int[16];
+    private int[] tripDest = new int[16];
+    private double[] tripDepart = new double[16];
+
+    // --- Tracked routes (one probe vehicle each) ---
+    private final List<int[]> routes = new ArrayList<>();
+    private double probeDepart = 0.0;
+
+    private double demandVariation = 0.2;
+    private int[] closureCandidates;
+
+    public MonteCarloScenarioRunner(RoadNetwork net, int threads) {
+        this.net = net;
+        this.threads = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "monte-carlo-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers = new Worker[this.threads];
+        this.closureCandidates = motorwayEdges(net);
+    }
+
+    public MonteCarloScenarioRunner(RoadNetwork net) {
+        this(net, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // ---------------------------------------------------------
+    // Setup
+    // ---------------------------------------------------------
+
+    public void addTrip(int origin, int destination, double departTime) {
+        if (origin < 0 || destination < 0 || origin == destination) return;
+        if (tripCount == tripOrigin.length) {
+            int cap = tripCount * 2;
+            tripOrigin = Arrays.copyOf(tripOrigin, cap);
+            tripDest = Arrays.copyOf(tripDest, cap);
+            tripDepart = Arrays.copyOf(tripDepart, cap);
+        }
+        tripOrigin[tripCount] = origin;
+        tripDest[tripCount] = destination;
+        tripDepart[tripCount] = departTime;
+        tripCount++;
+    }
+
+    /** Tracks origin → destination; returns the route's index in the Result. */
+    public int addRoute(int origin, int destination) {
+        routes.add(new int[] { origin, destination });
+        return routes.size() - 1;
+    }
+
+    public int getTripCount() { return tripCount; }
+
+    /** Relative demand spread v: factor uniform in [1 - v, 1 + v]. */
+    public void setDemandVariation(double v) { this.demandVariation = v; }
+
+    /** Edges that may close (one per scenario); empty = no incidents. */
+    public void setClosureCandidates(int[] edges) { this.closureCandidates = edges.clone(); }
+
+    public void setProbeDeparture(double t) { this.probeDepart = t; }
+
+    /** Copied per worker (models cache per-network state). */
+    public void setCongestionModel(CongestionModel model) { this.model = model; }
+
+    /** Edges whose road type starts with "M" (M2, M9, synthetic "M"). */
+    public static int[] motorwayEdges(RoadNetwork net) {
+        int[] out = new int[net.edgeCount()];
+        int c = 0;
+        for (int e = 0; e < net.edgeCount(); e++) {
+            String type = net.edgeMotorway[e];
+            if (type != null && type.startsWith("M")) out[c++] = e;
+        }
+        return Arrays.copyOf(out, c);
+    }
+
+    // ---------------------------------------------------------
+    // Result
+    // ---------------------------------------------------------
+
+    public static class Result {
+        private final int scenarios;
+        private final StreamingHistogram[] routeTime;
+        private final long[] unreachable;
+        private final StreamingHistogram[] edgeCongestion;
+        private final long[] closures;
+
+        Result(int scenarios, StreamingHistogram[] routeTime, long[] unreachable,
+               StreamingHistogram[] edgeCongestion, long[] closures) {
+            this.scenarios = scenarios;
+            this.routeTime = routeTime;
+            this.unreachable = unreachable;
+            this.edgeCongestion = edgeCongestion;
+            this.closures = closures;
+        }
+
+        public int scenarios() { return scenarios; }
+
+        /** Probe travel time (seconds) distribution of route r. */
+        public StreamingHistogram routeTravelTime(int r) { return routeTime[r]; }
+        public double routeQuantile(int r, double q) { return routeTime[r].quantile(q); }
+
+        /** Scenarios in which the closure cut route r. */
+        public long routeUnreachable(int r) { return unreachable[r]; }
+
+        /** Mean congestion (flow / capacity) distribution of edge e. */
+        public StreamingHistogram edgeCongestion(int e) { return edgeCongestion[e]; }
+        public double edgeQuantile(int e, double q) { return edgeCongestion[e].quantile(q); }
+
+        /** Scenarios in which edge e was closed. */
+        public long closureCount(int e) { return closures[e]; }
+    }
+
+    // ---------------------------------------------------------
+    // Run
+    // ---------------------------------------------------------
+
+    public Result run(int scenarios, long seed) {
+        int[][] byOrigin = groupTripsByOrigin();
+        int workerCount = Math.min(threads, Math.max(1, scenarios));
+
+        List<Callable<Worker>> tasks = new ArrayList<>();
+        for (int w = 0; w < workerCount; w++) {
+            if (workers[w] == null || workers[w].routeTime.length != routes.size()) {
+                workers[w] = new Worker();
+            }
+            final Worker worker = workers[w];
+            final int lo = (int) ((long) scenarios * w / workerCount);
+            final int hi = (int) ((long) scenarios * (w + 1) / workerCount);
+            tasks.add(() -> {
+                worker.clear();
+                for (int s = lo; s < hi; s++) worker.runScenario(byOrigin, seed, s);
+                return worker;
+            });
+        }
+
+        int m = net.edgeCount();
+        StreamingHistogram[] routeTime = new StreamingHistogram[routes.size()];
+        for (int r = 0; r < routeTime.length; r++) routeTime[r] = TIME_LAYOUT.emptyCopy();
+        StreamingHistogram[] edgeCongestion = new StreamingHistogram[m];
+        for (int e = 0; e < m; e++) edgeCongestion[e] = CONGESTION_LAYOUT.emptyCopy();
+        long[] unreachable = new long[routes.size()];
+        long[] closures = new long[m];
+
+        try {
+            for (Future<Worker> f : pool.invokeAll(tasks)) {
+                Worker w = f.get();
+                for (int r = 0; r < routeTime.length; r++) {
+                    routeTime[r].merge(w.routeTime[r]);
+                    unreachable[r] += w.unreachable[r];
+                }
+                for (int e = 0; e < m; e++) {
+                    edgeCongestion[e].merge(w.edgeCongestion[e]);
+                    closures[e] += w.closures[e];
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scenario run interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Scenario worker failed", ex.getCause());
+        }
+        return new Result(scenarios, routeTime, unreachable, edgeCongestion, closures);
+    }
+
+    /** [origin] → base trip indices, for one Dijkstra tree per origin. */
+    private int[][] groupTripsByOrigin() {
+        int n = net.nodeCount();
+        int[] count = new int[n];
+        for (int i = 0; i < tripCount; i++) count[tripOrigin[i]]++;
+        int[][] out = new int[n][];
+        for (int v = 0; v < n; v++) out[v] = new int[count[v]];
+        Arrays.fill(count, 0);
+        for (int i = 0; i < tripCount; i++) out[tripOrigin[i]][count[tripOrigin[i]]++] = i;
+        return out;
+    }
+
+    // ---------------------------------------------------------
+    // Per-worker reusable state
+    // ---------------------------------------------------------
+
+    private final class Worker {
+        final EventDrivenSimulation sim = new EventDrivenSimulation(net);
+        final DijkstraEngine router = new DijkstraEngine(net);
+        final float[] weights = net.edgeFreeFlowTime.clone();
+        final int[] path = new int[Math.max(1, net.nodeCount())];
+        final Random rnd = new Random();
+
+        final StreamingHistogram[] routeTime = new StreamingHistogram[routes.size()];
+        final StreamingHistogram[] edgeCongestion = new StreamingHistogram[net.edgeCount()];
+        final long[] unreachable = new long[routes.size()];
+        final long[] closures = new long[net.edgeCount()];
+        final double[] probeTime = new double[routes.size()];
+
+        Worker() {
+            for (int r = 0; r < routeTime.length; r++) routeTime[r] = TIME_LAYOUT.emptyCopy();
+            for (int e = 0; e < edgeCongestion.length; e++) {
+                edgeCongestion[e] = CONGESTION_LAYOUT.emptyCopy();
+            }
+            sim.setArrivalListener((tag, depart, arrive) -> {
+                if (tag >= 0) probeTime[tag] = arrive - depart;
+            });
+        }
+
+        void clear() {
+            for (StreamingHistogram h : routeTime) h.clear();
+            for (StreamingHistogram h : edgeCongestion) h.clear();
+            Arrays.fill(unreachable, 0);
+            Arrays.fill(closures, 0);
+            sim.setCongestionModel(new CongestionModel(model.getFunction(),
+                    model.getAlpha(), model.getBeta()));
+        }
+
+        void runScenario(int[][] byOrigin, long seed, int scenario) {
+            rnd.setSeed(seed * 0x9E3779B97F4A7C15L + scenario);
+            double factor = 1.0 + demandVariation * (2.0 * rnd.nextDouble() - 1.0);
+            int whole = (int) Math.floor(factor);
+            double frac = factor - whole;
+
+            int closed = -1, closedBack = -1;
+            if (closureCandidates.length > 0) {
+                closed = closureCandidates[rnd.nextInt(closureCandidates.length)];
+                closedBack = net.findEdge(net.edgeTo[closed], net.edgeFrom[closed]);
+                weights[closed] = Float.POSITIVE_INFINITY;
+                if (closedBack >= 0) weights[closedBack] = Float.POSITIVE_INFINITY;
+                closures[closed]++;
+            }
+
+            sim.reset();
+            for (int o = 0; o < byOrigin.length; o++) {
+                int[] trips = byOrigin[o];
+                if (trips.length == 0) continue;
+                router.run(o, weights, -1);
+                for (int i : trips) {
+                    int copies = whole + (rnd.nextDouble() < frac ? 1 : 0);
+                    if (copies == 0) continue;
+                    int len = router.extractPath(tripDest[i], path);
+                    for (int c = 0; c < copies && len > 0; c++) {
+                        sim.addVehicle(-1, path, len, 1f, tripDepart[i]);
+                    }
+                }
+            }
+
+            Arrays.fill(probeTime, Double.NaN);
+            for (int r = 0; r < routes.size(); r++) {
+                int[] od = routes.get(r);
+                router.run(od[0], weights, od[1]);
+                int len = router.extractPath(od[1], path);
+                if (len > 0) sim.addVehicle(r, path, len, 1f, probeDepart);
+            }
+
+            sim.runToCompletion();
+
+            for (int r = 0; r < routes.size(); r++) {
+                if (Double.isNaN(probeTime[r])) unreachable[r]++;
+                else routeTime[r].add(probeTime[r]);
+            }
+            double duration = Math.max(sim.getSimTime(), 1e-9);
+            for (int e = 0; e < edgeCongestion.length; e++) {
+                float cap = net.edgeCapacity[e];
+                double meanFlow = sim.getEdgeVehicleSeconds(e) / duration;
+                edgeCongestion[e].add(cap > 0f ? meanFlow / cap : 0.0);
+            }
+
+            if (closed >= 0) {
+                weights[closed] = net.edgeFreeFlowTime[closed];
+                if (closedBack >= 0) weights[closedBack] = net.edgeFreeFlowTime[closedBack];
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Command line
+    // ---------------------------------------------------------
+
+    /**
+     *   java MonteCarloScenarioRunner --data java-ui/data --scenarios 500 \
+     *        --routes KHI-ISL,LHR-ISL --demand 0.2 --closures motorway \
+     *        [--trips 2000 --horizon 3600] [--threads 4] [--seed 1133]
+     *
+     * Base demand is vehicles.csv plus --trips seeded random trips
+     * (default 2000) departing over the horizon; rows naming unknown
+     * nodes are reported, and a run without any base trip fails.
+     */
+    public static void main(String[] args) throws IOException {
+        String data = "java-ui/data", routeList = "KHI-ISL", closureMode = "motorway";
+        int scenarios = 200, extraTrips = 2000, threads = Runtime.getRuntime().availableProcessors();
+        double variation = 0.2, horizon = 3600, probe = 0;
+        long seed = 1133;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--data":      data = v; break;
+                case "--scenarios": scenarios = Integer.parseInt(v); break;
+                case "--routes":    routeList = v; break;
+                case "--demand":    variation = Double.parseDouble(v); break;
+                case "--closures":  closureMode = v; break;
+                case "--trips":     extraTrips = Integer.parseInt(v); break;
+                case "--horizon":   horizon = Double.parseDouble(v); break;
+                case "--probe":     probe = Double.parseDouble(v); break;
+                case "--threads":   threads = Integer.parseInt(v); break;
+                case "--seed":      seed = Long.parseLong(v); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        RoadNetwork net = RoadNetwork.loadCsv(data + "/intersections.csv", data + "/roads.csv");
+        try (MonteCarloScenarioRunner mc = new MonteCarloScenarioRunner(net, threads)) {
+            mc.setDemandVariation(variation);
+            mc.setProbeDeparture(probe);
+            switch (closureMode) {
+                case "motorway": break;
+                case "none":     mc.setClosureCandidates(new int[0]); break;
+                default:
+                    throw new IllegalArgumentException("Unknown closure mode " + closureMode);
+            }
+
+            int skipped = loadVehicles(net, data + "/vehicles.csv", mc);
+            if (skipped > 0) {
+                System.out.printf(Locale.ROOT, "vehicles.csv: skipped %d trip(s) naming unknown nodes%n", skipped);
+            }
+            Random rnd = new Random(seed);
+            for (int i = 0; i < extraTrips && net.nodeCount() > 1; i++) {
+                mc.addTrip(rnd.nextInt(net.nodeCount()), rnd.nextInt(net.nodeCount()),
+                        rnd.nextDouble() * horizon);
+            }
+
+            if (mc.getTripCount() == 0) {
+                throw new IllegalArgumentException("No base demand: no vehicles.csv trip matches the network"
+                        + " and --trips is 0");
+            }
+
+            List<String> names = new ArrayList<>();
+            for (String r : routeList.split(",")) {
+                String[] p = r.trim().split("-");
+                int o = p.length == 2 ? net.indexOf(p[0]) : -1;
+                int d = p.length == 2 ? net.indexOf(p[1]) : -1;
+                if (o < 0 || d < 0) {
+                    throw new IllegalArgumentException("Unknown route " + r);
+                }
+                mc.addRoute(o, d);
+                names.add(r.trim());
+            }
+
+            System.out.printf(Locale.ROOT, "Network: %d nodes, %d edges; %d base trips; "
+                            + "demand +/-%.0f%%; %d closure candidates%n",
+                    net.nodeCount(), net.edgeCount(), mc.getTripCount(), variation * 100,
+                    mc.closureCandidates.length);
+
+            long t0 = System.nanoTime();
+            Result res = mc.run(scenarios, seed);
+            double ms = (System.nanoTime() - t0) / 1e6;
+            System.out.printf(Locale.ROOT, "%d scenarios in %.1f ms (%.2f ms each, %d threads)%n%n",
+                    scenarios, ms, ms / scenarios, threads);
+
+            System.out.println("route       p5 (min)  p50 (min)  p95 (min)  mean (min)  cut");
+            for (int r = 0; r < names.size(); r++) {
+                System.out.printf(Locale.ROOT, "%-10s %9.1f %10.1f %10.1f %11.1f %4d%n",
+                        names.get(r), res.routeQuantile(r, 0.05) / 60,
+                        res.routeQuantile(r, 0.5) / 60, res.routeQuantile(r, 0.95) / 60,
+                        res.routeTravelTime(r).mean() / 60, res.routeUnreachable(r));
+            }
+
+            Integer[] order = new Integer[net.edgeCount()];
+            for (int e = 0; e < order.length; e++) order[e] = e;
+            Arrays.sort(order, (a, b) -> Double.compare(
+                    res.edgeQuantile(b, 0.95), res.edgeQuantile(a, 0.95)));
+            System.out.println();
+            System.out.println("edge          p50 cong  p95 cong  closed");
+            for (int k = 0; k < Math.min(10, order.length); k++) {
+                int e = order[k];
+                System.out.printf(Locale.ROOT, "%-5s->%-5s %8.3f %9.3f %7d%n",
+                        net.nodeName(net.edgeFrom[e]), net.nodeName(net.edgeTo[e]),
+                        res.edgeQuantile(e, 0.5), res.edgeQuantile(e, 0.95),
+                        res.closureCount(e));
+            }
+        }
+    }
+
+    /**
+     * vehicles.csv: id,source,destination, all departing at t = 0.
+     * Returns the number of rows skipped for naming unknown nodes.
+     */
+    private static int loadVehicles(RoadNetwork net, String file,
+                                    MonteCarloScenarioRunner mc) throws IOException {
+        int skipped = 0;
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.contains("id")) continue;
+                String[] p = line.split(",");
+                if (p.length < 3) continue;
+                int o = net.indexOf(p[1].trim());
+                int d = net.indexOf(p[2].trim());
+                if (o < 0 || d < 0) {
+                    skipped++;
+                    continue;
+                }
+                mc.addTrip(o, d, 0.0);
+            }
+        }
+        return skipped;
+    }
+}
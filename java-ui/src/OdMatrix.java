@@ -0,0 +1,166 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * =============================================================
+ * OdMatrix - ORIGIN-DESTINATION DEMAND
+ * =============================================================
+ * Sparse trips-per-hour between node pairs of a RoadNetwork,
+ * grouped by origin (CSR layout):
+ *   destinations of origin o:  dest[originStart[o] .. originStart[o+1])
+ *   with demand:               trips[same range]
+ * Duplicate pairs are summed; o == d pairs are dropped.
+ * =============================================================
+ */
+public class OdMatrix {
+
+    final int nodeCount;
+    final int[] originStart;       // size n+1
+    final int[] dest;
+    final double[] trips;
+
+    private OdMatrix(int nodeCount, int[] originStart, int[] dest, double[] trips) {
+        this.nodeCount = nodeCount;
+        this.originStart = originStart;
+        this.dest = dest;
+        this.trips = trips;
+    }
+
+    public int nodeCount() { return nodeCount; }
+    public int pairCount() { return dest.length; }
+
+    public double totalTrips() {
+        double t = 0;
+        for (double d : trips) t += d;
+        return t;
+    }
+
+    /** Origins with at least one destination, ascending. */
+    public int[] origins() {
+        int c = 0;
+        for (int o = 0; o < nodeCount; o++) if (originStart[o + 1] > originStart[o]) c++;
+        int[] out = new int[c];
+        c = 0;
+        for (int o = 0; o < nodeCount; o++) if (originStart[o + 1] > originStart[o]) out[c++] = o;
+        return out;
+    }
+
+    // ---------------------------------------------------------
+    // Loading
+    // ---------------------------------------------------------
+
+    /**
+     * Reads origin,destination,trips_per_hour lines (node names).
+     * '#' and header lines and unknown nodes are skipped.
+     */
+    public static OdMatrix loadCsv(RoadNetwork net, String file) throws IOException {
+        Builder b = new Builder(net.nodeCount());
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.contains("origin")) continue;
+                String[] p = line.split(",");
+                if (p.length < 3) continue;
+                int o = net.indexOf(p[0].trim());
+                int d = net.indexOf(p[1].trim());
+                if (o < 0 || d < 0) continue;
+                b.add(o, d, Double.parseDouble(p[2].trim()));
+            }
+        }
+        return b.build();
+    }
+
+    /** Seeded random pairs, uniform trips in (0, maxTrips]. */
+    public static OdMatrix random(RoadNetwork net, int pairs, double maxTrips, long seed) {
+        Random rnd = new Random(seed);
+        Builder b = new Builder(net.nodeCount());
+        int n = net.nodeCount();
+        for (int i = 0; i < pairs && n > 1; i++) {
+            b.add(rnd.nextInt(n), rnd.nextInt(n), maxTrips * (1.0 - rnd.nextDouble()));
+        }
+        return b.build();
+    }
+
+    /** Every ordered pair of the given nodes, one trip each. */
+    public static OdMatrix allPairs(RoadNetwork net, int[] nodes) {
+        Builder b = new Builder(net.nodeCount());
+        for (int o : nodes) {
+            for (int d : nodes) b.add(o, d, 1.0);
+        }
+        return b.build();
+    }
+
+    // ---------------------------------------------------------
+    // Builder
+    // ---------------------------------------------------------
+
+    public static class Builder {
+        private final int nodeCount;
+        private int size = 0;
+        private int[] o = new int[16];
+        private int[] d = new int[16];
+        private double[] t = new double[16];
+
+        public Builder(int nodeCount) {
+            this.nodeCount = nodeCount;
+        }
+
+        public Builder add(int origin, int destination, double tripsPerHour) {
+            if (origin == destination || tripsPerHour <= 0) return this;
+            if (size == o.length) {
+                o = Arrays.copyOf(o, size * 2);
+                d = Arrays.copyOf(d, size * 2);
+                t = Arrays.copyOf(t, size * 2);
+            }
+            o[size] = origin;
+            d[size] = destination;
+            t[size] = tripsPerHour;
+            size++;
+            return this;
+        }
+
+        public OdMatrix build() {
+            // counting sort by origin, then merge duplicate destinations
+            int[] start = new int[nodeCount + 1];
+            for (int i = 0; i < size; i++) start[o[i] + 1]++;
+            for (int v = 0; v < nodeCount; v++) start[v + 1] += start[v];
+
+            int[] fill = Arrays.copyOf(start, nodeCount);
+            int[] dest = new int[size];
+            double[] trips = new double[size];
+            for (int i = 0; i < size; i++) {
+                int k = fill[o[i]]++;
+                dest[k] = d[i];
+                trips[k] = t[i];
+            }
+
+            int[] outStart = new int[nodeCount + 1];
+            int w = 0;
+            double[] merged = new double[nodeCount];
+            int[] seen = new int[nodeCount];
+            Arrays.fill(seen, -1);
+            for (int v = 0; v < nodeCount; v++) {
+                outStart[v] = w;
+                int first = w;
+                for (int k = start[v]; k < start[v + 1]; k++) {
+                    int dd = dest[k];
+                    if (seen[dd] != v) {
+                        seen[dd] = v;
+                        merged[dd] = 0;
+                        dest[w++] = dd;
+                    }
+                    merged[dd] += trips[k];
+                }
+                for (int k = first; k < w; k++) trips[k] = merged[dest[k]];
+            }
+            outStart[nodeCount] = w;
+
+            return new OdMatrix(nodeCount, outStart,
+                    Arrays.copyOf(dest, w), Arrays.copyOf(trips, w));
+        }
+    }
+}
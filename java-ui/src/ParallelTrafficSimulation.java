@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * =============================================================
+ * ParallelTrafficSimulation - MULTI-THREADED TICK
+ * =============================================================
+ * Same tick as TrafficSimulation, split into two parallel phases:
+ *
+ *   1. MOVE + COUNT  vehicles are cut into contiguous index
+ *                    chunks; each worker moves its chunk and
+ *                    counts the resulting edges into its OWN
+ *                    flow counter array
+ *   2. MERGE         edges are cut into ranges; each worker sums
+ *                    the per-thread counters for its range, clears
+ *                    them, and recomputes those travel times
+ *
+ * removeArrived() stays sequential (stable order, listener calls).
+ *
+ * Results are BIT-IDENTICAL to TrafficSimulation for any thread
+ * count: a vehicle only reads last tick's travel times, flows are
+ * integer sums, and every travel time is computed by the same
+ * expression on the same inputs.
+ * =============================================================
+ */
+public class ParallelTrafficSimulation extends TrafficSimulation implements AutoCloseable {
+
+    /** Below this many vehicles the sequential tick is cheaper. */
+    private static final int MIN_PARALLEL_VEHICLES = 4096;
+
+    private final int threads;
+    private final ExecutorService pool;
+
+    private final int[][] localFlow;      // [worker][edge]
+    private final List<Callable<Void>> moveTasks = new ArrayList<>();
+    private final List<Callable<Void>> mergeTasks = new ArrayList<>();
+
+    public ParallelTrafficSimulation(RoadNetwork net, double dt, long seed, int threads) {
+        super(net, dt, seed);
+        this.threads = Math.max(1, threads);
+        this.localFlow = new int[this.threads][net.edgeCount()];
+
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "traffic-sim-worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        for (int w = 0; w < this.threads; w++) {
+            final int worker = w;
+            moveTasks.add(() -> { moveChunk(worker); return null; });
+            mergeTasks.add(() -> { mergeRange(worker); return null; });
+        }
+    }
+
+    public ParallelTrafficSimulation(RoadNetwork net, int threads) {
+        this(net, 1.0, 1133, threads);
+    }
+
+    public int getThreads() { return threads; }
+
+    /** Stops the worker threads. The simulation must not be updated afterwards. */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // ---------------------------------------------------------
+    // Tick
+    // ---------------------------------------------------------
+
+    @Override
+    void step() {
+        if (threads == 1 || count < MIN_PARALLEL_VEHICLES) {
+            super.step();
+            return;
+        }
+        getCongestionModel().prepare(getNetwork());
+        runAll(moveTasks);
+        runAll(mergeTasks);
+    }
+
+    /** Phase 1: move vehicles [lo, hi) and count them per edge. */
+    private void moveChunk(int worker) {
+        int lo = chunkStart(count, worker);
+        int hi = chunkStart(count, worker + 1);
+
+        final int[] vehEdge = this.vehEdge;
+        final int[] vehPathIdx = this.vehPathIdx;
+        final int[] vehPathEnd = this.vehPathEnd;
+        final float[] timeOnEdge = this.vehTimeOnEdge;
+        final float[] speedFactor = this.vehSpeedFactor;
+        final float[] travelTime = this.edgeTravelTime;
+        final int[] pool = this.pathPool;
+        final int[] flow = localFlow[worker];
+        final int[] edgeTo = getNetwork().edgeTo;
+        final TrafficSignals signals = this.signals;
+        final double now = getSimTime();
+        final float step = (float) getDt();
+
+        for (int v = lo; v < hi; v++) {
+            int e = vehEdge[v];
+            if (e < 0) continue;
+
+            // identical to TrafficSimulation.updateVehicles()
+            float t = timeOnEdge[v] + step;
+            if (t * speedFactor[v] >= travelTime[e]) {
+                int next = vehPathIdx[v] + 1;
+                if (next < vehPathEnd[v] && signals != null
+                        && !signals.isGreen(edgeTo[e], now)) {
+                    timeOnEdge[v] = t;
+                    flow[e]++;
+                    continue;
+                }
+                vehPathIdx[v] = next;
+                e = next < vehPathEnd[v] ? pool[next] : -1;
+                vehEdge[v] = e;
+                t = 0f;
+            }
+            timeOnEdge[v] = t;
+
+            if (e >= 0) flow[e]++;
+        }
+    }
+
+    /** Phase 2: reduce per-worker counters for edges [lo, hi). */
+    private void mergeRange(int worker) {
+        int m = edgeFlow.length;
+        int lo = chunkStart(m, worker);
+        int hi = chunkStart(m, worker + 1);
+
+        final int[] flow = this.edgeFlow;
+        for (int e = lo; e < hi; e++) flow[e] = 0;
+        for (int[] local : localFlow) {
+            for (int e = lo; e < hi; e++) {
+                flow[e] += local[e];
+                local[e] = 0;
+            }
+        }
+        getCongestionModel().computeTravelTimes(getNetwork(), flow, edgeTravelTime, lo, hi);
+    }
+
+    private int chunkStart(int n, int worker) {
+        return (int) ((long) n * worker / threads);
+    }
+
+    private void runAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation tick interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Simulation worker failed", ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.List;
+
+/**
+ * =============================================================
+ * RenderBenchmark (HEADLESS)
+ * =============================================================
+ * Renders UrbanFlowPanel.paintComponent and HeatmapLayer.render
+ * into an offscreen BufferedImage for every ViewMode, several
+ * synthetic graph sizes and several window sizes.
+ *
+ * Output is one JSON object per line (JSON Lines) in a fixed
+ * case order, so two reports can be compared with a plain diff:
+ *
+ *   java -Djava.awt.headless=true RenderBenchmark \
+ *        --frames 200 --warmup 50 --grids 8,32,64 \
+ *        --windows 800x600,1600x900 --out render.jsonl
+ * =============================================================
+ */
+public class RenderBenchmark {
+
+    private int frames = 200;
+    private int warmup = 50;
+    private int[] grids = {8, 32, 64};
+    private List<Dimension> windows = Arrays.asList(
+            new Dimension(800, 600),
+            new Dimension(1600, 900)
+    );
+    private String outPath = null;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        RenderBenchmark bench = new RenderBenchmark();
+        bench.parseArgs(args);
+
+        List<String> lines = new ArrayList<>();
+        // Run on the EDT so the panel's own Swing timers cannot
+        // mutate traffic state in the middle of a measured frame.
+        SwingUtilities.invokeAndWait(() -> bench.runAll(lines));
+
+        if (bench.outPath == null) {
+            lines.forEach(System.out::println);
+        } else {
+            try (PrintWriter w = new PrintWriter(new FileWriter(bench.outPath))) {
+                lines.forEach(w::println);
+            }
+            System.out.println("Wrote " + lines.size() + " results to " + bench.outPath);
+        }
+        System.exit(0);
+    }
+
+    // ---------------------------------------------------------
+    // Argument parsing
+    // ---------------------------------------------------------
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--frames":  frames = Integer.parseInt(v); break;
+                case "--warmup":  warmup = Integer.parseInt(v); break;
+                case "--grids":
+                    grids = Arrays.stream(v.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--windows":
+                    windows = new ArrayList<>();
+                    for (String s : v.split(",")) {
+                        String[] wh = s.split("x");
+                        windows.add(new Dimension(Integer.parseInt(wh[0]), Integer.parseInt(wh[1])));
+                    }
+                    break;
+                case "--out":     outPath = v; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Benchmark matrix
+    // ---------------------------------------------------------
+
+    private void runAll(List<String> out) {
+        UrbanFlowPanel panel = new UrbanFlowPanel();
+
+        for (int grid : grids) {
+            RoadNetwork net = RoadNetwork.synthetic(grid, grid, 600, 400, 1133);
+            panel.loadNetwork(net);
+
+            String src = net.nodeName(0);
+            String dst = net.nodeName(net.nodeCount() - 1);
+
+            for (Dimension win : windows) {
+                panel.setSize(win);
+
+                for (UrbanFlowPanel.ViewMode mode : UrbanFlowPanel.ViewMode.values()) {
+                    prepareMode(panel, mode, src, dst);
+                    out.add(measurePanel(panel, mode, net, win));
+                }
+
+                out.add(measureHeatmap(panel, net, win));
+            }
+        }
+    }
+
+    private void prepareMode(UrbanFlowPanel panel, UrbanFlowPanel.ViewMode mode,
+                             String src, String dst) {
+        panel.resetView();
+        panel.enableHeatmap(false);
+        switch (mode) {
+            case DEFAULT:
+                panel.setDefaultMode();
+                break;
+            case TRAVEL_SIMULATION:
+                panel.startTravelSimulation(src, dst);
+                break;
+            case COMPARE_ROUTES:
+                panel.compareRoutes(src, dst);
+                break;
+            case CITY_INSIGHTS:
+                panel.setCityInsightsMode();
+                panel.highlightCity(src, true);
+                break;
+        }
+        // drops any heatmap image cached at the previous size
+        panel.setGlobalTrafficLevel(1.0);
+    }
+
+    private String measurePanel(UrbanFlowPanel panel, UrbanFlowPanel.ViewMode mode,
+                                RoadNetwork net, Dimension win) {
+        BufferedImage img = new BufferedImage(win.width, win.height, BufferedImage.TYPE_INT_ARGB);
+        return measure("panel", mode.name(), net, win, () -> {
+            Graphics2D g = img.createGraphics();
+            panel.paintComponent(g);
+            g.dispose();
+        });
+    }
+
+    private String measureHeatmap(UrbanFlowPanel panel, RoadNetwork net, Dimension win) {
+        BufferedImage img = new BufferedImage(win.width, win.height, BufferedImage.TYPE_INT_ARGB);
+        HeatmapLayer layer = new HeatmapLayer();
+        layer.initialize(net.nodeCount());
+        Map<String, UrbanFlowPanel.NodeView> nodes = panel.getNodes();
+
+        // updateTraffic() invalidates the cached image, so every frame
+        // pays the full rebuild exactly like the live 40 ms timer does
+        return measure("heatmap", "DEFAULT_GRADIENT", net, win, () -> {
+            layer.updateTraffic();
+            Graphics2D g = img.createGraphics();
+            layer.render(g, win.width, win.height, nodes, 1.0, 60, 40);
+            g.dispose();
+        });
+    }
+
+    // ---------------------------------------------------------
+    // Measurement
+    // ---------------------------------------------------------
+
+    private String measure(String target, String mode, RoadNetwork net,
+                           Dimension win, Runnable frame) {
+        for (int i = 0; i < warmup; i++) frame.run();
+
+        long tid = Thread.currentThread().getId();
+        long[] nanos = new long[frames];
+
+        long alloc0 = threads.getThreadAllocatedBytes(tid);
+        long wall0 = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            long t = System.nanoTime();
+            frame.run();
+            nanos[i] = System.nanoTime() - t;
+        }
+        long wall = System.nanoTime() - wall0;
+        long alloc = threads.getThreadAllocatedBytes(tid) - alloc0;
+
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0) / 1e6;
+
+        return String.format(Locale.ROOT,
+                "{\"target\":\"%s\",\"mode\":\"%s\",\"nodes\":%d,\"edges\":%d,"
+                        + "\"width\":%d,\"height\":%d,\"frames\":%d,"
+                        + "\"mean_ms\":%.3f,\"p50_ms\":%.3f,\"p90_ms\":%.3f,"
+                        + "\"p99_ms\":%.3f,\"max_ms\":%.3f,"
+                        + "\"alloc_bytes_per_frame\":%d,\"alloc_mb_per_s\":%.2f}",
+                target, mode, net.nodeCount(), net.edgeCount(),
+                win.width, win.height, frames,
+                mean, pct(nanos, 0.50), pct(nanos, 0.90),
+                pct(nanos, 0.99), nanos[nanos.length - 1] / 1e6,
+                alloc / frames, alloc / 1e6 / (wall / 1e9));
+    }
+
+    private static double pct(long[] sorted, double p) {
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+}
@@ -0,0 +1,107 @@
+import javax.swing.Timer;
+
+/**
+ * =============================================================
+ * RenderQualityGovernor
+ * =============================================================
+ * Decides per frame whether UrbanFlowPanel renders at FULL or
+ * FAST quality.
+ *
+ * - Interaction (drag / wheel) marks the view as "moving"
+ * - While moving, FAST is chosen only if MEASURED full-quality
+ *   frames do not fit the frame budget; cheap scenes keep FULL
+ * - FAST is latched for the rest of the gesture (no flicker)
+ * - Once idle, a single full-quality repaint is requested; the
+ *   idle delay scales with the measured frame time
+ * - Heatmap resolution while moving is derived from the same
+ *   measurements (cost scales with pixel count → sqrt)
+ * =============================================================
+ */
+public class RenderQualityGovernor {
+
+    public enum Quality { FULL, FAST }
+
+    private static final double FRAME_BUDGET_MS = 1000.0 / 60.0;
+    private static final double EWMA_ALPHA = 0.25;
+    private static final int MIN_IDLE_MS = 90;
+    private static final int MAX_IDLE_MS = 600;
+
+    private double fullFrameMs = 0.0;   // smoothed cost of FULL frames
+    private double fastFrameMs = 0.0;   // smoothed cost of FAST frames
+
+    private boolean interacting = false;
+    private boolean fastLatched = false;
+
+    private final Timer idleTimer;
+
+    /** onIdle is run on the EDT when the view settles (usually repaint). */
+    public RenderQualityGovernor(Runnable onIdle) {
+        idleTimer = new Timer(MIN_IDLE_MS, e -> {
+            interacting = false;
+            fastLatched = false;
+            onIdle.run();
+        });
+        idleTimer.setRepeats(false);
+    }
+
+    // ---------------------------------------------------------
+    // Input
+    // ---------------------------------------------------------
+
+    /** Call on every drag / zoom event. */
+    public void noteInteraction() {
+        interacting = true;
+        idleTimer.setInitialDelay(idleDelayMs());
+        idleTimer.restart();
+    }
+
+    /** Call after each painted frame with its measured cost. */
+    public void recordFrame(Quality q, long nanos) {
+        double ms = nanos / 1e6;
+        if (q == Quality.FULL) {
+            fullFrameMs = fullFrameMs == 0 ? ms : fullFrameMs + EWMA_ALPHA * (ms - fullFrameMs);
+        } else {
+            fastFrameMs = fastFrameMs == 0 ? ms : fastFrameMs + EWMA_ALPHA * (ms - fastFrameMs);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Decisions
+    // ---------------------------------------------------------
+
+    public Quality quality() {
+        if (!interacting) return Quality.FULL;
+        if (!fastLatched && fullFrameMs > FRAME_BUDGET_MS) {
+            fastLatched = true;
+        }
+        return fastLatched ? Quality.FAST : Quality.FULL;
+    }
+
+    public boolean isInteracting() { return interacting; }
+
+    /**
+     * Heatmap resolution scale for the current frame.
+     * Rebuild cost is roughly proportional to pixel count, so the
+     * scale that brings a full frame back to budget is
+     * sqrt(budget / fullFrameMs), quantised to quarters so the
+     * offscreen image is not reallocated every frame.
+     */
+    public double heatmapScale() {
+        if (quality() == Quality.FULL || fullFrameMs <= 0) return 1.0;
+        double s = Math.sqrt(FRAME_BUDGET_MS / fullFrameMs);
+        s = Math.ceil(s * 4.0) / 4.0;
+        return Math.max(0.25, Math.min(1.0, s));
+    }
+
+    /**
+     * Wait a few full-frame durations before the final high-quality
+     * render, so it does not compete with input that is still arriving.
+     */
+    private int idleDelayMs() {
+        int d = (int) (3 * Math.max(fullFrameMs, fastFrameMs));
+        return Math.max(MIN_IDLE_MS, Math.min(MAX_IDLE_MS, d));
+    }
+
+    public double getFullFrameMs() { return fullFrameMs; }
+    public double getFastFrameMs() { return fastFrameMs; }
+}
@@ -0,0 +1,216 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * ReplayBar
+ * ---------
+ * Timeline control for a SimulationRecorder log: open a recording,
+ * play / pause at a chosen speed, or drag the scrub bar to any
+ * time. Each position change is one SimulationReplay.seek (nearest
+ * keyframe + deltas), shown on the map via setReplaySnapshot.
+ * "Record" writes the map's live traffic to a log it can open.
+ */
+public class ReplayBar extends JPanel {
+
+    private static final int SLIDER_STEPS = 1000;
+    private static final int FRAME_MS = 40;
+    private static final String[] SPEEDS = { "1x", "10x", "60x", "300x", "1800x" };
+
+    private final UrbanFlowPanel map;
+    private final SimulationSnapshot frame = new SimulationSnapshot();
+    private final JSlider slider = new JSlider(0, SLIDER_STEPS, 0);
+    private final JLabel timeLabel = new JLabel("--:--:--");
+    private final JButton playBtn = new JButton("Play");
+    private final JButton recordBtn = new JButton("Record");
+    private final JComboBox<String> speedBox = new JComboBox<>(SPEEDS);
+    private final Timer timer = new Timer(FRAME_MS, e -> advance());
+
+    private SimulationReplay replay = null;
+    private double time = 0.0;
+    private boolean updatingSlider = false;
+
+    public ReplayBar(UrbanFlowPanel map) {
+        this.map = map;
+
+        setLayout(new FlowLayout(FlowLayout.LEFT, 14, 10));
+        setBackground(new Color(245, 248, 252));
+        setBorder(BorderFactory.createMatteBorder(1, 0, 0, 0,
+                new Color(210, 215, 220)));
+
+        JButton openBtn = new JButton("Open Recording");
+        JButton liveBtn = new JButton("Back to Live");
+
+        openBtn.setBackground(new Color(0, 123, 255));
+        openBtn.setForeground(Color.WHITE);
+        openBtn.setFocusPainted(false);
+        playBtn.setFocusPainted(false);
+        liveBtn.setFocusPainted(false);
+        recordBtn.setFocusPainted(false);
+        speedBox.setSelectedIndex(2);
+        slider.setPreferredSize(new Dimension(420, 24));
+        slider.setBackground(getBackground());
+
+        openBtn.addActionListener(e -> chooseRecording());
+        liveBtn.addActionListener(e -> closeReplay());
+        recordBtn.addActionListener(e -> {
+            if (map.isRecording()) stopRecording(); else chooseRecordingTarget();
+        });
+        playBtn.addActionListener(e -> {
+            if (timer.isRunning()) pause(); else play();
+        });
+        slider.addChangeListener(e -> {
+            if (updatingSlider || replay == null) return;
+            double t0 = replay.getStartTime(), t1 = replay.getEndTime();
+            showTime(t0 + (t1 - t0) * slider.getValue() / SLIDER_STEPS);
+        });
+
+        Font f = new Font("Segoe UI", Font.PLAIN, 13);
+        timeLabel.setFont(new Font("Consolas", Font.BOLD, 13));
+        speedBox.setFont(f);
+        playBtn.setFont(f);
+        liveBtn.setFont(f);
+        recordBtn.setFont(f);
+        openBtn.setFont(new Font("Segoe UI", Font.BOLD, 13));
+
+        add(openBtn);
+        add(playBtn);
+        add(speedBox);
+        add(slider);
+        add(timeLabel);
+        add(liveBtn);
+        add(recordBtn);
+        setControlsEnabled(false);
+    }
+
+    // ---------------------------------------------------------
+    // Recording live traffic
+    // ---------------------------------------------------------
+
+    private void chooseRecordingTarget() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setSelectedFile(new File("live.ufr"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            map.startRecording(chooser.getSelectedFile().getPath());
+            recordBtn.setText("Stop Recording");
+        } catch (IOException | IllegalStateException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(),
+                    "Cannot record", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void stopRecording() {
+        recordBtn.setText("Record");
+        try {
+            map.stopRecording();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(),
+                    "Recording failed", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Opening a recording
+    // ---------------------------------------------------------
+
+    private void chooseRecording() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            open(chooser.getSelectedFile().getPath());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(),
+                    "Cannot open recording", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /** Opens a recording made on this map's network and shows its first frame. */
+    public void open(String path) throws IOException {
+        SimulationReplay r = new SimulationReplay(RoadNetwork.fromPanel(map), path);
+        closeReplay();
+        replay = r;
+        setControlsEnabled(true);
+        showTime(r.getStartTime());
+        map.setReplaySnapshot(frame);
+    }
+
+    private void closeReplay() {
+        pause();
+        if (replay != null) {
+            try {
+                replay.close();
+            } catch (IOException ignored) {
+                // read-only file; nothing to flush
+            }
+            replay = null;
+        }
+        map.setReplaySnapshot(null);
+        timeLabel.setText("--:--:--");
+        setControlsEnabled(false);
+    }
+
+    /** Leaving the view ends recording and hands the map back to live traffic. */
+    @Override
+    public void removeNotify() {
+        if (map.isRecording()) stopRecording();
+        closeReplay();
+        super.removeNotify();
+    }
+
+    // ---------------------------------------------------------
+    // Playback
+    // ---------------------------------------------------------
+
+    private void play() {
+        if (replay == null) return;
+        if (time >= replay.getEndTime()) time = replay.getStartTime();
+        playBtn.setText("Pause");
+        timer.start();
+    }
+
+    private void pause() {
+        timer.stop();
+        playBtn.setText("Play");
+    }
+
+    private void advance() {
+        String s = (String) speedBox.getSelectedItem();
+        double speed = Double.parseDouble(s.substring(0, s.length() - 1));
+        double next = time + speed * FRAME_MS / 1000.0;
+        if (next >= replay.getEndTime()) {
+            next = replay.getEndTime();
+            pause();
+        }
+        showTime(next);
+    }
+
+    private void showTime(double t) {
+        time = t;
+        try {
+            replay.seek(t, frame);
+        } catch (IOException ex) {
+            pause();
+            JOptionPane.showMessageDialog(this, ex.getMessage(),
+                    "Replay failed", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        map.repaint();
+
+        long sec = (long) frame.getSimTime();
+        timeLabel.setText(String.format("%02d:%02d:%02d  (%d vehicles)",
+                sec / 3600, (sec / 60) % 60, sec % 60, frame.getVehicleCount()));
+
+        double t0 = replay.getStartTime(), t1 = replay.getEndTime();
+        updatingSlider = true;
+        slider.setValue(t1 > t0 ? (int) Math.round((t - t0) / (t1 - t0) * SLIDER_STEPS) : 0);
+        updatingSlider = false;
+    }
+
+    private void setControlsEnabled(boolean on) {
+        playBtn.setEnabled(on);
+        speedBox.setEnabled(on);
+        slider.setEnabled(on);
+    }
+}
@@ -0,0 +1,293 @@
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * RoadGeometry - MULTI-RESOLUTION ROAD POLYLINES
+ * =============================================================
+ * - Each road (RoadNetwork edge) may carry shape points
+ * - Douglas-Peucker runs ONCE per road and records, for every
+ *   vertex, the tolerance at which it stops being needed
+ * - From that, one packed float[] (x,y,x,y,...) is built per
+ *   tolerance level, with an int[] of per-edge start offsets
+ * - Renderers ask levelForZoom(zoom) for the coarsest level
+ *   whose error stays under half a pixel
+ * - Roads without shape points are straight node-to-node lines
+ * =============================================================
+ */
+public class RoadGeometry {
+
+    /**
+     * World-unit tolerances, finest (exact) first. The panel clamps
+     * zoom to 0.35..3.5, so 1.0 (picked below zoom 0.5) is the
+     * coarsest level that can ever be selected.
+     */
+    static final float[] TOLERANCES = {0f, 0.25f, 0.5f, 1f};
+
+    /** Max on-screen deviation that is still visually lossless. */
+    private static final double MAX_ERROR_PX = 0.5;
+
+    private final int edgeCount;
+    private final float[][] levelCoords;  // [level] → packed x,y
+    private final int[][] levelStart;     // [level] → per-edge point offset (size m+1)
+
+    private RoadGeometry(float[][] coords, int[][] start, int edgeCount) {
+        this.levelCoords = coords;
+        this.levelStart = start;
+        this.edgeCount = edgeCount;
+    }
+
+    // ---------------------------------------------------------
+    // Queries
+    // ---------------------------------------------------------
+
+    public int levelCount() { return TOLERANCES.length; }
+
+    /** Coarsest level that keeps deviation ≤ 0.5 px at this zoom. */
+    public static int levelForZoom(double zoom) {
+        double allowed = MAX_ERROR_PX / Math.max(zoom, 1e-6);
+        int level = 0;
+        for (int i = 1; i < TOLERANCES.length; i++) {
+            if (TOLERANCES[i] <= allowed) level = i;
+        }
+        return level;
+    }
+
+    public int pointCount(int edge, int level) {
+        return levelStart[level][edge + 1] - levelStart[level][edge];
+    }
+
+    /** Total vertices drawn at a level (useful for diagnostics). */
+    public int totalPoints(int level) {
+        return levelStart[level][edgeCount];
+    }
+
+    /** Appends the road polyline at the given level to path. */
+    public void appendTo(Path2D path, int edge, int level) {
+        float[] xy = levelCoords[level];
+        int p0 = levelStart[level][edge];
+        int p1 = levelStart[level][edge + 1];
+        path.moveTo(xy[2 * p0], xy[2 * p0 + 1]);
+        for (int p = p0 + 1; p < p1; p++) {
+            path.lineTo(xy[2 * p], xy[2 * p + 1]);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Loading
+    // ---------------------------------------------------------
+
+    /**
+     * Reads shape points from a CSV file:
+     *   from,to,x1,y1,x2,y2,...
+     * Coordinates are in the same space as the network's nodes.
+     * Unknown roads are skipped; missing roads stay straight. A
+     * shape given for one direction of a two-way road is used,
+     * reversed, for the other unless that has its own line.
+     */
+    public static RoadGeometry loadCsv(RoadNetwork net, String file) throws IOException {
+        return loadCsv(net, file, null);
+    }
+
+    /**
+     * Same, with file coordinates mapped into the network's space
+     * by toNet (null = already there). Endpoints are snapped to
+     * the nodes so shaped roads always meet them.
+     */
+    public static RoadGeometry loadCsv(RoadNetwork net, String file,
+                                       AffineTransform toNet) throws IOException {
+        Builder b = new Builder(net);
+        boolean[] given = new boolean[net.edgeCount()];
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] p = line.split(",");
+                if (p.length < 6 || (p.length & 1) != 0) continue;
+
+                int e = net.findEdge(net.indexOf(p[0].trim()), net.indexOf(p[1].trim()));
+                if (e < 0) continue;
+
+                float[] xy = new float[p.length - 2];
+                for (int i = 0; i < xy.length; i++) {
+                    xy[i] = Float.parseFloat(p[i + 2].trim());
+                }
+                if (toNet != null) toNet.transform(xy, 0, xy, 0, xy.length / 2);
+                snapEnds(net, e, xy);
+                b.setShape(e, xy);
+                given[e] = true;
+
+                int twin = net.findEdge(net.edgeTo[e], net.edgeFrom[e]);
+                if (twin >= 0 && !given[twin]) b.setShape(twin, reversed(xy));
+            }
+        }
+        return b.build();
+    }
+
+    private static void snapEnds(RoadNetwork net, int e, float[] xy) {
+        int last = xy.length - 2;
+        xy[0] = net.nodeX[net.edgeFrom[e]];
+        xy[1] = net.nodeY[net.edgeFrom[e]];
+        xy[last] = net.nodeX[net.edgeTo[e]];
+        xy[last + 1] = net.nodeY[net.edgeTo[e]];
+    }
+
+    private static float[] reversed(float[] xy) {
+        float[] r = new float[xy.length];
+        for (int i = 0; i < xy.length; i += 2) {
+            r[xy.length - 2 - i] = xy[i];
+            r[xy.length - 1 - i] = xy[i + 1];
+        }
+        return r;
+    }
+
+    // ---------------------------------------------------------
+    // Builder
+    // ---------------------------------------------------------
+
+    public static class Builder {
+        private final RoadNetwork net;
+        private final float[][] shapes;
+
+        public Builder(RoadNetwork net) {
+            this.net = net;
+            this.shapes = new float[net.edgeCount()][];
+        }
+
+        /** Full polyline (x,y pairs) including both endpoints. */
+        public Builder setShape(int edge, float[] xy) {
+            if (xy.length < 4 || (xy.length & 1) != 0) {
+                throw new IllegalArgumentException("Shape needs at least two x,y points");
+            }
+            shapes[edge] = xy;
+            return this;
+        }
+
+        public RoadGeometry build() {
+            int m = net.edgeCount();
+            int levels = TOLERANCES.length;
+
+            // significance[e][i]: largest DP distance at which vertex i is kept
+            float[][] significance = new float[m][];
+            int[] total = new int[levels];
+            for (int e = 0; e < m; e++) {
+                float[] xy = shapeOf(e);
+                significance[e] = computeSignificance(xy);
+                for (int l = 0; l < levels; l++) {
+                    total[l] += keptCount(significance[e], TOLERANCES[l]);
+                }
+            }
+
+            float[][] coords = new float[levels][];
+            int[][] start = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                float tol = TOLERANCES[l];
+                float[] out = new float[2 * total[l]];
+                int[] offs = new int[m + 1];
+                int p = 0;
+                for (int e = 0; e < m; e++) {
+                    offs[e] = p;
+                    float[] xy = shapeOf(e);
+                    float[] sig = significance[e];
+                    for (int i = 0; i < sig.length; i++) {
+                        if (isKept(sig[i], tol)) {
+                            out[2 * p] = xy[2 * i];
+                            out[2 * p + 1] = xy[2 * i + 1];
+                            p++;
+                        }
+                    }
+                }
+                offs[m] = p;
+                coords[l] = out;
+                start[l] = offs;
+            }
+            return new RoadGeometry(coords, start, m);
+        }
+
+        private float[] shapeOf(int e) {
+            if (shapes[e] != null) return shapes[e];
+            int a = net.edgeFrom[e];
+            int b = net.edgeTo[e];
+            return new float[]{net.nodeX[a], net.nodeY[a], net.nodeX[b], net.nodeY[b]};
+        }
+
+        private static int keptCount(float[] sig, float tol) {
+            int c = 0;
+            for (float s : sig) {
+                if (isKept(s, tol)) c++;
+            }
+            return c;
+        }
+
+        // level 0 is exact: it keeps collinear vertices too
+        private static boolean isKept(float significance, float tol) {
+            return tol == 0f || significance > tol;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Douglas-Peucker significance (iterative, explicit stack)
+    // ---------------------------------------------------------
+
+    /**
+     * Endpoints get +∞. An interior vertex gets the perpendicular
+     * distance at which DP selected it, capped by its parent's
+     * value so that levels nest (coarser ⊆ finer).
+     */
+    static float[] computeSignificance(float[] xy) {
+        int n = xy.length / 2;
+        float[] sig = new float[n];
+        Arrays.fill(sig, 0f);
+        sig[0] = Float.POSITIVE_INFINITY;
+        sig[n - 1] = Float.POSITIVE_INFINITY;
+        if (n <= 2) return sig;
+
+        int[] stack = new int[3 * n];
+        float[] capStack = new float[n];
+        int sp = 0, cp = 0;
+        stack[sp++] = 0;
+        stack[sp++] = n - 1;
+        capStack[cp++] = Float.POSITIVE_INFINITY;
+
+        while (sp > 0) {
+            int hi = stack[--sp];
+            int lo = stack[--sp];
+            float cap = capStack[--cp];
+            if (hi - lo < 2) continue;
+
+            float ax = xy[2 * lo], ay = xy[2 * lo + 1];
+            float bx = xy[2 * hi], by = xy[2 * hi + 1];
+            float dx = bx - ax, dy = by - ay;
+            float len2 = dx * dx + dy * dy;
+
+            int best = -1;
+            float bestD = -1f;
+            for (int i = lo + 1; i < hi; i++) {
+                float px = xy[2 * i] - ax, py = xy[2 * i + 1] - ay;
+                float d;
+                if (len2 == 0f) {
+                    d = (float) Math.sqrt(px * px + py * py);
+                } else {
+                    d = Math.abs(px * dy - py * dx) / (float) Math.sqrt(len2);
+                }
+                if (d > bestD) { bestD = d; best = i; }
+            }
+
+            float s = Math.min(bestD, cap);
+            sig[best] = s;
+
+            stack[sp++] = lo;
+            stack[sp++] = best;
+            capStack[cp++] = s;
+            stack[sp++] = best;
+            stack[sp++] = hi;
+            capStack[cp++] = s;
+        }
+        return sig;
+    }
+}
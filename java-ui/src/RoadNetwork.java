@@ -0,0 +1,350 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * =============================================================
+ * RoadNetwork
+ * =============================================================
+ * - Compact, index-based copy of the road graph (NO UI code)
+ * - Nodes and edges are numbered 0..n-1 / 0..m-1 in insertion
+ *   order, so edge i is the i-th EdgeView it was built from
+ * - All per-node / per-edge attributes live in flat arrays
+ *   so hot loops (animation, simulation, routing) never touch
+ *   a HashMap or a String
+ * - Outgoing and incoming edges are stored in CSR form
+ * - edgeCapacity counts vehicles ON the road at once (the
+ *   simulators' flow); the rate models (TrafficAssignment,
+ *   MaxFlowDinic, CellTransmissionModel) use edgeFlowCapacity,
+ *   the veh/h that keeps that many vehicles moving at free-flow
+ *   speed: capacity / free-flow time
+ * =============================================================
+ */
+public class RoadNetwork {
+
+    // -----------------------------
+    // Nodes
+    // -----------------------------
+    final String[] nodeNames;
+    final float[] nodeX;              // world (pre-zoom screen) coords
+    final float[] nodeY;
+    private final Map<String, Integer> nodeIndex;
+
+    // -----------------------------
+    // Edges
+    // -----------------------------
+    final int[] edgeFrom;
+    final int[] edgeTo;
+    final float[] edgeLength;         // km
+    final float[] edgeSpeed;          // km/h
+    final float[] edgeToll;           // Rs
+    final float[] edgeCapacity;       // vehicles (same unit as flow)
+    final float[] edgeFlowCapacity;   // veh/h = edgeCapacity per free-flow traversal
+    final float[] edgeFreeFlowTime;   // seconds
+    final String[] edgeMotorway;
+
+    // -----------------------------
+    // CSR adjacency
+    // -----------------------------
+    final int[] outStart;             // size n+1
+    final int[] outEdges;             // size m
+    final int[] inStart;              // size n+1
+    final int[] inEdges;              // size m
+
+    private RoadNetwork(Builder b) {
+        int n = b.names.size();
+        int m = b.from.size();
+
+        nodeNames = b.names.toArray(new String[0]);
+        nodeX = toFloatArray(b.xs);
+        nodeY = toFloatArray(b.ys);
+        nodeIndex = new HashMap<>(b.index);
+
+        edgeFrom = toIntArray(b.from);
+        edgeTo = toIntArray(b.to);
+        edgeLength = toFloatArray(b.length);
+        edgeSpeed = toFloatArray(b.speed);
+        edgeToll = toFloatArray(b.toll);
+        edgeCapacity = toFloatArray(b.capacity);
+        edgeMotorway = b.motorway.toArray(new String[0]);
+
+        edgeFreeFlowTime = new float[m];
+        for (int e = 0; e < m; e++) {
+            float v = edgeSpeed[e] > 0 ? edgeSpeed[e] : 1f;
+            edgeFreeFlowTime[e] = b.baseTime.get(e) > 0
+                    ? b.baseTime.get(e)
+                    : edgeLength[e] / v * 3600f;
+        }
+        edgeFlowCapacity = new float[m];
+        for (int e = 0; e < m; e++) {
+            edgeFlowCapacity[e] = edgeCapacity[e] * 3600f / Math.max(edgeFreeFlowTime[e], 1f);
+        }
+
+        outStart = new int[n + 1];
+        outEdges = new int[m];
+        inStart = new int[n + 1];
+        inEdges = new int[m];
+        buildCsr(edgeFrom, outStart, outEdges);
+        buildCsr(edgeTo, inStart, inEdges);
+    }
+
+    private static void buildCsr(int[] key, int[] start, int[] out) {
+        for (int k : key) start[k + 1]++;
+        for (int i = 1; i < start.length; i++) start[i] += start[i - 1];
+        int[] fill = Arrays.copyOf(start, start.length - 1);
+        for (int e = 0; e < key.length; e++) out[fill[key[e]]++] = e;
+    }
+
+    // ---------------------------------------------------------
+    // Basic accessors
+    // ---------------------------------------------------------
+
+    public int nodeCount() { return nodeNames.length; }
+    public int edgeCount() { return edgeFrom.length; }
+
+    public String nodeName(int node) { return nodeNames[node]; }
+
+    /** Returns the node index, or -1 if the name is unknown. */
+    public int indexOf(String name) {
+        Integer i = nodeIndex.get(name);
+        return i == null ? -1 : i;
+    }
+
+    /** Returns the first edge a → b, or -1 if none exists (or a / b is -1). */
+    public int findEdge(int a, int b) {
+        if (a < 0 || b < 0) return -1;
+        for (int k = outStart[a]; k < outStart[a + 1]; k++) {
+            int e = outEdges[k];
+            if (edgeTo[e] == b) return e;
+        }
+        return -1;
+    }
+
+    public int outDegree(int node) { return outStart[node + 1] - outStart[node]; }
+    public int inDegree(int node)  { return inStart[node + 1] - inStart[node]; }
+
+    public float getEdgeLength(int e) { return edgeLength[e]; }
+    public float getFreeFlowTime(int e) { return edgeFreeFlowTime[e]; }
+    public float getCapacity(int e) { return edgeCapacity[e]; }
+    public float getFlowCapacity(int e) { return edgeFlowCapacity[e]; }
+
+    // ---------------------------------------------------------
+    // Factories
+    // ---------------------------------------------------------
+
+    /** Snapshot of the graph drawn by UrbanFlowPanel (world coords). */
+    public static RoadNetwork fromPanel(Map<String, UrbanFlowPanel.NodeView> nodes,
+                                        List<UrbanFlowPanel.EdgeView> edges) {
+        Builder b = new Builder();
+        for (UrbanFlowPanel.NodeView n : nodes.values()) {
+            b.addNode(n.name, n.screenX, n.screenY);
+        }
+        for (UrbanFlowPanel.EdgeView e : edges) {
+            b.addEdge(e.from, e.to, e.length, e.motorway, e.speed, e.toll);
+        }
+        return b.build();
+    }
+
+    public static RoadNetwork fromPanel(UrbanFlowPanel panel) {
+        return fromPanel(panel.getNodes(), panel.getEdges());
+    }
+
+    /** Snapshot of the DataLoader graph (screen coords). */
+    public static RoadNetwork fromViews(Map<String, NodeView> nodes,
+                                        List<EdgeView> edges) {
+        Builder b = new Builder();
+        for (NodeView n : nodes.values()) {
+            b.addNode(n.getName(), n.getScreenX(), n.getScreenY());
+        }
+        for (EdgeView e : edges) {
+            b.addEdge(e.getFrom(), e.getTo(), e.getLength(),
+                    e.getMotorwayName(), e.getSpeed(), e.getToll());
+        }
+        return b.build();
+    }
+
+    /**
+     * Loads the C++ data files (same rules as FileIO::loadIntersections
+     * and FileIO::loadRoads):
+     *   intersections: name,x,y[,signal]
+     *   roads:         from,to,length_km,base_time_min,capacity,type,bidirectional
+     * '#' lines and header lines are skipped; roads naming unknown
+     * intersections are skipped too. Speed is derived from
+     * length / base time, so edgeFreeFlowTime is the file's base time.
+     */
+    public static RoadNetwork loadCsv(String intersectionsFile, String roadsFile)
+            throws IOException {
+        Builder b = new Builder();
+
+        try (BufferedReader in = new BufferedReader(new FileReader(intersectionsFile))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.contains("name")) continue;
+                String[] p = line.split(",");
+                if (p.length < 3) continue;
+                b.addNode(p[0].trim(), Double.parseDouble(p[1].trim()),
+                        Double.parseDouble(p[2].trim()));
+            }
+        }
+
+        try (BufferedReader in = new BufferedReader(new FileReader(roadsFile))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.contains("from")) continue;
+                String[] p = line.split(",");
+                if (p.length < 7) continue;
+
+                String from = p[0].trim(), to = p[1].trim();
+                if (!b.hasNode(from) || !b.hasNode(to)) continue;
+
+                double len = Double.parseDouble(p[2].trim());
+                double minutes = Double.parseDouble(p[3].trim());
+                double cap = Double.parseDouble(p[4].trim());
+                String type = p[5].trim();
+                double speed = minutes > 0 ? len / (minutes / 60.0) : 60.0;
+
+                b.addEdge(from, to, len, type, speed, 0, cap, minutes * 60.0);
+                if (p[6].trim().equals("1")) {
+                    b.addEdge(to, from, len, type, speed, 0, cap, minutes * 60.0);
+                }
+            }
+        }
+        return b.build();
+    }
+
+    /**
+     * Synthetic jittered grid for benchmarks and stress tests.
+     * Every 5th row / column is an "M" motorway, the rest LOCAL.
+     * Coordinates span roughly width x height world units
+     * regardless of grid size, so larger grids are denser.
+     * All roads are two-way.
+     */
+    public static RoadNetwork synthetic(int rows, int cols,
+                                        double width, double height,
+                                        long seed) {
+        Random rnd = new Random(seed);
+        Builder b = new Builder();
+        double sx = width / Math.max(1, cols - 1);
+        double sy = height / Math.max(1, rows - 1);
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double jx = (rnd.nextDouble() - 0.5) * sx * 0.3;
+                double jy = (rnd.nextDouble() - 0.5) * sy * 0.3;
+                b.addNode("N" + r + "_" + c, c * sx + jx, r * sy + jy);
+            }
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                String a = "N" + r + "_" + c;
+                if (c + 1 < cols) {
+                    boolean mway = r % 5 == 0;
+                    addTwoWay(b, a, "N" + r + "_" + (c + 1),
+                            5 + rnd.nextInt(20), mway ? "M" + r : "LOCAL", mway ? 110 : 50);
+                }
+                if (r + 1 < rows) {
+                    boolean mway = c % 5 == 0;
+                    addTwoWay(b, a, "N" + (r + 1) + "_" + c,
+                            5 + rnd.nextInt(20), mway ? "M" + c : "LOCAL", mway ? 110 : 50);
+                }
+            }
+        }
+        return b.build();
+    }
+
+    private static void addTwoWay(Builder b, String a, String c,
+                                  double len, String mway, double spd) {
+        b.addEdge(a, c, len, mway, spd, 0);
+        b.addEdge(c, a, len, mway, spd, 0);
+    }
+
+    /**
+     * Default capacity by road class, mirroring data/roads.csv
+     * (motorways ~120, national highways ~110, local roads ~80).
+     */
+    static double defaultCapacity(String motorway) {
+        if (motorway == null) return 80;
+        if (motorway.equals("CORE") || motorway.startsWith("M")) return 120;
+        if (motorway.startsWith("N")) return 110;
+        if (motorway.equals("ARTERIAL")) return 100;
+        return 80;
+    }
+
+    // ---------------------------------------------------------
+    // Builder
+    // ---------------------------------------------------------
+
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<Float> xs = new ArrayList<>();
+        private final List<Float> ys = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+
+        private final List<Integer> from = new ArrayList<>();
+        private final List<Integer> to = new ArrayList<>();
+        private final List<Float> length = new ArrayList<>();
+        private final List<Float> speed = new ArrayList<>();
+        private final List<Float> toll = new ArrayList<>();
+        private final List<Float> capacity = new ArrayList<>();
+        private final List<Float> baseTime = new ArrayList<>();
+        private final List<String> motorway = new ArrayList<>();
+
+        public Builder addNode(String name, double x, double y) {
+            if (index.containsKey(name)) return this;
+            index.put(name, names.size());
+            names.add(name);
+            xs.add((float) x);
+            ys.add((float) y);
+            return this;
+        }
+
+        public Builder addEdge(String a, String b, double len,
+                               String mway, double spd, double tl) {
+            return addEdge(a, b, len, mway, spd, tl, defaultCapacity(mway), 0);
+        }
+
+        /** Full form; baseTimeSeconds <= 0 means "derive from length / speed". */
+        public Builder addEdge(String a, String b, double len, String mway,
+                               double spd, double tl, double cap,
+                               double baseTimeSeconds) {
+            Integer ia = index.get(a);
+            Integer ib = index.get(b);
+            if (ia == null || ib == null) {
+                throw new IllegalArgumentException("Unknown node in edge " + a + " → " + b);
+            }
+            from.add(ia);
+            to.add(ib);
+            length.add((float) len);
+            speed.add((float) spd);
+            toll.add((float) tl);
+            capacity.add((float) cap);
+            baseTime.add((float) baseTimeSeconds);
+            motorway.add(mway == null ? "" : mway.trim());
+            return this;
+        }
+
+        public boolean hasNode(String name) { return index.containsKey(name); }
+
+        public RoadNetwork build() { return new RoadNetwork(this); }
+    }
+
+    // ---------------------------------------------------------
+    // Utility
+    // ---------------------------------------------------------
+
+    private static int[] toIntArray(List<Integer> list) {
+        int[] out = new int[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.get(i);
+        return out;
+    }
+
+    private static float[] toFloatArray(List<Float> list) {
+        float[] out = new float[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.get(i);
+        return out;
+    }
+}
@@ -8,6 +8,11 @@ import java.awt.geom.Point2D;
  *   - DIJKSTRA              (pure distance)
  *   - ASTAR                 (distance + heuristic)
  *   - CONGESTION_AWARE      (distance * (1 + congestion))
+ *   - Weight arrays         (e.g. CongestionModel travel times,
+ *                            DijkstraEngine over a RoadNetwork)
+ *
+ * Congestion is whatever the EdgeViews hold
+ * (SimulationRunner.setCongestionViews keeps it live).
  *
  * Works with EXTERNAL EdgeView class:
  *   from, to, length, speed, toll, motorwayName, congestion
@@ -95,6 +100,35 @@ public class RouteFinder {
         return Collections.emptyList();
     }
 
+    /**
+     * Shortest path over a RoadNetwork using a primitive weight
+     * array indexed by edge (e.g. TrafficSimulation travel times).
+     * Returns empty list if no route exists.
+     */
+    public static List<String> findPath(RoadNetwork net,
+                                        float[] weights,
+                                        String srcName,
+                                        String dstName)
+    {
+        int src = net.indexOf(srcName);
+        int dst = net.indexOf(dstName);
+        if (src < 0 || dst < 0) return Collections.emptyList();
+
+        DijkstraEngine engine = new DijkstraEngine(net);
+        engine.run(src, weights, dst);
+
+        int[] edges = new int[net.nodeCount()];
+        int n = engine.extractPath(dst, edges);
+        if (n < 0) return Collections.emptyList();
+
+        List<String> path = new ArrayList<>(n + 1);
+        path.add(srcName);
+        for (int i = 0; i < n; i++) {
+            path.add(net.nodeName(net.edgeTo[edges[i]]));
+        }
+        return path;
+    }
+
     /**
      * A* heuristic = Euclidean distance between nodes.
      * Disabled for pure Dijkstra and congestion mode.
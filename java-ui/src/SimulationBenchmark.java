@@ -0,0 +1,257 @@
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * =============================================================
+ * SimulationBenchmark (HEADLESS)
+ * =============================================================
+ * Scaling benchmark for the traffic tick: runs the sequential
+ * TrafficSimulation once as the reference, then
+ * ParallelTrafficSimulation with 1..N threads on the same seeded
+ * scenario.
+ *
+ * Every run ends with a checksum over the full vehicle and edge
+ * state; "identical" is false if any thread count diverged from
+ * the sequential result by even one bit. The defaults (10 s
+ * ticks, 220 of them, trips of 4 edges) let vehicles finish
+ * edges, advance along their paths, wait at signals and arrive,
+ * so the checksum covers those transitions; edges_completed and
+ * arrived report how many the run saw (a run with none proves
+ * little).
+ *
+ *   java SimulationBenchmark --grid 200 --vehicles 500000 \
+ *        --ticks 200 --dt 10 --hops 4 --threads 8 --out sim.jsonl
+ *
+ * --mode event instead runs the same trips to completion in tick
+ * mode and in EventDrivenSimulation, and reports wall time plus
+ * how closely the aggregate per-edge flows agree:
+ *
+ *   java SimulationBenchmark --mode event --grid 100 --vehicles 2000
+ *
+ * --signals true puts fixed-time TrafficSignals at every junction
+ * (both modes).
+ * =============================================================
+ */
+public class SimulationBenchmark {
+
+    private int grid = 200;
+    private int vehicles = 500_000;
+    private int maxHops = 4;
+    private int ticks = 200;
+    private int warmup = 20;
+    private double dt = 10.0;
+    private int maxThreads = Runtime.getRuntime().availableProcessors();
+    private String outPath = null;
+    private String mode = "scaling";
+    private boolean signals = false;
+
+    public static void main(String[] args) throws Exception {
+        SimulationBenchmark bench = new SimulationBenchmark();
+        bench.parseArgs(args);
+
+        List<String> lines = bench.mode.equals("event") ? bench.compareEventMode() : bench.runAll();
+
+        if (bench.outPath == null) {
+            lines.forEach(System.out::println);
+        } else {
+            try (PrintWriter w = new PrintWriter(new FileWriter(bench.outPath))) {
+                lines.forEach(w::println);
+            }
+            System.out.println("Wrote " + lines.size() + " results to " + bench.outPath);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Argument parsing
+    // ---------------------------------------------------------
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--grid":     grid = Integer.parseInt(v); break;
+                case "--vehicles": vehicles = Integer.parseInt(v); break;
+                case "--hops":     maxHops = Integer.parseInt(v); break;
+                case "--ticks":    ticks = Integer.parseInt(v); break;
+                case "--warmup":   warmup = Integer.parseInt(v); break;
+                case "--dt":       dt = Double.parseDouble(v); break;
+                case "--threads":  maxThreads = Integer.parseInt(v); break;
+                case "--out":      outPath = v; break;
+                case "--mode":     mode = v; break;
+                case "--signals":  signals = Boolean.parseBoolean(v); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Runs
+    // ---------------------------------------------------------
+
+    private List<String> runAll() {
+        RoadNetwork net = RoadNetwork.synthetic(grid, grid, 6000, 4000, 1133);
+        List<String> out = new ArrayList<>();
+
+        TrafficSimulation reference = populate(new TrafficSimulation(net, dt, 1133));
+        long[] refMoves = new long[2];
+        double refMs = run(reference, refMoves);
+        long refSum = checksum(reference);
+        out.add(line("sequential", 0, net, refMs, refMs, refSum, true, refMoves));
+
+        for (int t = 1; t <= maxThreads; t++) {
+            try (ParallelTrafficSimulation sim = new ParallelTrafficSimulation(net, dt, 1133, t)) {
+                populate(sim);
+                long[] moves = new long[2];
+                double ms = run(sim, moves);
+                long sum = checksum(sim);
+                out.add(line("parallel", t, net, ms, refMs, sum, sum == refSum, moves));
+            }
+        }
+        return out;
+    }
+
+    private TrafficSimulation populate(TrafficSimulation sim) {
+        sim.addRandomTrips(vehicles, maxHops);
+        if (signals) sim.setSignals(junctionSignals(sim.getNetwork()));
+        return sim;
+    }
+
+    private TrafficSignals junctionSignals(RoadNetwork net) {
+        return TrafficSignals.atJunctions(net, TrafficSignals.DEFAULT_CYCLE,
+                TrafficSignals.DEFAULT_GREEN_RATIO, 1133);
+    }
+
+    /**
+     * Mean wall-clock ms per measured tick (after warmup ticks).
+     * moves gets the path edges completed and the vehicles arrived
+     * over warmup + measured ticks.
+     */
+    private double run(TrafficSimulation sim, long[] moves) {
+        long remaining = remainingEdges(sim);
+        int vehiclesBefore = sim.count;
+        for (int i = 0; i < warmup; i++) sim.update();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ticks; i++) sim.update();
+        double ms = (System.nanoTime() - t0) / 1e6 / ticks;
+        moves[0] = remaining - remainingEdges(sim);
+        moves[1] = vehiclesBefore - sim.count;
+        return ms;
+    }
+
+    // Path entries still ahead of (or under) every vehicle
+    private static long remainingEdges(TrafficSimulation sim) {
+        long r = 0;
+        for (int v = 0; v < sim.count; v++) r += sim.vehPathEnd[v] - sim.vehPathIdx[v];
+        return r;
+    }
+
+    private String line(String engine, int threads, RoadNetwork net, double ms,
+                        double refMs, long checksum, boolean identical, long[] moves) {
+        return String.format(Locale.ROOT,
+                "{\"engine\":\"%s\",\"threads\":%d,\"nodes\":%d,\"edges\":%d,"
+                        + "\"vehicles\":%d,\"ticks\":%d,\"dt\":%.1f,\"ms_per_tick\":%.3f,"
+                        + "\"vehicle_updates_per_s\":%.0f,\"speedup\":%.2f,"
+                        + "\"edges_completed\":%d,\"arrived\":%d,"
+                        + "\"checksum\":\"%016x\",\"identical\":%b}",
+                engine, threads, net.nodeCount(), net.edgeCount(),
+                vehicles, ticks, dt, ms,
+                vehicles / (ms / 1000.0), refMs / ms,
+                moves[0], moves[1],
+                checksum, identical);
+    }
+
+    // ---------------------------------------------------------
+    // Tick mode vs event mode (same trips, run to completion)
+    // ---------------------------------------------------------
+
+    private List<String> compareEventMode() {
+        RoadNetwork net = RoadNetwork.synthetic(grid, grid, 6000, 4000, 1133);
+        int m = net.edgeCount();
+
+        TrafficSimulation tick = populate(new TrafficSimulation(net, dt, 1133));
+        EventDrivenSimulation event = new EventDrivenSimulation(net);
+        if (signals) event.setSignals(junctionSignals(net));
+        long[] expectedEntries = new long[m];
+        int[] path = new int[maxHops];
+        for (int v = 0; v < tick.count; v++) {
+            int len = tick.vehPathEnd[v] - tick.vehPathIdx[v];
+            System.arraycopy(tick.pathPool, tick.vehPathIdx[v], path, 0, len);
+            for (int i = 0; i < len; i++) expectedEntries[path[i]]++;
+            event.addVehicle(tick.vehTag[v], path, len, tick.vehSpeedFactor[v]);
+        }
+
+        double[] tripTotal = new double[2];
+        tick.setArrivalListener((tag, dep, arr) -> tripTotal[0] += arr - dep);
+        event.setArrivalListener((tag, dep, arr) -> tripTotal[1] += arr - dep);
+
+        // tick mode: vehicle-seconds = flow after each tick * dt
+        double[] tickVehSec = new double[m];
+        long t0 = System.nanoTime();
+        while (tick.getVehicleCount() > 0) {
+            tick.update();
+            for (int e = 0; e < m; e++) tickVehSec[e] += tick.edgeFlow[e] * tick.getDt();
+        }
+        double tickMs = (System.nanoTime() - t0) / 1e6;
+
+        t0 = System.nanoTime();
+        event.runToCompletion();
+        double eventMs = (System.nanoTime() - t0) / 1e6;
+
+        boolean entriesMatch = true;
+        double tickTotal = 0, eventTotal = 0;
+        for (int e = 0; e < m; e++) {
+            entriesMatch &= event.getEdgeEntries(e) == expectedEntries[e];
+            tickTotal += tickVehSec[e];
+            eventTotal += event.getEdgeVehicleSeconds(e);
+        }
+
+        List<String> out = new ArrayList<>();
+        out.add(String.format(Locale.ROOT,
+                "{\"engine\":\"tick\",\"nodes\":%d,\"edges\":%d,\"vehicles\":%d,"
+                        + "\"sim_s\":%.1f,\"wall_ms\":%.1f,\"vehicle_seconds\":%.0f,"
+                        + "\"mean_trip_s\":%.1f}",
+                net.nodeCount(), m, vehicles, tick.getSimTime(), tickMs,
+                tickTotal, tripTotal[0] / vehicles));
+        out.add(String.format(Locale.ROOT,
+                "{\"engine\":\"event\",\"nodes\":%d,\"edges\":%d,\"vehicles\":%d,"
+                        + "\"sim_s\":%.1f,\"wall_ms\":%.1f,\"vehicle_seconds\":%.0f,"
+                        + "\"mean_trip_s\":%.1f,\"events\":%d,\"speedup\":%.1f,"
+                        + "\"entries_match\":%b,\"vehicle_seconds_rel_diff\":%.5f}",
+                net.nodeCount(), m, vehicles, event.getSimTime(), eventMs,
+                eventTotal, tripTotal[1] / vehicles, event.getEventCount(),
+                tickMs / eventMs, entriesMatch,
+                Math.abs(eventTotal - tickTotal) / Math.max(1.0, tickTotal)));
+        return out;
+    }
+
+    // ---------------------------------------------------------
+    // State checksum (exact: float bits, not rounded values)
+    // ---------------------------------------------------------
+
+    static long checksum(TrafficSimulation sim) {
+        long h = 1125899906842597L;
+        h = mix(h, sim.count);
+        h = mix(h, Double.doubleToLongBits(sim.getSimTime()));
+        for (int v = 0; v < sim.count; v++) {
+            h = mix(h, sim.vehEdge[v]);
+            h = mix(h, sim.vehPathIdx[v] - sim.vehPathEnd[v]);
+            h = mix(h, Float.floatToIntBits(sim.vehTimeOnEdge[v]));
+            h = mix(h, sim.vehTag[v]);
+        }
+        for (int e = 0; e < sim.edgeFlow.length; e++) {
+            h = mix(h, sim.edgeFlow[e]);
+            h = mix(h, Float.floatToIntBits(sim.edgeTravelTime[e]));
+        }
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        h ^= v;
+        h *= 0x100000001B3L;
+        return h ^ (h >>> 29);
+    }
+}
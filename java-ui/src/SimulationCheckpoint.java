@@ -0,0 +1,439 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * =============================================================
+ * SimulationCheckpoint - SAVE / RESTORE A TrafficSimulation
+ * =============================================================
+ * Everything a tick reads or writes, copied out of the simulation
+ * in one go between ticks:
+ *   clock (simTime, tick), SplitMix64 RNG state, the vehicle
+ *   columns (first count entries), the path pool (first poolSize
+ *   entries, same layout), edge flows and travel times, and the
+ *   signal plan (cycle, green time, offset per node)
+ * A simulation restored from it continues BIT-EXACTLY like the
+ * original (same network, dt and CongestionModel settings).
+ *
+ * capture() is a handful of System.arraycopy calls on the
+ * simulation thread; the copy is immutable, so write() can run on
+ * another thread (writeAsync) while the simulation keeps ticking.
+ *
+ * File (big-endian, primitive arrays bulk-written through a
+ * direct ByteBuffer and FileChannel)
+ *   header  int magic 'UFCP', int version, int nodeCount,
+ *           int edgeCount, long networkHash, double dt,
+ *           double simTime, long tick, long rngState,
+ *           int vehicles, int poolSize, int hasSignals
+ *   arrays  vehEdge, vehPathIdx, vehPathEnd, vehTag (int),
+ *           vehTimeOnEdge, vehSpeedFactor (float),
+ *           vehDepart (double)                  [vehicles each]
+ *           pathPool (int), pathPlanCost (float) [poolSize each]
+ *           edgeFlow (int), edgeTravelTime (float) [edgeCount]
+ *           cycle, greenTime, offset (double)   [nodeCount, if
+ *                                                hasSignals]
+ *   footer  long crc32 of everything above, int magic
+ * Written to <file>.tmp and renamed over <file>, so a crash while
+ * writing leaves the previous checkpoint intact.
+ * =============================================================
+ */
+public final class SimulationCheckpoint {
+
+    static final int MAGIC = 0x55464350;      // "UFCP"
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 * 4 + 8 + 8 + 8 + 8 + 8 + 4 * 3;
+    private static final int FOOTER_BYTES = 8 + 4;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    // --- Identity of the simulation it belongs to ---
+    private final int nodeCount;
+    private final int edgeCount;
+    private final long networkHash;
+    private final double dt;
+
+    // --- State ---
+    private final double simTime;
+    private final long tick;
+    private final long rngState;
+    private final int count;
+    private final int[] vehEdge, vehPathIdx, vehPathEnd, vehTag;
+    private final float[] vehTimeOnEdge, vehSpeedFactor;
+    private final double[] vehDepart;
+    private final int[] pathPool;
+    private final float[] pathPlanCost;
+    private final int[] edgeFlow;
+    private final float[] edgeTravelTime;
+    private final double[] signalCycle, signalGreen, signalOffset;   // null = no signals
+
+    private SimulationCheckpoint(int nodeCount, int edgeCount, long networkHash, double dt,
+                                 double simTime, long tick, long rngState, int count,
+                                 int[] vehEdge, int[] vehPathIdx, int[] vehPathEnd, int[] vehTag,
+                                 float[] vehTimeOnEdge, float[] vehSpeedFactor,
+                                 double[] vehDepart, int[] pathPool, float[] pathPlanCost,
+                                 int[] edgeFlow, float[] edgeTravelTime,
+                                 double[] signalCycle, double[] signalGreen,
+                                 double[] signalOffset) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.networkHash = networkHash;
+        this.dt = dt;
+        this.simTime = simTime;
+        this.tick = tick;
+        this.rngState = rngState;
+        this.count = count;
+        this.vehEdge = vehEdge;
+        this.vehPathIdx = vehPathIdx;
+        this.vehPathEnd = vehPathEnd;
+        this.vehTag = vehTag;
+        this.vehTimeOnEdge = vehTimeOnEdge;
+        this.vehSpeedFactor = vehSpeedFactor;
+        this.vehDepart = vehDepart;
+        this.pathPool = pathPool;
+        this.pathPlanCost = pathPlanCost;
+        this.edgeFlow = edgeFlow;
+        this.edgeTravelTime = edgeTravelTime;
+        this.signalCycle = signalCycle;
+        this.signalGreen = signalGreen;
+        this.signalOffset = signalOffset;
+    }
+
+    public double getSimTime() { return simTime; }
+    public long getTick() { return tick; }
+    public int getVehicleCount() { return count; }
+
+    // ---------------------------------------------------------
+    // Capture / restore (simulation thread, between ticks)
+    // ---------------------------------------------------------
+
+    /** Copies the simulation's state; it may tick on right away. */
+    public static SimulationCheckpoint capture(TrafficSimulation sim) {
+        RoadNetwork net = sim.getNetwork();
+        int n = sim.count;
+        TrafficSignals s = sim.signals;
+        return new SimulationCheckpoint(net.nodeCount(), net.edgeCount(), networkHash(net),
+                sim.getDt(), sim.getSimTime(), sim.getTick(), sim.rngState, n,
+                Arrays.copyOf(sim.vehEdge, n), Arrays.copyOf(sim.vehPathIdx, n),
+                Arrays.copyOf(sim.vehPathEnd, n), Arrays.copyOf(sim.vehTag, n),
+                Arrays.copyOf(sim.vehTimeOnEdge, n), Arrays.copyOf(sim.vehSpeedFactor, n),
+                Arrays.copyOf(sim.vehDepart, n),
+                Arrays.copyOf(sim.pathPool, sim.poolSize),
+                Arrays.copyOf(sim.pathPlanCost, sim.poolSize),
+                sim.edgeFlow.clone(), sim.edgeTravelTime.clone(),
+                s == null ? null : s.cycle.clone(),
+                s == null ? null : s.greenTime.clone(),
+                s == null ? null : s.offset.clone());
+    }
+
+    /**
+     * Overwrites sim's state with this checkpoint. sim must be built
+     * on the same network with the same dt.
+     */
+    public void restoreInto(TrafficSimulation sim) {
+        RoadNetwork net = sim.getNetwork();
+        if (net.nodeCount() != nodeCount || net.edgeCount() != edgeCount
+                || networkHash(net) != networkHash) {
+            throw new IllegalArgumentException("Checkpoint was taken on a different network");
+        }
+        if (sim.getDt() != dt) {
+            throw new IllegalArgumentException("Checkpoint dt " + dt + " != simulation dt " + sim.getDt());
+        }
+
+        // Columns keep some headroom, as ensureVehicleCapacity would
+        int cap = Math.max(count, 16);
+        sim.vehEdge = Arrays.copyOf(vehEdge, cap);
+        sim.vehPathIdx = Arrays.copyOf(vehPathIdx, cap);
+        sim.vehPathEnd = Arrays.copyOf(vehPathEnd, cap);
+        sim.vehTag = Arrays.copyOf(vehTag, cap);
+        sim.vehTimeOnEdge = Arrays.copyOf(vehTimeOnEdge, cap);
+        sim.vehSpeedFactor = Arrays.copyOf(vehSpeedFactor, cap);
+        sim.vehDepart = Arrays.copyOf(vehDepart, cap);
+        sim.count = count;
+
+        sim.pathPool = Arrays.copyOf(pathPool, Math.max(pathPool.length, 64));
+        sim.pathPlanCost = Arrays.copyOf(pathPlanCost, sim.pathPool.length);
+        sim.poolSize = pathPool.length;
+
+        System.arraycopy(edgeFlow, 0, sim.edgeFlow, 0, edgeCount);
+        System.arraycopy(edgeTravelTime, 0, sim.edgeTravelTime, 0, edgeCount);
+        sim.rngState = rngState;
+        sim.restoreClock(simTime, tick);
+        sim.setSignals(signalCycle == null ? null
+                : TrafficSignals.restore(net, signalCycle, signalGreen, signalOffset));
+    }
+
+    /** Order-sensitive hash of the topology, capacities and free-flow times. */
+    static long networkHash(RoadNetwork net) {
+        long h = 0x9E3779B97F4A7C15L ^ net.nodeCount();
+        for (int e = 0; e < net.edgeCount(); e++) {
+            h = (h ^ net.edgeFrom[e]) * 0x100000001B3L;
+            h = (h ^ net.edgeTo[e]) * 0x100000001B3L;
+            h = (h ^ Float.floatToIntBits(net.edgeCapacity[e])) * 0x100000001B3L;
+            h = (h ^ Float.floatToIntBits(net.edgeFreeFlowTime[e])) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    // ---------------------------------------------------------
+    // Writing
+    // ---------------------------------------------------------
+
+    public void write(String file) throws IOException {
+        Path target = Paths.get(file);
+        Path tmp = Paths.get(file + ".tmp");
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buf.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(edgeCount);
+            buf.putLong(networkHash).putDouble(dt).putDouble(simTime).putLong(tick);
+            buf.putLong(rngState).putInt(count).putInt(pathPool.length);
+            buf.putInt(signalCycle != null ? 1 : 0);
+
+            putInts(ch, buf, crc, vehEdge);
+            putInts(ch, buf, crc, vehPathIdx);
+            putInts(ch, buf, crc, vehPathEnd);
+            putInts(ch, buf, crc, vehTag);
+            putFloats(ch, buf, crc, vehTimeOnEdge);
+            putFloats(ch, buf, crc, vehSpeedFactor);
+            putDoubles(ch, buf, crc, vehDepart);
+            putInts(ch, buf, crc, pathPool);
+            putFloats(ch, buf, crc, pathPlanCost);
+            putInts(ch, buf, crc, edgeFlow);
+            putFloats(ch, buf, crc, edgeTravelTime);
+            if (signalCycle != null) {
+                putDoubles(ch, buf, crc, signalCycle);
+                putDoubles(ch, buf, crc, signalGreen);
+                putDoubles(ch, buf, crc, signalOffset);
+            }
+            flush(ch, buf, crc);
+
+            buf.putLong(crc.getValue()).putInt(MAGIC);
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** write() on the given executor; the checkpoint is immutable. */
+    public CompletableFuture<Void> writeAsync(String file, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write(file);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Checkpoint write failed: " + file, ex);
+            }
+        }, executor);
+    }
+
+    private static void putInts(FileChannel ch, ByteBuffer buf, CRC32 crc, int[] a)
+            throws IOException {
+        for (int off = 0; off < a.length; ) {
+            if (buf.remaining() < 4) flush(ch, buf, crc);
+            int n = Math.min(a.length - off, buf.remaining() / 4);
+            buf.asIntBuffer().put(a, off, n);
+            buf.position(buf.position() + n * 4);
+            off += n;
+        }
+    }
+
+    private static void putFloats(FileChannel ch, ByteBuffer buf, CRC32 crc, float[] a)
+            throws IOException {
+        for (int off = 0; off < a.length; ) {
+            if (buf.remaining() < 4) flush(ch, buf, crc);
+            int n = Math.min(a.length - off, buf.remaining() / 4);
+            buf.asFloatBuffer().put(a, off, n);
+            buf.position(buf.position() + n * 4);
+            off += n;
+        }
+    }
+
+    private static void putDoubles(FileChannel ch, ByteBuffer buf, CRC32 crc, double[] a)
+            throws IOException {
+        for (int off = 0; off < a.length; ) {
+            if (buf.remaining() < 8) flush(ch, buf, crc);
+            int n = Math.min(a.length - off, buf.remaining() / 8);
+            buf.asDoubleBuffer().put(a, off, n);
+            buf.position(buf.position() + n * 8);
+            off += n;
+        }
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf, CRC32 crc) throws IOException {
+        buf.flip();
+        crc.update(buf.duplicate());
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    // ---------------------------------------------------------
+    // Reading
+    // ---------------------------------------------------------
+
+    public static SimulationCheckpoint read(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) throw new IOException("Not a checkpoint: " + file);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+            while (footer.hasRemaining()) {
+                if (ch.read(footer, size - FOOTER_BYTES + footer.position()) < 0) break;
+            }
+            footer.flip();
+            long storedCrc = footer.getLong();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Checkpoint incomplete (no footer): " + file);
+            }
+
+            Reader in = new Reader(ch, size - FOOTER_BYTES);
+            in.need(HEADER_BYTES);
+            ByteBuffer b = in.buf;
+            if (b.getInt() != MAGIC) throw new IOException("Not a checkpoint: " + file);
+            int version = b.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            int nodeCount = b.getInt();
+            int edgeCount = b.getInt();
+            long networkHash = b.getLong();
+            double dt = b.getDouble();
+            double simTime = b.getDouble();
+            long tick = b.getLong();
+            long rngState = b.getLong();
+            int count = b.getInt();
+            int poolSize = b.getInt();
+            boolean signals = b.getInt() != 0;
+
+            // Sizes come from the header: check them against the file before allocating
+            if (nodeCount < 0 || edgeCount < 0 || count < 0 || poolSize < 0) {
+                throw new IOException("Checkpoint corrupt (negative size): " + file);
+            }
+            long payload = HEADER_BYTES
+                    + (long) count * (4 * 4 + 4 * 2 + 8)
+                    + (long) poolSize * (4 + 4)
+                    + (long) edgeCount * (4 + 4)
+                    + (signals ? (long) nodeCount * 8 * 3 : 0L);
+            if (payload != size - FOOTER_BYTES) {
+                throw new IOException("Checkpoint corrupt (size does not match header): " + file);
+            }
+
+            int[] vehEdge = in.ints(count);
+            int[] vehPathIdx = in.ints(count);
+            int[] vehPathEnd = in.ints(count);
+            int[] vehTag = in.ints(count);
+            float[] vehTimeOnEdge = in.floats(count);
+            float[] vehSpeedFactor = in.floats(count);
+            double[] vehDepart = in.doubles(count);
+            int[] pathPool = in.ints(poolSize);
+            float[] pathPlanCost = in.floats(poolSize);
+            int[] edgeFlow = in.ints(edgeCount);
+            float[] edgeTravelTime = in.floats(edgeCount);
+            double[] cycle = signals ? in.doubles(nodeCount) : null;
+            double[] green = signals ? in.doubles(nodeCount) : null;
+            double[] offset = signals ? in.doubles(nodeCount) : null;
+
+            in.finish();
+            if (in.crc.getValue() != storedCrc) {
+                throw new IOException("Checkpoint corrupt (checksum mismatch): " + file);
+            }
+            return new SimulationCheckpoint(nodeCount, edgeCount, networkHash, dt,
+                    simTime, tick, rngState, count, vehEdge, vehPathIdx, vehPathEnd, vehTag,
+                    vehTimeOnEdge, vehSpeedFactor, vehDepart, pathPool, pathPlanCost,
+                    edgeFlow, edgeTravelTime, cycle, green, offset);
+        }
+    }
+
+    /** Buffered, checksummed reads of the payload [0, end). */
+    private static final class Reader {
+        final FileChannel ch;
+        final long end;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        final CRC32 crc = new CRC32();
+        long filePos = 0;
+
+        Reader(FileChannel ch, long end) {
+            this.ch = ch;
+            this.end = end;
+            buf.limit(0);
+        }
+
+        /** Makes at least bytes (<= BUFFER_BYTES) available in buf. */
+        void need(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) return;
+            buf.compact();
+            while (buf.position() < bytes) {
+                int want = (int) Math.min(buf.remaining(), end - filePos);
+                if (want <= 0) throw new IOException("Checkpoint truncated");
+                ByteBuffer slice = buf.duplicate();
+                slice.limit(slice.position() + want);
+                int got = ch.read(slice, filePos);
+                if (got < 0) throw new IOException("Checkpoint truncated");
+                ByteBuffer read = buf.duplicate();
+                read.limit(buf.position() + got);
+                crc.update(read);
+                buf.position(buf.position() + got);
+                filePos += got;
+            }
+            buf.flip();
+        }
+
+        /** The payload must be used up exactly. */
+        void finish() throws IOException {
+            if (buf.hasRemaining() || filePos != end) {
+                throw new IOException("Checkpoint has trailing data");
+            }
+        }
+
+        int[] ints(int n) throws IOException {
+            int[] a = new int[n];
+            for (int off = 0; off < n; ) {
+                need(4);
+                int k = Math.min(n - off, buf.remaining() / 4);
+                buf.asIntBuffer().get(a, off, k);
+                buf.position(buf.position() + k * 4);
+                off += k;
+            }
+            return a;
+        }
+
+        float[] floats(int n) throws IOException {
+            float[] a = new float[n];
+            for (int off = 0; off < n; ) {
+                need(4);
+                int k = Math.min(n - off, buf.remaining() / 4);
+                buf.asFloatBuffer().get(a, off, k);
+                buf.position(buf.position() + k * 4);
+                off += k;
+            }
+            return a;
+        }
+
+        double[] doubles(int n) throws IOException {
+            double[] a = new double[n];
+            for (int off = 0; off < n; ) {
+                need(8);
+                int k = Math.min(n - off, buf.remaining() / 8);
+                buf.asDoubleBuffer().get(a, off, k);
+                buf.position(buf.position() + k * 8);
+                off += k;
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * SimulationRecorder - COMPACT BINARY SIMULATION LOG
+ * =============================================================
+ * Appends one frame per SimulationSnapshot (edge congestion and
+ * vehicle positions) to a chunked, delta-encoded file that
+ * SimulationReplay can seek in without re-simulating.
+ *
+ * Encoding
+ *   - congestion quantised to 1/1024, positions to 1/65535 of
+ *     the network's bounding box
+ *   - every value is stored as the zig-zag varint DIFFERENCE to
+ *     the same slot in the previous frame (edges barely change
+ *     between ticks, so most edges cost one byte)
+ *   - every keyframeInterval frames a new CHUNK starts whose first
+ *     frame is a keyframe (differences to zero), so any frame can
+ *     be rebuilt from its own chunk alone
+ *
+ * File (big-endian)
+ *   header  int magic 'UFRC', int version, int edgeCount,
+ *           int keyframeInterval, float congestionStep,
+ *           float minX, float minY, float stepX, float stepY
+ *   chunk   int frames, double firstTime, double lastTime,
+ *           int bytes, byte[bytes] frame data
+ *   index   int chunks, then per chunk: long offset,
+ *           double firstTime, double lastTime, int frames
+ *   footer  long indexOffset, int magic
+ *   frame   double simTime, varint vehicles, edge deltas,
+ *           x deltas, y deltas
+ * =============================================================
+ */
+public class SimulationRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x55465243;      // "UFRC"
+    static final int VERSION = 1;
+    static final float CONGESTION_STEP = 1f / 1024f;
+    static final int POSITION_LEVELS = 65535;
+
+    private final DataOutputStream out;
+    private final int edgeCount;
+    private final int keyframeInterval;
+    private final float minX, minY, stepX, stepY;
+    private long written = 0;
+
+    // --- Previous frame, quantised (the delta reference) ---
+    private final int[] prevEdge;
+    private int[] prevX = new int[0];
+    private int[] prevY = new int[0];
+    private int prevCount = 0;
+
+    // --- Current chunk ---
+    private byte[] chunk = new byte[1 << 16];
+    private int chunkBytes = 0;
+    private int chunkFrames = 0;
+    private double chunkFirst, chunkLast;
+
+    // --- Time index ---
+    private long[] indexOffset = new long[64];
+    private double[] indexFirst = new double[64];
+    private double[] indexLast = new double[64];
+    private int[] indexFrames = new int[64];
+    private int chunks = 0;
+    private long frames = 0;
+    private boolean closed = false;
+
+    public SimulationRecorder(RoadNetwork net, String file, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be at least 1");
+        }
+        this.edgeCount = net.edgeCount();
+        this.keyframeInterval = keyframeInterval;
+        this.prevEdge = new int[edgeCount];
+
+        float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE;
+        float x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+        for (int v = 0; v < net.nodeCount(); v++) {
+            x0 = Math.min(x0, net.nodeX[v]);
+            y0 = Math.min(y0, net.nodeY[v]);
+            x1 = Math.max(x1, net.nodeX[v]);
+            y1 = Math.max(y1, net.nodeY[v]);
+        }
+        if (net.nodeCount() == 0) x0 = y0 = x1 = y1 = 0f;
+        this.minX = x0;
+        this.minY = y0;
+        this.stepX = Math.max(x1 - x0, 1f) / POSITION_LEVELS;
+        this.stepY = Math.max(y1 - y0, 1f) / POSITION_LEVELS;
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(edgeCount);
+        out.writeInt(keyframeInterval);
+        out.writeFloat(CONGESTION_STEP);
+        out.writeFloat(minX);
+        out.writeFloat(minY);
+        out.writeFloat(stepX);
+        out.writeFloat(stepY);
+        written = 36;
+    }
+
+    /** One keyframe every 300 frames (5 minutes at dt = 1 s). */
+    public SimulationRecorder(RoadNetwork net, String file) throws IOException {
+        this(net, file, 300);
+    }
+
+    public long getFrameCount() { return frames; }
+
+    // ---------------------------------------------------------
+    // Recording
+    // ---------------------------------------------------------
+
+    /** Appends the snapshot as the next frame (simulation thread). */
+    public void record(SimulationSnapshot s) throws IOException {
+        if (closed) throw new IllegalStateException("Recorder is closed");
+        if (s.edgeCount() != edgeCount) {
+            throw new IllegalArgumentException("Snapshot has " + s.edgeCount()
+                    + " edges, recording has " + edgeCount);
+        }
+
+        if (chunkFrames == 0) {
+            // keyframe: deltas against an all-zero previous frame
+            Arrays.fill(prevEdge, 0);
+            prevCount = 0;
+            chunkFirst = s.getSimTime();
+        }
+
+        int count = s.getVehicleCount();
+        if (prevX.length < count) {
+            int cap = Math.max(count, prevX.length * 2 + 16);
+            prevX = Arrays.copyOf(prevX, cap);
+            prevY = Arrays.copyOf(prevY, cap);
+        }
+        ensureChunk(12 + 5 * (edgeCount + 2 * count));
+
+        putLong(Double.doubleToLongBits(s.getSimTime()));
+        putVarint(count);
+
+        for (int e = 0; e < edgeCount; e++) {
+            int q = Math.round(s.edgeCongestion(e) / CONGESTION_STEP);
+            putVarint(zigzag(q - prevEdge[e]));
+            prevEdge[e] = q;
+        }
+
+        float[] xs = s.vehicleX(), ys = s.vehicleY();
+        int keep = Math.min(count, prevCount);
+        for (int v = 0; v < count; v++) {
+            int q = Math.round((xs[v] - minX) / stepX);
+            putVarint(zigzag(q - (v < keep ? prevX[v] : 0)));
+            prevX[v] = q;
+        }
+        for (int v = 0; v < count; v++) {
+            int q = Math.round((ys[v] - minY) / stepY);
+            putVarint(zigzag(q - (v < keep ? prevY[v] : 0)));
+            prevY[v] = q;
+        }
+        prevCount = count;
+
+        chunkLast = s.getSimTime();
+        chunkFrames++;
+        frames++;
+        if (chunkFrames == keyframeInterval) flushChunk();
+    }
+
+    /** Writes the last chunk, the time index and the footer. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flushChunk();
+            long indexAt = written;
+            out.writeInt(chunks);
+            for (int c = 0; c < chunks; c++) {
+                out.writeLong(indexOffset[c]);
+                out.writeDouble(indexFirst[c]);
+                out.writeDouble(indexLast[c]);
+                out.writeInt(indexFrames[c]);
+            }
+            out.writeLong(indexAt);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushChunk() throws IOException {
+        if (chunkFrames == 0) return;
+        if (chunks == indexOffset.length) {
+            int cap = chunks * 2;
+            indexOffset = Arrays.copyOf(indexOffset, cap);
+            indexFirst = Arrays.copyOf(indexFirst, cap);
+            indexLast = Arrays.copyOf(indexLast, cap);
+            indexFrames = Arrays.copyOf(indexFrames, cap);
+        }
+        indexOffset[chunks] = written;
+        indexFirst[chunks] = chunkFirst;
+        indexLast[chunks] = chunkLast;
+        indexFrames[chunks] = chunkFrames;
+        chunks++;
+
+        out.writeInt(chunkFrames);
+        out.writeDouble(chunkFirst);
+        out.writeDouble(chunkLast);
+        out.writeInt(chunkBytes);
+        out.write(chunk, 0, chunkBytes);
+        written += 24 + chunkBytes;
+
+        chunkBytes = 0;
+        chunkFrames = 0;
+    }
+
+    // ---------------------------------------------------------
+    // Byte encoding (shared with SimulationReplay)
+    // ---------------------------------------------------------
+
+    private void ensureChunk(int extra) {
+        if (chunkBytes + extra > chunk.length) {
+            chunk = Arrays.copyOf(chunk, Math.max(chunkBytes + extra, chunk.length * 2));
+        }
+    }
+
+    private void putLong(long v) {
+        for (int s = 56; s >= 0; s -= 8) chunk[chunkBytes++] = (byte) (v >>> s);
+    }
+
+    private void putVarint(int v) {
+        while ((v & ~0x7F) != 0) {
+            chunk[chunkBytes++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        chunk[chunkBytes++] = (byte) v;
+    }
+
+    static int zigzag(int v) { return (v << 1) ^ (v >> 31); }
+    static int unzigzag(int v) { return (v >>> 1) ^ -(v & 1); }
+}
@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * SimulationReplay - SEEKABLE PLAYBACK OF A SimulationRecorder LOG
+ * =============================================================
+ * Reads the header and time index once. seek(t) then
+ *   1. binary-searches the index for the chunk holding t
+ *   2. reads that chunk and decodes its keyframe
+ *   3. applies deltas up to the last frame at or before t
+ * so a seek costs O(one chunk) wherever t is. Seeking forward
+ * within the loaded chunk continues from the current frame,
+ * which makes normal playback one delta per frame.
+ *
+ * Not thread-safe; use from one thread (normally the EDT).
+ * =============================================================
+ */
+public class SimulationReplay implements AutoCloseable {
+
+    private final RoadNetwork net;
+    private final RandomAccessFile file;
+    private final int edgeCount;
+    private final float congestionStep, minX, minY, stepX, stepY;
+
+    // --- Time index ---
+    private final long[] chunkOffset;
+    private final double[] chunkFirst;
+    private final double[] chunkLast;
+    private final long[] chunkFrameBase;     // frames before the chunk
+    private final long frames;
+
+    // --- Decoder state (quantised current frame) ---
+    private byte[] data = new byte[0];
+    private int dataLength = 0;
+    private int pos = 0;
+    private int loadedChunk = -1;
+    private int decoded = 0;                 // frames of loadedChunk applied
+    private double frameTime = 0.0;
+    private final int[] qEdge;
+    private int[] qX = new int[0];
+    private int[] qY = new int[0];
+    private int vehicles = 0;
+
+    // --- Dequantised frame handed to the snapshot ---
+    private final float[] edgeOut;
+    private float[] xOut = new float[0];
+    private float[] yOut = new float[0];
+
+    /** The network must be the one the recording was made on. */
+    public SimulationReplay(RoadNetwork net, String path) throws IOException {
+        this.net = net;
+        this.file = new RandomAccessFile(path, "r");
+        try {
+            if (file.readInt() != SimulationRecorder.MAGIC) {
+                throw new IOException("Not a simulation recording: " + path);
+            }
+            int version = file.readInt();
+            if (version != SimulationRecorder.VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+            edgeCount = file.readInt();
+            if (edgeCount != net.edgeCount()) {
+                throw new IOException("Recording has " + edgeCount
+                        + " roads, network has " + net.edgeCount());
+            }
+            file.readInt();                                  // keyframe interval
+            congestionStep = file.readFloat();
+            minX = file.readFloat();
+            minY = file.readFloat();
+            stepX = file.readFloat();
+            stepY = file.readFloat();
+
+            file.seek(file.length() - 12);
+            long indexAt = file.readLong();
+            if (file.readInt() != SimulationRecorder.MAGIC) {
+                throw new IOException("Recording is incomplete (no index): " + path);
+            }
+            file.seek(indexAt);
+            int chunks = file.readInt();
+            chunkOffset = new long[chunks];
+            chunkFirst = new double[chunks];
+            chunkLast = new double[chunks];
+            chunkFrameBase = new long[chunks + 1];
+            for (int c = 0; c < chunks; c++) {
+                chunkOffset[c] = file.readLong();
+                chunkFirst[c] = file.readDouble();
+                chunkLast[c] = file.readDouble();
+                chunkFrameBase[c + 1] = chunkFrameBase[c] + file.readInt();
+            }
+            frames = chunkFrameBase[chunks];
+        } catch (IOException | RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+        qEdge = new int[edgeCount];
+        edgeOut = new float[edgeCount];
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    public long getFrameCount() { return frames; }
+    public int getChunkCount() { return chunkOffset.length; }
+    public double getStartTime() { return frames == 0 ? 0.0 : chunkFirst[0]; }
+    public double getEndTime() { return frames == 0 ? 0.0 : chunkLast[chunkLast.length - 1]; }
+
+    // ---------------------------------------------------------
+    // Seeking
+    // ---------------------------------------------------------
+
+    /**
+     * Loads the last frame at or before t (the first frame if t is
+     * earlier than the recording) into out. Returns false for an
+     * empty recording.
+     */
+    public boolean seek(double t, SimulationSnapshot out) throws IOException {
+        if (frames == 0) return false;
+
+        int c = chunkAt(t);
+        if (c != loadedChunk || t < frameTime) {
+            loadChunk(c);
+            decodeFrame();
+        }
+        int total = (int) (chunkFrameBase[c + 1] - chunkFrameBase[c]);
+        while (decoded < total && peekTime() <= t) decodeFrame();
+
+        for (int e = 0; e < edgeCount; e++) edgeOut[e] = qEdge[e] * congestionStep;
+        if (xOut.length < vehicles) {
+            xOut = new float[qX.length];
+            yOut = new float[qX.length];
+        }
+        for (int v = 0; v < vehicles; v++) {
+            xOut[v] = minX + qX[v] * stepX;
+            yOut[v] = minY + qY[v] * stepY;
+        }
+        out.assign(net, chunkFrameBase[c] + decoded, frameTime,
+                edgeOut, xOut, yOut, vehicles);
+        return true;
+    }
+
+    /** Last chunk whose first frame is at or before t (0 if none). */
+    private int chunkAt(double t) {
+        int lo = 0, hi = chunkFirst.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunkFirst[mid] <= t) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private void loadChunk(int c) throws IOException {
+        file.seek(chunkOffset[c] + 20);                  // frames, first, last
+        int bytes = file.readInt();
+        if (data.length < bytes) data = new byte[bytes];
+        file.readFully(data, 0, bytes);
+        dataLength = bytes;
+        pos = 0;
+        loadedChunk = c;
+        decoded = 0;
+        Arrays.fill(qEdge, 0);
+        vehicles = 0;
+    }
+
+    // ---------------------------------------------------------
+    // Decoding
+    // ---------------------------------------------------------
+
+    private double peekTime() {
+        int p = pos;
+        long bits = 0;
+        for (int i = 0; i < 8; i++) bits = (bits << 8) | (data[p++] & 0xFF);
+        return Double.longBitsToDouble(bits);
+    }
+
+    private void decodeFrame() throws IOException {
+        if (pos + 8 > dataLength) throw new IOException("Truncated recording chunk");
+        frameTime = peekTime();
+        pos += 8;
+
+        int count = readVarint();
+        if (qX.length < count) {
+            int cap = Math.max(count, qX.length * 2 + 16);
+            qX = Arrays.copyOf(qX, cap);
+            qY = Arrays.copyOf(qY, cap);
+        }
+        int keep = Math.min(count, vehicles);
+
+        for (int e = 0; e < edgeCount; e++) {
+            qEdge[e] += SimulationRecorder.unzigzag(readVarint());
+        }
+        for (int v = 0; v < count; v++) {
+            int d = SimulationRecorder.unzigzag(readVarint());
+            qX[v] = v < keep ? qX[v] + d : d;
+        }
+        for (int v = 0; v < count; v++) {
+            int d = SimulationRecorder.unzigzag(readVarint());
+            qY[v] = v < keep ? qY[v] + d : d;
+        }
+        vehicles = count;
+        decoded++;
+    }
+
+    private int readVarint() throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos >= dataLength) throw new IOException("Truncated recording chunk");
+            byte b = data[pos++];
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IOException("Corrupt varint in recording");
+    }
+}
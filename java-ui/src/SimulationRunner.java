@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * =============================================================
+ * SimulationRunner - TRAFFIC SIMULATION OFF THE EDT
+ * =============================================================
+ * Owns a TrafficSimulation and ticks it on a dedicated daemon
+ * thread. After every tick the state the UI needs is captured
+ * into a SimulationSnapshot and published through a lock-free
+ * TripleBuffer:
+ *   - the simulation never waits for painting
+ *   - painting never waits for the simulation
+ *   - the UI always sees the NEWEST complete tick; ticks that
+ *     happen between two frames are simply skipped
+ *
+ * Pacing: speed = simulated seconds per wall second
+ * (<= 0 runs as fast as possible).
+ *
+ * Node and grid heat in the snapshots come from a FlowAggregator
+ * fed with the tick's edge flows (only changed edges do work);
+ * each capture then reads every node and cell once.
+ *
+ * An optional SimulationRecorder receives every captured tick on
+ * the simulation thread, before it is published. Optional
+ * EdgeViews get flow / capacity after every tick as well
+ * (TrafficSimulation.publishCongestion).
+ *
+ * checkpoint() saves the simulation while it runs: the state is
+ * copied between two ticks and written by a background thread.
+ * =============================================================
+ */
+public class SimulationRunner implements AutoCloseable {
+
+    private static final long MAX_LAG_NANOS = 1_000_000_000L;   // then stop catching up
+
+    private final TrafficSimulation sim;
+    private final FlowAggregator flows;
+    private final TripleBuffer<SimulationSnapshot> buffers =
+            new TripleBuffer<>(SimulationSnapshot::new);
+
+    private volatile double speed;
+    private volatile boolean running = false;
+    private volatile Runnable publishListener;
+    private volatile Runnable tickListener;
+    private final Object recordLock = new Object();   // held while a frame is written
+    private volatile SimulationRecorder recorder;
+    private volatile List<EdgeView> congestionViews;
+    private volatile IOException recordingError;
+    private volatile Thread thread;   // newest loop; older ones end on seeing this
+    private long sequence = 0;
+
+    // Checkpoint captures waiting for the end of the current tick
+    private final ConcurrentLinkedQueue<Runnable> checkpointRequests = new ConcurrentLinkedQueue<>();
+    private ExecutorService checkpointWriter;
+    private boolean closed = false;
+
+    public SimulationRunner(TrafficSimulation sim, double speed) {
+        this.sim = sim;
+        this.flows = new FlowAggregator(sim.getNetwork());
+        this.speed = speed;
+    }
+
+    /** Real-time pacing (1 simulated second per second). */
+    public SimulationRunner(TrafficSimulation sim) {
+        this(sim, 1.0);
+    }
+
+    // ---------------------------------------------------------
+    // Control (any thread)
+    // ---------------------------------------------------------
+
+    /**
+     * Starts ticking on a new thread, which first waits for the
+     * previous loop (if any) to end; never blocks the caller.
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        Thread prev = thread;
+        Thread next = new Thread(() -> {
+            if (prev != null) joinQuietly(prev);   // e.g. stop() from a listener
+            loop();
+        }, "traffic-simulation");
+        next.setDaemon(true);
+        thread = next;   // a loop still unwinding sees it is no longer current
+        next.start();
+    }
+
+    /**
+     * Stops ticking and waits for the current tick to finish. From
+     * a listener (i.e. on the simulation thread itself) it only
+     * stops: the loop ends once the listener returns. The wait
+     * happens outside the lock, so listeners may call start(),
+     * stop() or checkpoint() meanwhile.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            t = thread;
+        }
+        if (Thread.currentThread() != t) joinQuietly(t);
+    }
+
+    private static void joinQuietly(Thread t) {
+        try {
+            t.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        synchronized (this) {
+            closed = true;
+            if (checkpointWriter != null) checkpointWriter.shutdown();   // queued writes finish
+            checkpointWriter = null;
+        }
+    }
+
+    /**
+     * Saves the simulation to file (SimulationCheckpoint). While
+     * running, the state is copied on the simulation thread right
+     * after the current tick; the file is written in the background
+     * either way. The future completes once the file is in place;
+     * after close() it fails with IllegalStateException.
+     */
+    public synchronized CompletableFuture<Void> checkpoint(String file) {
+        if (closed) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Runner is closed"));
+            return failed;
+        }
+        if (checkpointWriter == null) {
+            checkpointWriter = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "simulation-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        ExecutorService writer = checkpointWriter;
+        if (!running) {
+            return SimulationCheckpoint.capture(sim).writeAsync(file, writer);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        checkpointRequests.add(() -> SimulationCheckpoint.capture(sim)
+                .writeAsync(file, writer)
+                .whenComplete((v, ex) -> {
+                    if (ex != null) done.completeExceptionally(ex); else done.complete(null);
+                }));
+        return done;
+    }
+
+    public boolean isRunning() { return running; }
+
+    public void setSpeed(double simSecondsPerWallSecond) { this.speed = simSecondsPerWallSecond; }
+    public double getSpeed() { return speed; }
+
+    /**
+     * Called on the SIMULATION thread after each publish. Keep it
+     * cheap and thread-safe (e.g. JComponent::repaint, which Swing
+     * coalesces).
+     */
+    public void setPublishListener(Runnable listener) { this.publishListener = listener; }
+
+    /**
+     * Called on the SIMULATION thread after each tick, before it is
+     * captured; the only safe place to change the simulation (e.g.
+     * add vehicles) while the runner is running.
+     */
+    public void setTickListener(Runnable listener) { this.tickListener = listener; }
+
+    /**
+     * Records every tick from now on; pass null to stop recording.
+     * Once this returns the previous recorder gets no more frames,
+     * so the caller may close it right away, even while running.
+     * A write error detaches the recorder and is kept for
+     * getRecordingError().
+     */
+    public void setRecorder(SimulationRecorder recorder) {
+        synchronized (recordLock) {
+            this.recorder = recorder;
+            this.recordingError = null;
+        }
+    }
+
+    /**
+     * Keeps these EdgeViews' congestion in step with the simulation
+     * (written on the simulation thread after every tick), so e.g.
+     * RouteFinder's CONGESTION_AWARE mode follows real flows. views
+     * must be the list the network was built from
+     * (RoadNetwork.fromViews); pass null to stop.
+     */
+    public void setCongestionViews(List<EdgeView> views) { this.congestionViews = views; }
+
+    public SimulationRecorder getRecorder() { return recorder; }
+    public IOException getRecordingError() { return recordingError; }
+
+    /**
+     * The simulation. Only touch it while the runner is stopped;
+     * while running it belongs to the simulation thread.
+     */
+    public TrafficSimulation getSimulation() { return sim; }
+
+    // ---------------------------------------------------------
+    // Reader side (one consumer thread, normally the EDT)
+    // ---------------------------------------------------------
+
+    /** Newest published snapshot; isEmpty() until the first tick. */
+    public SimulationSnapshot latest() {
+        return buffers.acquire();
+    }
+
+    public boolean hasNewSnapshot() {
+        return buffers.hasFresh();
+    }
+
+    // ---------------------------------------------------------
+    // Simulation thread
+    // ---------------------------------------------------------
+
+    private void loop() {
+        long deadline = System.nanoTime();
+        Thread self = Thread.currentThread();
+        while (running && thread == self) {
+            sim.update();
+            Runnable t = tickListener;
+            if (t != null) t.run();
+            flows.update(sim.edgeFlow, sim.getSimTime());
+
+            SimulationSnapshot snap = buffers.back();
+            snap.capture(sim, ++sequence, flows);
+            record(snap);
+            buffers.publish();
+
+            List<EdgeView> views = congestionViews;
+            if (views != null) sim.publishCongestion(views);
+
+            Runnable l = publishListener;
+            if (l != null) l.run();
+            runCheckpointRequests();
+
+            double s = speed;
+            if (s > 0) {
+                deadline += (long) (sim.getDt() / s * 1e9);
+                long now = System.nanoTime();
+                if (deadline > now) {
+                    LockSupport.parkNanos(deadline - now);
+                } else if (now - deadline > MAX_LAG_NANOS) {
+                    deadline = now;
+                }
+            } else {
+                deadline = System.nanoTime();
+            }
+        }
+        runCheckpointRequests();   // requested just before stop()
+    }
+
+    private void runCheckpointRequests() {
+        Runnable r;
+        while ((r = checkpointRequests.poll()) != null) r.run();
+    }
+
+    private void record(SimulationSnapshot snap) {
+        if (recorder == null) return;
+        synchronized (recordLock) {
+            SimulationRecorder r = recorder;
+            if (r == null) return;
+            try {
+                r.record(snap);
+            } catch (IOException ex) {
+                recordingError = ex;
+                recorder = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * SimulationSnapshot - ONE PUBLISHED SIMULATION STATE
+ * =============================================================
+ * What the UI needs from one tick, copied out of
+ * TrafficSimulation on the simulation thread:
+ *   - edge congestion (flow / capacity, indexed like the network)
+ *   - edge travel times under that flow (live ticks only), so
+ *     routing can follow the traffic on screen
+ *   - node intensity for the heatmap: smoothed, capacity-weighted
+ *     congestion from the runner's FlowAggregator, else the
+ *     busiest incident edge
+ *   - the same per grid cell (only with a FlowAggregator)
+ *   - vehicle positions in network (= panel world) coordinates
+ *   - simulation clock
+ *
+ * Instances are recycled through a TripleBuffer: a snapshot
+ * handed to the reader is never written while the reader holds
+ * it, so it can be read without locks. Do not keep a reference
+ * across SimulationRunner.latest() calls.
+ * =============================================================
+ */
+public final class SimulationSnapshot {
+
+    private long sequence = 0;           // 0 = nothing published yet
+    private double simTime = 0.0;
+    private int vehicleCount = 0;
+
+    private float[] edgeCongestion = new float[0];
+    private float[] edgeTravelTime = new float[0];
+    private boolean hasTravelTimes = false;
+    private float[] nodeIntensity = new float[0];
+    private float[] cellIntensity = new float[0];
+    private FlowAggregator.Grid grid = null;
+    private float[] vehicleX = new float[0];
+    private float[] vehicleY = new float[0];
+
+    // ---------------------------------------------------------
+    // Reader side
+    // ---------------------------------------------------------
+
+    public long getSequence() { return sequence; }
+    public double getSimTime() { return simTime; }
+    public int getVehicleCount() { return vehicleCount; }
+    public boolean isEmpty() { return sequence == 0; }
+
+    public int edgeCount() { return edgeCongestion.length; }
+    public float edgeCongestion(int e) { return edgeCongestion[e]; }
+
+    /** False for recorded frames, which carry congestion only. */
+    public boolean hasTravelTimes() { return hasTravelTimes; }
+
+    /** Seconds to traverse edge e under this frame's flow. */
+    public float edgeTravelTime(int e) { return edgeTravelTime[e]; }
+
+    /** Copies all edge travel times into out (size edgeCount()). */
+    public void copyTravelTimes(float[] out) {
+        System.arraycopy(edgeTravelTime, 0, out, 0, edgeTravelTime.length);
+    }
+
+    public int nodeCount() { return nodeIntensity.length; }
+    public float nodeIntensity(int n) { return nodeIntensity[n]; }
+
+    /** Heat grid, or null when the frame has no cell intensities. */
+    public FlowAggregator.Grid getGrid() { return grid; }
+    public int cellCount() { return grid == null ? 0 : cellIntensity.length; }
+    public float cellIntensity(int c) { return cellIntensity[c]; }
+
+    /** Vehicle x coordinates; only the first getVehicleCount() are valid. */
+    float[] vehicleX() { return vehicleX; }
+    float[] vehicleY() { return vehicleY; }
+
+    // ---------------------------------------------------------
+    // Writer side (simulation thread / replay only)
+    // ---------------------------------------------------------
+
+    void capture(TrafficSimulation sim, long sequence) {
+        capture(sim, sequence, null);
+    }
+
+    /**
+     * With flows != null, node and cell heat come from the
+     * aggregator (already updated for this tick by the caller).
+     */
+    void capture(TrafficSimulation sim, long sequence, FlowAggregator flows) {
+        RoadNetwork net = sim.getNetwork();
+        int m = net.edgeCount();
+        int n = net.nodeCount();
+        int count = sim.count;
+
+        if (edgeCongestion.length != m) edgeCongestion = new float[m];
+        if (edgeTravelTime.length != m) edgeTravelTime = new float[m];
+        if (nodeIntensity.length != n) nodeIntensity = new float[n];
+        if (vehicleX.length < count) {
+            int cap = Math.max(count, vehicleX.length * 2 + 16);
+            vehicleX = Arrays.copyOf(vehicleX, cap);
+            vehicleY = Arrays.copyOf(vehicleY, cap);
+        }
+
+        // --- Edges and nodes ---
+        final int[] flow = sim.edgeFlow;
+        final float[] cap = net.edgeCapacity;
+        for (int e = 0; e < m; e++) {
+            edgeCongestion[e] = cap[e] > 0f ? flow[e] / cap[e] : 1f;
+        }
+        System.arraycopy(sim.edgeTravelTime, 0, edgeTravelTime, 0, m);
+        hasTravelTimes = true;
+        if (flows != null) {
+            int cells = flows.getGrid().cellCount();
+            if (cellIntensity.length != cells) cellIntensity = new float[cells];
+            flows.nodeIntensities(nodeIntensity, sim.getSimTime());
+            flows.cellIntensities(cellIntensity, sim.getSimTime());
+            grid = flows.getGrid();
+        } else {
+            updateNodeIntensity(net);
+            grid = null;
+        }
+
+        // --- Vehicles: interpolate along the current edge ---
+        final int[] vehEdge = sim.vehEdge;
+        final float[] timeOnEdge = sim.vehTimeOnEdge;
+        final float[] speedFactor = sim.vehSpeedFactor;
+        final float[] travelTime = sim.edgeTravelTime;
+        int w = 0;
+        for (int v = 0; v < count; v++) {
+            int e = vehEdge[v];
+            if (e < 0) continue;
+            float tt = travelTime[e];
+            float p = tt > 0f ? Math.min(1f, timeOnEdge[v] * speedFactor[v] / tt) : 1f;
+            int a = net.edgeFrom[e], b = net.edgeTo[e];
+            vehicleX[w] = net.nodeX[a] + (net.nodeX[b] - net.nodeX[a]) * p;
+            vehicleY[w] = net.nodeY[a] + (net.nodeY[b] - net.nodeY[a]) * p;
+            w++;
+        }
+
+        this.vehicleCount = w;
+        this.simTime = sim.getSimTime();
+        this.sequence = sequence;
+    }
+
+    /** Replaces the contents with a recorded frame (SimulationReplay). */
+    void assign(RoadNetwork net, long sequence, double simTime, float[] congestion,
+                float[] xs, float[] ys, int vehicles) {
+        int m = net.edgeCount();
+        if (edgeCongestion.length != m) edgeCongestion = new float[m];
+        if (nodeIntensity.length != net.nodeCount()) nodeIntensity = new float[net.nodeCount()];
+        if (vehicleX.length < vehicles) {
+            vehicleX = new float[vehicles];
+            vehicleY = new float[vehicles];
+        }
+        System.arraycopy(congestion, 0, edgeCongestion, 0, m);
+        System.arraycopy(xs, 0, vehicleX, 0, vehicles);
+        System.arraycopy(ys, 0, vehicleY, 0, vehicles);
+        updateNodeIntensity(net);
+        grid = null;
+        hasTravelTimes = false;
+
+        this.vehicleCount = vehicles;
+        this.simTime = simTime;
+        this.sequence = sequence;
+    }
+
+    /** Node heat = congestion of its busiest incident edge, capped at 1. */
+    private void updateNodeIntensity(RoadNetwork net) {
+        Arrays.fill(nodeIntensity, 0f);
+        for (int e = 0; e < edgeCongestion.length; e++) {
+            float clamped = Math.min(1f, edgeCongestion[e]);
+            int a = net.edgeFrom[e], b = net.edgeTo[e];
+            if (clamped > nodeIntensity[a]) nodeIntensity[a] = clamped;
+            if (clamped > nodeIntensity[b]) nodeIntensity[b] = clamped;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/**
+ * =============================================================
+ * StreamingHistogram - FIXED-MEMORY QUANTILE SKETCH
+ * =============================================================
+ * Log-spaced buckets between min and max, bucketsPerDoubling per
+ * factor of two, so every quantile is within a constant RELATIVE
+ * error (about 2^(1/b) - 1, e.g. 4.4% for b = 16) no matter how
+ * many values are added:
+ *   bucket 0            values <= min
+ *   bucket 1 .. n-2     (min·2^((i-1)/b), min·2^(i/b)]
+ *   bucket n-1          values > max
+ * Exact count, mean, minimum and maximum are kept alongside.
+ *
+ * add() is O(1) and allocation-free; merge() adds counts, so
+ * per-thread histograms combine into the same buckets (and the
+ * same quantiles) in any order.
+ * =============================================================
+ */
+public final class StreamingHistogram {
+
+    private final double min;
+    private final double bucketsPerDoubling;
+    private final long[] counts;
+
+    private long count = 0;
+    private double sum = 0.0;
+    private double lowest = Double.POSITIVE_INFINITY;
+    private double highest = Double.NEGATIVE_INFINITY;
+
+    public StreamingHistogram(double min, double max, int bucketsPerDoubling) {
+        if (!(min > 0) || !(max > min) || bucketsPerDoubling < 1) {
+            throw new IllegalArgumentException("Need 0 < min < max and bucketsPerDoubling >= 1");
+        }
+        this.min = min;
+        this.bucketsPerDoubling = bucketsPerDoubling;
+        int inner = (int) Math.ceil(log2(max / min) * bucketsPerDoubling);
+        this.counts = new long[inner + 2];
+    }
+
+    private StreamingHistogram(StreamingHistogram layout) {
+        this.min = layout.min;
+        this.bucketsPerDoubling = layout.bucketsPerDoubling;
+        this.counts = new long[layout.counts.length];
+    }
+
+    /** Same bucket layout, no values. */
+    public StreamingHistogram emptyCopy() {
+        return new StreamingHistogram(this);
+    }
+
+    // ---------------------------------------------------------
+    // Updates
+    // ---------------------------------------------------------
+
+    public void add(double value) {
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        if (value < lowest) lowest = value;
+        if (value > highest) highest = value;
+    }
+
+    public void merge(StreamingHistogram other) {
+        if (other.counts.length != counts.length || other.min != min
+                || other.bucketsPerDoubling != bucketsPerDoubling) {
+            throw new IllegalArgumentException("Histogram layouts differ");
+        }
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        count += other.count;
+        sum += other.sum;
+        lowest = Math.min(lowest, other.lowest);
+        highest = Math.max(highest, other.highest);
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0.0;
+        lowest = Double.POSITIVE_INFINITY;
+        highest = Double.NEGATIVE_INFINITY;
+    }
+
+    // ---------------------------------------------------------
+    // Queries
+    // ---------------------------------------------------------
+
+    public long count() { return count; }
+    public double mean() { return count == 0 ? Double.NaN : sum / count; }
+    public double min() { return count == 0 ? Double.NaN : lowest; }
+    public double max() { return count == 0 ? Double.NaN : highest; }
+
+    /**
+     * Value at quantile q in [0, 1]: the geometric middle of the
+     * bucket holding that rank, clamped to the observed range.
+     * NaN when empty.
+     */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        int i = 0;
+        for (; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) break;
+        }
+        double v;
+        if (i == 0) v = lowest;
+        else if (i == counts.length - 1) v = highest;
+        else v = Math.sqrt(upperBound(i - 1) * upperBound(i));
+        return Math.max(lowest, Math.min(highest, v));
+    }
+
+    // ---------------------------------------------------------
+    // Buckets
+    // ---------------------------------------------------------
+
+    private int bucket(double value) {
+        if (!(value > min)) return 0;
+        int i = 1 + (int) (log2(value / min) * bucketsPerDoubling);
+        return Math.min(i, counts.length - 1);
+    }
+
+    /** Upper edge of bucket i (bucket 0 ends at min). */
+    private double upperBound(int i) {
+        return min * Math.pow(2.0, i / bucketsPerDoubling);
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2.0);
+    }
+}
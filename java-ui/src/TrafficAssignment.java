@@ -0,0 +1,381 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * =============================================================
+ * TrafficAssignment - USER EQUILIBRIUM (FRANK-WOLFE)
+ * =============================================================
+ * Static assignment of an OdMatrix (trips per hour) onto a
+ * RoadNetwork, against its capacities in vehicles per hour
+ * (edgeFlowCapacity).
+ *
+ *   x  = all-or-nothing(t(0))
+ *   repeat
+ *     t   = BPR(x)                     (CongestionModel, bulk)
+ *     y   = all-or-nothing(t)          (PARALLEL per origin)
+ *     gap = (t·x - t·y) / t·x          (relative gap)
+ *     s   = α s' + (1-α) y             (conjugate direction, below)
+ *     λ   = bisection on (s-x)·t(x + λ(s-x)) = 0
+ *     x  += λ (s - x);  s' = s
+ *   until gap <= target or maxIterations
+ *
+ * Conjugate Frank-Wolfe (default): α makes s - x conjugate to the
+ * previous direction s' - x under the diagonal Hessian t'(x), i.e.
+ * α = (s'-x)·H·(y-x) / (s'-x)·H·(y-s'), clamped to [0, MAX_ALPHA].
+ * Plain Frank-Wolfe (α = 0) zig-zags in the tail: its gap stalls
+ * around 1e-2..1e-3 on congested networks. Either way the gap is
+ * measured against y, and Result.converged() tells whether the
+ * target was reached before maxIterations.
+ *
+ * All-or-nothing: one DijkstraEngine per worker over fixed
+ * origin chunks; each origin's demand is pushed up its shortest
+ * path tree in one reverse pass over the settled nodes, into the
+ * worker's own load array. Worker arrays are summed in worker
+ * order, so a given thread count always gives the same result.
+ * Pairs whose destination cannot be reached are left out of the
+ * load and reported as unassigned trips (Result.unassignedTrips).
+ * =============================================================
+ */
+public class TrafficAssignment implements AutoCloseable {
+
+    /** Called after every iteration (on the caller's thread). */
+    public interface IterationListener {
+        void onIteration(int iteration, double relativeGap, double stepSize);
+    }
+
+    private static final int LINE_SEARCH_STEPS = 30;
+    private static final double MAX_ALPHA = 0.99;   // keeps some of y in every direction
+
+    private final RoadNetwork net;
+    private final int threads;
+    private final ExecutorService pool;
+    private CongestionModel model = new CongestionModel(CongestionModel.Function.BPR, 0.15, 4.0);
+
+    private int maxIterations = 100;
+    private double targetGap = 1e-4;
+    private boolean conjugate = true;
+    private IterationListener listener;
+
+    public TrafficAssignment(RoadNetwork net, int threads) {
+        this.net = net;
+        this.threads = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "traffic-assignment-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public TrafficAssignment(RoadNetwork net) {
+        this(net, Runtime.getRuntime().availableProcessors());
+    }
+
+    public void setCongestionModel(CongestionModel model) { this.model = model; }
+    public void setMaxIterations(int n) { this.maxIterations = n; }
+    public void setTargetGap(double gap) { this.targetGap = gap; }
+    public void setIterationListener(IterationListener l) { this.listener = l; }
+
+    /** Conjugate Frank-Wolfe directions (default true); false = plain FW. */
+    public void setConjugate(boolean conjugate) { this.conjugate = conjugate; }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // ---------------------------------------------------------
+    // Result
+    // ---------------------------------------------------------
+
+    public static class Result {
+        private final RoadNetwork net;
+        private final double[] flow;          // vehicles per hour
+        private final float[] travelTime;     // seconds under that flow
+        private final double[] gaps;          // relative gap per iteration
+        private final boolean converged;      // gap target reached
+        private final boolean[] unassigned;   // per OD pair: no route
+        private final double unassignedTrips;
+
+        Result(RoadNetwork net, double[] flow, float[] travelTime, double[] gaps,
+               boolean converged, OdMatrix od, boolean[] unassigned) {
+            this.net = net;
+            this.flow = flow;
+            this.travelTime = travelTime;
+            this.gaps = gaps;
+            this.converged = converged;
+            this.unassigned = unassigned;
+            double lost = 0;
+            for (int k = 0; k < unassigned.length; k++) {
+                if (unassigned[k]) lost += od.trips[k];
+            }
+            this.unassignedTrips = lost;
+        }
+
+        public double flow(int e) { return flow[e]; }
+        public double[] getFlows() { return flow; }
+
+        /** Equilibrium travel times; usable directly as routing weights. */
+        public float[] getTravelTimes() { return travelTime; }
+
+        public int iterations() { return gaps.length; }
+        public double[] getGaps() { return gaps; }
+        public double finalGap() { return gaps.length == 0 ? 0 : gaps[gaps.length - 1]; }
+
+        /** False if solve() stopped at maxIterations above the target gap. */
+        public boolean converged() { return converged; }
+
+        /** False if OD pair k had no route and carries no flow. */
+        public boolean isAssigned(int pair) { return !unassigned[pair]; }
+
+        /** Trips per hour whose destination is unreachable. */
+        public double unassignedTrips() { return unassignedTrips; }
+
+        /** Flow / capacity (veh/h), the value EdgeView.setCongestion expects. */
+        public double congestion(int e) {
+            float cap = net.edgeFlowCapacity[e];
+            return cap > 0f ? flow[e] / cap : 1.0;
+        }
+
+        /** Per-edge congestion as floats (panel overlay / heatmap). */
+        public float[] congestionArray() {
+            float[] c = new float[flow.length];
+            for (int e = 0; e < c.length; e++) c[e] = (float) congestion(e);
+            return c;
+        }
+
+        /** Total vehicle-hours spent on the network. */
+        public double totalTravelHours() {
+            double s = 0;
+            for (int e = 0; e < flow.length; e++) s += flow[e] * travelTime[e];
+            return s / 3600.0;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Frank-Wolfe
+    // ---------------------------------------------------------
+
+    public Result solve(OdMatrix od) {
+        int m = net.edgeCount();
+        float[] time = new float[m];
+        double[] x = new double[m];
+        double[] y = new double[m];
+        double[] s = new double[m];          // direction target, kept as s'
+        double[] slope = new double[m];      // t'(x), conjugate weights
+        double[] probe = new double[m];
+        float[] probeTime = new float[m];
+        List<Double> gaps = new ArrayList<>();
+        boolean[] unassigned = new boolean[od.pairCount()];
+        boolean converged = false;
+        boolean first = true;
+
+        model.computeTravelTimes(net, x, time);
+        allOrNothing(od, time, x, unassigned);
+
+        for (int it = 1; it <= maxIterations; it++) {
+            model.computeTravelTimes(net, x, time);
+            allOrNothing(od, time, y, unassigned);
+
+            double tx = 0, ty = 0;
+            for (int e = 0; e < m; e++) {
+                tx += time[e] * x[e];
+                ty += time[e] * y[e];
+            }
+            double gap = tx > 0 ? (tx - ty) / tx : 0.0;
+            gaps.add(gap);
+            if (gap <= targetGap) {
+                converged = true;
+                if (listener != null) listener.onIteration(it, gap, 0.0);
+                break;
+            }
+
+            double alpha = conjugate && !first ? conjugateWeight(x, y, s, slope) : 0.0;
+            for (int e = 0; e < m; e++) s[e] = alpha * s[e] + (1.0 - alpha) * y[e];
+            first = false;
+
+            double lambda = lineSearch(x, s, probe, probeTime);
+            for (int e = 0; e < m; e++) x[e] += lambda * (s[e] - x[e]);
+
+            if (listener != null) listener.onIteration(it, gap, lambda);
+        }
+
+        model.computeTravelTimes(net, x, time);
+        double[] g = new double[gaps.size()];
+        for (int i = 0; i < g.length; i++) g[i] = gaps.get(i);
+        return new Result(net, x, time, g, converged, od, unassigned);
+    }
+
+    /**
+     * α for s = α s' + (1-α) y: (s'-x)·H·(y-x) / (s'-x)·H·(y-s') with
+     * H = diag t'(x), clamped to [0, MAX_ALPHA]; 0 if undefined.
+     */
+    private double conjugateWeight(double[] x, double[] y, double[] prev, double[] slope) {
+        model.computeDerivatives(net, x, slope);
+        double num = 0, den = 0;
+        for (int e = 0; e < x.length; e++) {
+            double hd = slope[e] * (prev[e] - x[e]);
+            num += hd * (y[e] - x[e]);
+            den += hd * (y[e] - prev[e]);
+        }
+        if (den == 0) return 0.0;
+        double alpha = num / den;
+        return alpha > 0 ? Math.min(alpha, MAX_ALPHA) : 0.0;
+    }
+
+    /**
+     * Bisection on the derivative of the Beckmann objective along
+     * x + λ(y - x): Σ (y - x) · t(x + λ(y - x)), which increases in λ
+     * (y is the direction target, AON or conjugate).
+     */
+    private double lineSearch(double[] x, double[] y, double[] probe, float[] probeTime) {
+        double lo = 0.0, hi = 1.0;
+        for (int s = 0; s < LINE_SEARCH_STEPS; s++) {
+            double mid = 0.5 * (lo + hi);
+            for (int e = 0; e < x.length; e++) probe[e] = x[e] + mid * (y[e] - x[e]);
+            model.computeTravelTimes(net, probe, probeTime);
+
+            double slope = 0;
+            for (int e = 0; e < x.length; e++) slope += (y[e] - x[e]) * probeTime[e];
+            if (slope > 0) hi = mid; else lo = mid;
+        }
+        return 0.5 * (lo + hi);
+    }
+
+    // ---------------------------------------------------------
+    // All-or-nothing loading (parallel by origin)
+    // ---------------------------------------------------------
+
+    /**
+     * out[e] = flow on e if every trip takes its shortest path under
+     * time; unassigned[k] is set for pairs with no path at all.
+     */
+    void allOrNothing(OdMatrix od, float[] time, double[] out, boolean[] unassigned) {
+        int[] origins = od.origins();
+        int workers = Math.min(threads, Math.max(1, origins.length));
+        int m = net.edgeCount();
+
+        List<Callable<double[]>> tasks = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            final int lo = (int) ((long) origins.length * w / workers);
+            final int hi = (int) ((long) origins.length * (w + 1) / workers);
+            tasks.add(() -> loadOrigins(od, origins, lo, hi, time, unassigned));
+        }
+
+        Arrays.fill(out, 0.0);
+        try {
+            for (Future<double[]> f : pool.invokeAll(tasks)) {
+                double[] part = f.get();
+                for (int e = 0; e < m; e++) out[e] += part[e];
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Assignment interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Assignment worker failed", ex.getCause());
+        }
+    }
+
+    private double[] loadOrigins(OdMatrix od, int[] origins, int lo, int hi, float[] time,
+                                 boolean[] unassigned) {
+        DijkstraEngine engine = new DijkstraEngine(net);
+        double[] load = new double[net.edgeCount()];
+        double[] nodeLoad = new double[net.nodeCount()];
+
+        for (int i = lo; i < hi; i++) {
+            int o = origins[i];
+            engine.run(o, time, -1);
+
+            // Only settled nodes are cleared below: skip unreachable ones
+            for (int k = od.originStart[o]; k < od.originStart[o + 1]; k++) {
+                int d = od.dest[k];
+                unassigned[k] = engine.dist(d) == Double.POSITIVE_INFINITY;
+                if (!unassigned[k]) nodeLoad[d] += od.trips[k];
+            }
+
+            // children are settled after their parents: walk backwards
+            for (int s = engine.settledCount() - 1; s >= 0; s--) {
+                int v = engine.settledNode(s);
+                double l = nodeLoad[v];
+                if (l == 0) continue;
+                nodeLoad[v] = 0;
+                int e = engine.parentEdge(v);
+                if (e < 0) continue;          // the origin itself
+                load[e] += l;
+                nodeLoad[net.edgeFrom[e]] += l;
+            }
+        }
+        return load;
+    }
+
+    // ---------------------------------------------------------
+    // Command line
+    // ---------------------------------------------------------
+
+    /**
+     *   java TrafficAssignment --data java-ui/data [--od od.csv | --random 200]
+     *        [--threads 4] [--iterations 100] [--gap 1e-4] [--method cfw|fw]
+     *
+     * --data defaults to java-ui/data from the repository root, or
+     * data when run from java-ui.
+     */
+    public static void main(String[] args) throws IOException {
+        String data = new File("java-ui/data").isDirectory() ? "java-ui/data" : "data";
+        String odFile = null;
+        int randomPairs = 200, threads = Runtime.getRuntime().availableProcessors();
+        int iterations = 100;
+        double gap = 1e-4;
+        boolean conjugate = true;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--data":       data = v; break;
+                case "--od":         odFile = v; break;
+                case "--random":     randomPairs = Integer.parseInt(v); break;
+                case "--threads":    threads = Integer.parseInt(v); break;
+                case "--iterations": iterations = Integer.parseInt(v); break;
+                case "--gap":        gap = Double.parseDouble(v); break;
+                case "--method":
+                    if (!v.equals("cfw") && !v.equals("fw")) {
+                        throw new IllegalArgumentException("Unknown method " + v);
+                    }
+                    conjugate = v.equals("cfw");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        RoadNetwork net = RoadNetwork.loadCsv(data + "/intersections.csv", data + "/roads.csv");
+        OdMatrix od = odFile != null
+                ? OdMatrix.loadCsv(net, odFile)
+                : OdMatrix.random(net, randomPairs, 10, 1133);
+        System.out.printf(Locale.ROOT, "Network: %d nodes, %d edges; demand: %d pairs, %.0f trips/h%n",
+                net.nodeCount(), net.edgeCount(), od.pairCount(), od.totalTrips());
+
+        try (TrafficAssignment ta = new TrafficAssignment(net, threads)) {
+            ta.setMaxIterations(iterations);
+            ta.setTargetGap(gap);
+            ta.setConjugate(conjugate);
+            ta.setIterationListener((it, g, step) -> System.out.printf(Locale.ROOT,
+                    "iter %3d  gap %.6e  step %.4f%n", it, g, step));
+
+            long t0 = System.nanoTime();
+            Result r = ta.solve(od);
+            System.out.printf(Locale.ROOT, "%s gap %.3e in %d iterations, %.1f ms; %.1f vehicle-hours%n",
+                    r.converged() ? "Converged to" : "Did not converge (iteration cap), final",
+                    r.finalGap(), r.iterations(), (System.nanoTime() - t0) / 1e6, r.totalTravelHours());
+            if (r.unassignedTrips() > 0) {
+                System.out.printf(Locale.ROOT, "Unassigned (no route): %.0f trips/h%n", r.unassignedTrips());
+            }
+        }
+    }
+}
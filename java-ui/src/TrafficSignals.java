@@ -0,0 +1,158 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * =============================================================
+ * TrafficSignals (JAVA PORT OF C++ TrafficSignal)
+ * =============================================================
+ * Fixed-time signals at intersections, one phase per node as in
+ * the C++ Node::signal (cycleTime, greenRatio). Stored as flat
+ * per-node arrays; a node without a signal has cycle 0.
+ *
+ * Nothing is updated per tick. The phase is pure arithmetic on
+ * the simulation clock:
+ *     phase = (t + offset) mod cycle
+ *     green ⇔ phase < greenRatio * cycle
+ * so signals cost nothing until a vehicle actually reaches one,
+ * and tens of thousands of them need no timers or allocation.
+ * =============================================================
+ */
+public class TrafficSignals {
+
+    /** Same defaults as the C++ TrafficSignal struct. */
+    public static final double DEFAULT_CYCLE = 60.0;
+    public static final double DEFAULT_GREEN_RATIO = 0.6;
+
+    final double[] cycle;                // seconds, 0 = no signal
+    final double[] greenTime;            // seconds of green per cycle
+    final double[] offset;               // seconds added to the clock
+    private int count = 0;
+
+    public TrafficSignals(RoadNetwork net) {
+        int n = net.nodeCount();
+        cycle = new double[n];
+        greenTime = new double[n];
+        offset = new double[n];
+    }
+
+    // ---------------------------------------------------------
+    // Setup
+    // ---------------------------------------------------------
+
+    public void setSignal(int node, double cycleTime, double greenRatio, double offsetSeconds) {
+        if (cycleTime <= 0) {
+            throw new IllegalArgumentException("Signal cycle must be positive");
+        }
+        // A signal that is never green would hold its queue forever
+        if (!(greenRatio > 0)) {
+            throw new IllegalArgumentException("Signal green ratio must be positive");
+        }
+        if (cycle[node] == 0) count++;
+        cycle[node] = cycleTime;
+        greenTime[node] = cycleTime * Math.min(1.0, greenRatio);
+        offset[node] = offsetSeconds;
+    }
+
+    public void removeSignal(int node) {
+        if (cycle[node] != 0) count--;
+        cycle[node] = 0;
+        greenTime[node] = 0;
+        offset[node] = 0;
+    }
+
+    /** Exact per-node arrays as saved by SimulationCheckpoint. */
+    static TrafficSignals restore(RoadNetwork net, double[] cycle,
+                                  double[] greenTime, double[] offset) {
+        TrafficSignals s = new TrafficSignals(net);
+        System.arraycopy(cycle, 0, s.cycle, 0, s.cycle.length);
+        System.arraycopy(greenTime, 0, s.greenTime, 0, s.greenTime.length);
+        System.arraycopy(offset, 0, s.offset, 0, s.offset.length);
+        for (double c : s.cycle) if (c != 0) s.count++;
+        return s;
+    }
+
+    public boolean hasSignal(int node) { return cycle[node] > 0; }
+    public int signalCount() { return count; }
+
+    /**
+     * Signals at every junction (3+ incoming roads) with the C++
+     * default timing and seeded random offsets, so neighbouring
+     * signals are not all in phase.
+     */
+    public static TrafficSignals atJunctions(RoadNetwork net, double cycleTime,
+                                             double greenRatio, long seed) {
+        TrafficSignals s = new TrafficSignals(net);
+        Random rnd = new Random(seed);
+        for (int v = 0; v < net.nodeCount(); v++) {
+            if (net.inDegree(v) >= 3) {
+                s.setSignal(v, cycleTime, greenRatio, rnd.nextDouble() * cycleTime);
+            }
+        }
+        return s;
+    }
+
+    /** True if any data line of intersections.csv has a 4th (signal) field. */
+    public static boolean hasSignalColumn(String intersectionsFile) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(intersectionsFile))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.contains("name")) continue;
+                if (line.split(",").length >= 4) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the hasSignal column of intersections.csv
+     * (name,x,y,signal; "1" = signalised, like FileIO).
+     */
+    public static TrafficSignals loadCsv(RoadNetwork net, String intersectionsFile)
+            throws IOException {
+        TrafficSignals s = new TrafficSignals(net);
+        try (BufferedReader in = new BufferedReader(new FileReader(intersectionsFile))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.contains("name")) continue;
+                String[] p = line.split(",");
+                if (p.length < 4 || !p[3].trim().equals("1")) continue;
+                int v = net.indexOf(p[0].trim());
+                if (v >= 0) s.setSignal(v, DEFAULT_CYCLE, DEFAULT_GREEN_RATIO, 0);
+            }
+        }
+        return s;
+    }
+
+    // ---------------------------------------------------------
+    // Phase (pure functions of the clock)
+    // ---------------------------------------------------------
+
+    /** C++ TrafficSignal::isGreen, evaluated at time t. */
+    public boolean isGreen(int node, double t) {
+        double c = cycle[node];
+        if (c == 0) return true;
+        return phase(node, t, c) < greenTime[node];
+    }
+
+    /** Seconds from t until the signal is green (0 if green now). */
+    public double waitTime(int node, double t) {
+        double c = cycle[node];
+        if (c == 0) return 0;
+        double p = phase(node, t, c);
+        return p < greenTime[node] ? 0 : c - p;
+    }
+
+    /** Earliest time >= t at which a vehicle may pass the node. */
+    public double nextGreen(int node, double t) {
+        return t + waitTime(node, t);
+    }
+
+    private double phase(int node, double t, double c) {
+        double p = (t + offset[node]) % c;
+        return p < 0 ? p + c : p;
+    }
+}
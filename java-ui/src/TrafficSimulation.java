@@ -0,0 +1,390 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * =============================================================
+ * TrafficSimulation (JAVA PORT OF C++ TrafficSimulator)
+ * =============================================================
+ * Same tick loop as TrafficSimulator::update():
+ *     simTime += dt
+ *     updateVehicle(v) for every vehicle
+ *     clearFlows() / applyFlows()
+ *     removeArrived()
+ * but with all state in primitive arrays:
+ *   - vehicles: current edge, index on path, time on edge,
+ *     speed factor (structure of arrays)
+ *   - paths:    edge indices in one shared int pool
+ *   - edges:    flow counters and current travel times
+ * Nothing is allocated per tick.
+ * =============================================================
+ */
+public class TrafficSimulation {
+
+    /** Called from removeArrived() for every vehicle that finished. */
+    public interface ArrivalListener {
+        void onArrival(int tag, double departTime, double arriveTime);
+    }
+
+    private final RoadNetwork net;
+    private final double dt;             // seconds per tick
+
+    private double simTime = 0.0;
+    private long tick = 0;
+
+    // --- Vehicles (structure of arrays) ---
+    int count = 0;
+    int[] vehEdge = new int[0];          // current edge, -1 once arrived
+    int[] vehPathIdx = new int[0];       // current entry in pathPool
+    int[] vehPathEnd = new int[0];       // exclusive end in pathPool
+    float[] vehTimeOnEdge = new float[0];
+    float[] vehSpeedFactor = new float[0];
+    int[] vehTag = new int[0];
+    double[] vehDepart = new double[0];
+
+    // --- Paths (edge indices) ---
+    int[] pathPool = new int[0];
+    float[] pathPlanCost = new float[0]; // planned cost from this entry to the path end, <0 = unknown
+    int poolSize = 0;
+
+    // --- Edges ---
+    final int[] edgeFlow;                // vehicles currently on edge
+    final float[] edgeTravelTime;        // seconds under current flow
+
+    // --- Deterministic RNG (SplitMix64) ---
+    long rngState;
+
+    private CongestionModel model = new CongestionModel();
+    TrafficSignals signals;              // null = no signals
+
+    private ArrivalListener arrivalListener;
+
+    public TrafficSimulation(RoadNetwork net, double dt, long seed) {
+        this.net = net;
+        this.dt = dt;
+        this.rngState = seed;
+        this.edgeFlow = new int[net.edgeCount()];
+        this.edgeTravelTime = new float[net.edgeCount()];
+        updateTravelTimes();
+    }
+
+    public TrafficSimulation(RoadNetwork net) {
+        this(net, 1.0, 1133);
+    }
+
+    // ---------------------------------------------------------
+    // Population
+    // ---------------------------------------------------------
+
+    /**
+     * Adds a vehicle following the given edge indices.
+     * Returns its slot, or -1 for an empty path.
+     */
+    public int addVehicle(int tag, int[] pathEdges, int length, float speedFactor) {
+        if (length <= 0) return -1;
+        ensureVehicleCapacity(count + 1);
+        ensurePoolCapacity(poolSize + length);
+
+        System.arraycopy(pathEdges, 0, pathPool, poolSize, length);
+        Arrays.fill(pathPlanCost, poolSize, poolSize + length, -1f);
+
+        int v = count++;
+        vehEdge[v] = pathEdges[0];
+        vehPathIdx[v] = poolSize;
+        vehPathEnd[v] = poolSize + length;
+        vehTimeOnEdge[v] = 0f;
+        vehSpeedFactor[v] = speedFactor;
+        vehTag[v] = tag;
+        vehDepart[v] = simTime;
+        poolSize += length;
+        return v;
+    }
+
+    /**
+     * Keeps v on its current edge and continues with suffix instead
+     * of the rest of its old path. The new entries are appended to
+     * the pool; the old ones are reclaimed by the next compaction.
+     */
+    void replaceRemainingPath(int v, int[] suffix, int length) {
+        ensurePoolCapacity(poolSize + 1 + length);
+        pathPool[poolSize] = vehEdge[v];
+        System.arraycopy(suffix, 0, pathPool, poolSize + 1, length);
+        Arrays.fill(pathPlanCost, poolSize, poolSize + 1 + length, -1f);
+        vehPathIdx[v] = poolSize;
+        vehPathEnd[v] = poolSize + 1 + length;
+        poolSize += 1 + length;
+    }
+
+    /**
+     * Adds vehicles on random walks of up to maxHops edges,
+     * drawn from the simulation's own seeded RNG.
+     */
+    public void addRandomTrips(int vehicles, int maxHops) {
+        int m = net.edgeCount();
+        if (m == 0) return;
+        int[] buf = new int[Math.max(1, maxHops)];
+
+        for (int i = 0; i < vehicles; i++) {
+            int n = 0;
+            int e = nextInt(m);
+            buf[n++] = e;
+            while (n < buf.length) {
+                int node = net.edgeTo[e];
+                int deg = net.outDegree(node);
+                if (deg == 0) break;
+                e = net.outEdges[net.outStart[node] + nextInt(deg)];
+                buf[n++] = e;
+            }
+            addVehicle(i, buf, n, (float) (0.8 + 0.4 * nextDouble()));
+        }
+    }
+
+    public void setArrivalListener(ArrivalListener l) { this.arrivalListener = l; }
+
+    public void setCongestionModel(CongestionModel model) {
+        this.model = model;
+        updateTravelTimes();
+    }
+
+    public CongestionModel getCongestionModel() { return model; }
+
+    /**
+     * Signals hold a vehicle at the end of its edge while the node
+     * ahead is red (not at its final node). Pass null to remove.
+     */
+    public void setSignals(TrafficSignals signals) { this.signals = signals; }
+
+    public TrafficSignals getSignals() { return signals; }
+
+    // ---------------------------------------------------------
+    // Main update loop (1 tick)
+    // ---------------------------------------------------------
+
+    public void update() {
+        simTime += dt;
+        tick++;
+
+        step();
+
+        removeArrived();
+    }
+
+    /**
+     * Movement, flow recount and travel times for one tick. Every
+     * vehicle reads the travel times of the PREVIOUS tick, so the
+     * phases may be split across threads (ParallelTrafficSimulation)
+     * without changing the result.
+     */
+    void step() {
+        updateVehicles();
+
+        clearFlows();
+        applyFlows();
+        updateTravelTimes();
+    }
+
+    /**
+     * A vehicle accumulates time on its edge and moves to the next
+     * edge once it has spent the (congested) travel time there and
+     * the signal ahead, if any, is green.
+     */
+    void updateVehicles() {
+        final int[] vehEdge = this.vehEdge;
+        final int[] vehPathIdx = this.vehPathIdx;
+        final int[] vehPathEnd = this.vehPathEnd;
+        final float[] timeOnEdge = this.vehTimeOnEdge;
+        final float[] speedFactor = this.vehSpeedFactor;
+        final float[] travelTime = this.edgeTravelTime;
+        final int[] pool = this.pathPool;
+        final int[] edgeTo = net.edgeTo;
+        final TrafficSignals signals = this.signals;
+        final double now = simTime;
+        final float step = (float) dt;
+
+        for (int v = 0; v < count; v++) {
+            int e = vehEdge[v];
+            if (e < 0) continue;
+
+            float t = timeOnEdge[v] + step;
+            if (t * speedFactor[v] >= travelTime[e]) {
+                int next = vehPathIdx[v] + 1;
+                if (next < vehPathEnd[v] && signals != null
+                        && !signals.isGreen(edgeTo[e], now)) {
+                    timeOnEdge[v] = t;   // queued at the stop line
+                    continue;
+                }
+                vehPathIdx[v] = next;
+                vehEdge[v] = next < vehPathEnd[v] ? pool[next] : -1;
+                t = 0f;
+            }
+            timeOnEdge[v] = t;
+        }
+    }
+
+    void clearFlows() {
+        Arrays.fill(edgeFlow, 0);
+    }
+
+    void applyFlows() {
+        final int[] vehEdge = this.vehEdge;
+        final int[] flow = this.edgeFlow;
+        for (int v = 0; v < count; v++) {
+            int e = vehEdge[v];
+            if (e >= 0) flow[e]++;
+        }
+    }
+
+    /** Recomputes every edge's travel time from its flow (one flat loop). */
+    void updateTravelTimes() {
+        model.computeTravelTimes(net, edgeFlow, edgeTravelTime);
+    }
+
+    /**
+     * Stable in-place compaction: surviving vehicles keep their
+     * relative order. The path pool is compacted as well once more
+     * than half of it belongs to finished path entries.
+     */
+    void removeArrived() {
+        int w = 0;
+        int livePath = 0;
+        for (int v = 0; v < count; v++) {
+            if (vehEdge[v] < 0) {
+                if (arrivalListener != null) {
+                    arrivalListener.onArrival(vehTag[v], vehDepart[v], simTime);
+                }
+                continue;
+            }
+            if (w != v) moveVehicle(v, w);
+            livePath += vehPathEnd[w] - vehPathIdx[w];
+            w++;
+        }
+        count = w;
+
+        if (poolSize > 1024 && livePath < poolSize / 2) {
+            compactPool();
+        }
+    }
+
+    private void moveVehicle(int from, int to) {
+        vehEdge[to] = vehEdge[from];
+        vehPathIdx[to] = vehPathIdx[from];
+        vehPathEnd[to] = vehPathEnd[from];
+        vehTimeOnEdge[to] = vehTimeOnEdge[from];
+        vehSpeedFactor[to] = vehSpeedFactor[from];
+        vehTag[to] = vehTag[from];
+        vehDepart[to] = vehDepart[from];
+    }
+
+    // Copies into a fresh array, so it does not rely on paths being
+    // laid out in vehicle order. Runs rarely (amortised by the 2x rule).
+    private void compactPool() {
+        int live = 0;
+        for (int v = 0; v < count; v++) live += vehPathEnd[v] - vehPathIdx[v];
+
+        int[] fresh = new int[Math.max(64, live * 2)];
+        float[] freshPlan = new float[fresh.length];
+        int w = 0;
+        for (int v = 0; v < count; v++) {
+            int len = vehPathEnd[v] - vehPathIdx[v];
+            System.arraycopy(pathPool, vehPathIdx[v], fresh, w, len);
+            System.arraycopy(pathPlanCost, vehPathIdx[v], freshPlan, w, len);
+            vehPathIdx[v] = w;
+            vehPathEnd[v] = w + len;
+            w += len;
+        }
+        pathPool = fresh;
+        pathPlanCost = freshPlan;
+        poolSize = w;
+    }
+
+    // ---------------------------------------------------------
+    // Output
+    // ---------------------------------------------------------
+
+    /**
+     * Pushes flow / capacity into EdgeView.setCongestion (clamped to
+     * 0..1 there). views must be indexed like the network edges,
+     * i.e. the list RoadNetwork.fromViews was built from.
+     */
+    public void publishCongestion(List<EdgeView> views) {
+        int m = Math.min(views.size(), edgeFlow.length);
+        for (int e = 0; e < m; e++) {
+            views.get(e).setCongestion(congestion(e));
+        }
+    }
+
+    public double congestion(int e) {
+        float cap = net.edgeCapacity[e];
+        return cap > 0f ? edgeFlow[e] / cap : 1.0;
+    }
+
+    /** Clock of a restored checkpoint (SimulationCheckpoint). */
+    void restoreClock(double simTime, long tick) {
+        this.simTime = simTime;
+        this.tick = tick;
+    }
+
+    public void reset() {
+        count = 0;
+        poolSize = 0;
+        simTime = 0.0;
+        tick = 0;
+        clearFlows();
+        updateTravelTimes();
+    }
+
+    public RoadNetwork getNetwork() { return net; }
+    public int getVehicleCount() { return count; }
+    public double getSimTime() { return simTime; }
+    public long getTick() { return tick; }
+    public double getDt() { return dt; }
+    public int getEdgeFlow(int e) { return edgeFlow[e]; }
+    public float getEdgeTravelTime(int e) { return edgeTravelTime[e]; }
+
+    /**
+     * Live travel-time array (seconds), updated every tick. Routing
+     * reads it directly as edge weights: do not modify.
+     */
+    public float[] getEdgeTravelTimes() { return edgeTravelTime; }
+
+    // ---------------------------------------------------------
+    // RNG (SplitMix64: state is one long, so it is checkpointable)
+    // ---------------------------------------------------------
+
+    long nextLong() {
+        long z = (rngState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    int nextInt(int bound) {
+        return (int) ((nextLong() >>> 33) % bound);
+    }
+
+    // ---------------------------------------------------------
+    // Storage growth
+    // ---------------------------------------------------------
+
+    private void ensureVehicleCapacity(int needed) {
+        if (needed <= vehEdge.length) return;
+        int cap = Math.max(needed, vehEdge.length * 2 + 16);
+        vehEdge = Arrays.copyOf(vehEdge, cap);
+        vehPathIdx = Arrays.copyOf(vehPathIdx, cap);
+        vehPathEnd = Arrays.copyOf(vehPathEnd, cap);
+        vehTimeOnEdge = Arrays.copyOf(vehTimeOnEdge, cap);
+        vehSpeedFactor = Arrays.copyOf(vehSpeedFactor, cap);
+        vehTag = Arrays.copyOf(vehTag, cap);
+        vehDepart = Arrays.copyOf(vehDepart, cap);
+    }
+
+    private void ensurePoolCapacity(int needed) {
+        if (needed <= pathPool.length) return;
+        int cap = Math.max(needed, pathPool.length * 2 + 64);
+        pathPool = Arrays.copyOf(pathPool, cap);
+        pathPlanCost = Arrays.copyOf(pathPlanCost, cap);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * =============================================================
+ * TravelTimeMatrix - ZONE-TO-ZONE SHORTEST TIMES
+ * =============================================================
+ * Many-to-many travel times between a set of zone nodes: one
+ * full Dijkstra tree per origin zone over the given edge weights,
+ * read out at every destination zone. Row-major float[z * z],
+ * +Infinity where unreachable, 0 on the diagonal.
+ *
+ * Origins are cut into fixed chunks, one per thread, each with
+ * its own DijkstraEngine; every row is written by exactly one
+ * worker, so the result does not depend on the thread count.
+ * =============================================================
+ */
+public final class TravelTimeMatrix {
+
+    private final int[] zones;
+    private final float[] time;
+
+    private TravelTimeMatrix(int[] zones, float[] time) {
+        this.zones = zones;
+        this.time = time;
+    }
+
+    public int zoneCount() { return zones.length; }
+
+    /** Network node of zone z. */
+    public int zoneNode(int z) { return zones[z]; }
+
+    /** Seconds from zone i to zone j (+Infinity if unreachable). */
+    public float time(int i, int j) { return time[i * zones.length + j]; }
+
+    // ---------------------------------------------------------
+    // Computation
+    // ---------------------------------------------------------
+
+    public static TravelTimeMatrix compute(RoadNetwork net, int[] zones,
+                                           float[] weights, int threads) {
+        final int z = zones.length;
+        final float[] time = new float[z * z];
+        threads = Math.max(1, Math.min(threads, z));
+
+        if (threads == 1) {
+            fillRows(net, zones, weights, time, 0, z);
+            return new TravelTimeMatrix(zones.clone(), time);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "travel-time-matrix");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            int chunk = (z + threads - 1) / threads;
+            for (int lo = 0; lo < z; lo += chunk) {
+                final int from = lo, to = Math.min(z, lo + chunk);
+                tasks.add(() -> {
+                    fillRows(net, zones, weights, time, from, to);
+                    return null;
+                });
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Travel time matrix interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Travel time matrix failed", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new TravelTimeMatrix(zones.clone(), time);
+    }
+
+    /** Free-flow times between the given nodes. */
+    public static TravelTimeMatrix freeFlow(RoadNetwork net, int[] zones, int threads) {
+        return compute(net, zones, net.edgeFreeFlowTime, threads);
+    }
+
+    private static void fillRows(RoadNetwork net, int[] zones, float[] weights,
+                                 float[] time, int from, int to) {
+        DijkstraEngine router = new DijkstraEngine(net);
+        int z = zones.length;
+        for (int i = from; i < to; i++) {
+            router.run(zones[i], weights, -1);
+            int row = i * z;
+            for (int j = 0; j < z; j++) {
+                time[row + j] = (float) router.dist(zones[j]);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * =============================================================
+ * TripStream - SAMPLED TRIPS, FED STRAIGHT INTO THE SIMULATION
+ * =============================================================
+ * Turns an OdMatrix into an endless, time-ordered stream of trips
+ * without ever holding them:
+ *   - WHEN   departures are a Poisson process whose rate is the
+ *            matrix total (trips per hour) times an hourly profile
+ *            (mean 1, default morning and evening peaks); gaps are
+ *            exponential, redrawn at every hour boundary
+ *   - WHERE  each trip's OD pair comes from an AliasSampler over
+ *            the pair demands: O(1) per trip for any matrix size
+ *   - HOW    free-flow shortest paths, cached per pair in one int
+ *            pool (flushed when it outgrows its budget), so each
+ *            pair is searched once however many trips it gets
+ *
+ * injectUntil(sim, t) adds every trip departing by t; call it
+ * once per tick. Memory is O(pairs + cached paths), independent
+ * of the number of trips.
+ * =============================================================
+ */
+public class TripStream {
+
+    /** Relative departures per hour of day, 00:00 .. 23:00. */
+    public static final double[] DEFAULT_PROFILE = {
+        0.25, 0.15, 0.10, 0.10, 0.20, 0.55, 1.40, 2.20, 2.30, 1.50, 1.10, 1.10,
+        1.20, 1.15, 1.10, 1.35, 1.90, 2.30, 2.00, 1.35, 0.90, 0.65, 0.50, 0.35
+    };
+
+    private static final int DEFAULT_CACHE_LIMIT = 8 << 20;   // path entries
+
+    private final RoadNetwork net;
+    private final int[] pairOrigin;
+    private final int[] pairDest;
+    private final AliasSampler pairs;
+    private final double tripsPerHour;
+    private final Random rnd;
+
+    private final double[] profile = new double[24];
+    private double nextDepart;
+    private int tagBase = 2_000_000;
+
+    // --- Route cache (per pair, -1 = not searched, -2 = unreachable) ---
+    private final DijkstraEngine router;
+    private final int[] pathBuf;
+    private final int[] cacheStart;
+    private final int[] cacheLength;
+    private int[] cachePool = new int[1024];
+    private int cacheSize = 0;
+    private int cacheLimit = DEFAULT_CACHE_LIMIT;
+
+    private long emitted = 0;
+    private long unroutable = 0;
+    private long searches = 0;
+
+    public TripStream(RoadNetwork net, OdMatrix od, long seed) {
+        this.net = net;
+        int p = od.pairCount();
+        this.pairOrigin = new int[p];
+        this.pairDest = od.dest.clone();
+        for (int o = 0; o < od.nodeCount; o++) {
+            Arrays.fill(pairOrigin, od.originStart[o], od.originStart[o + 1], o);
+        }
+        this.pairs = new AliasSampler(od.trips, p);
+        this.tripsPerHour = pairs.total();
+        this.rnd = new Random(seed);
+
+        this.router = new DijkstraEngine(net);
+        this.pathBuf = new int[Math.max(1, net.nodeCount())];
+        this.cacheStart = new int[p];
+        this.cacheLength = new int[p];
+        Arrays.fill(cacheStart, -1);
+
+        setDepartureProfile(DEFAULT_PROFILE);
+    }
+
+    // ---------------------------------------------------------
+    // Setup
+    // ---------------------------------------------------------
+
+    /**
+     * 24 relative hourly weights; rescaled to mean 1 so a day still
+     * carries 24 x the matrix total. Restarts the clock at 0.
+     */
+    public void setDepartureProfile(double[] hourly) {
+        if (hourly.length != 24) throw new IllegalArgumentException("Need 24 hourly weights");
+        double sum = 0;
+        for (double w : hourly) {
+            if (!(w >= 0)) throw new IllegalArgumentException("Negative hourly weight");
+            sum += w;
+        }
+        if (!(sum > 0)) throw new IllegalArgumentException("Profile has no departures");
+        for (int h = 0; h < 24; h++) profile[h] = hourly[h] * 24.0 / sum;
+        setStartTime(0.0);
+    }
+
+    /** First departure is drawn after t (seconds since midnight). */
+    public void setStartTime(double t) {
+        nextDepart = drawAfter(t);
+    }
+
+    /** Vehicle tags are tagBase + trip number. */
+    public void setTagBase(int tagBase) { this.tagBase = tagBase; }
+
+    /** Path cache budget in edge entries. */
+    public void setCacheLimit(int entries) { this.cacheLimit = Math.max(1024, entries); }
+
+    public double getTripsPerHour() { return tripsPerHour; }
+    public double peekDepartTime() { return nextDepart; }
+    public long getEmittedCount() { return emitted; }
+    public long getUnroutableCount() { return unroutable; }
+    public long getRouteSearchCount() { return searches; }
+
+    // ---------------------------------------------------------
+    // Streaming
+    // ---------------------------------------------------------
+
+    /**
+     * Adds every trip departing at or before time to sim, with a
+     * speed factor in [0.8, 1.2]. Returns the number added.
+     */
+    public int injectUntil(TrafficSimulation sim, double time) {
+        int added = 0;
+        while (nextDepart <= time) {
+            int pair = pairs.sample(rnd);
+            nextDepart = drawAfter(nextDepart);
+            long trip = emitted++;
+
+            int len = route(pair);
+            if (len <= 0) {
+                unroutable++;
+                continue;
+            }
+            System.arraycopy(cachePool, cacheStart[pair], pathBuf, 0, len);
+            sim.addVehicle(tagBase + (int) trip, pathBuf, len,
+                    (float) (0.8 + 0.4 * rnd.nextDouble()));
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Draws the next trip without routing or simulating it:
+     * out[0] = origin, out[1] = destination, returns the departure.
+     * For demand statistics over millions of trips.
+     */
+    public double next(int[] out) {
+        double depart = nextDepart;
+        int pair = pairs.sample(rnd);
+        nextDepart = drawAfter(nextDepart);
+        emitted++;
+        out[0] = pairOrigin[pair];
+        out[1] = pairDest[pair];
+        return depart;
+    }
+
+    /** Piecewise-constant Poisson rate: redraw at each hour boundary. */
+    private double drawAfter(double t) {
+        while (true) {
+            double hourStart = Math.floor(t / 3600.0);
+            double hourEnd = (hourStart + 1) * 3600.0;
+            double rate = tripsPerHour * profile[Math.floorMod((long) hourStart, 24)] / 3600.0;
+            if (rate > 0) {
+                double gap = -Math.log(1.0 - rnd.nextDouble()) / rate;
+                if (t + gap < hourEnd) return t + gap;
+            }
+            t = hourEnd;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Route cache
+    // ---------------------------------------------------------
+
+    /** Path length of pair (cached in cachePool), or -1 if unreachable. */
+    private int route(int pair) {
+        int start = cacheStart[pair];
+        if (start >= 0) return cacheLength[pair];
+        if (start == -2) return -1;
+
+        int o = pairOrigin[pair], d = pairDest[pair];
+        router.run(o, net.edgeFreeFlowTime, d);
+        searches++;
+        int len = router.extractPath(d, pathBuf);
+        if (len <= 0) {
+            cacheStart[pair] = -2;
+            return -1;
+        }
+
+        if (cacheSize + len > cacheLimit) {
+            // Budget exceeded: start over (unreachable marks stay valid)
+            for (int i = 0; i < cacheStart.length; i++) {
+                if (cacheStart[i] >= 0) cacheStart[i] = -1;
+            }
+            cacheSize = 0;
+        }
+        if (cacheSize + len > cachePool.length) {
+            cachePool = Arrays.copyOf(cachePool,
+                    Math.min(Math.max(cacheLimit, len), Math.max(cacheSize + len, cachePool.length * 2)));
+        }
+        System.arraycopy(pathBuf, 0, cachePool, cacheSize, len);
+        cacheStart[pair] = cacheSize;
+        cacheLength[pair] = len;
+        cacheSize += len;
+        return len;
+    }
+}
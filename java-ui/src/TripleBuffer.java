@@ -0,0 +1,65 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * =============================================================
+ * TripleBuffer - LOCK-FREE SINGLE PRODUCER / SINGLE CONSUMER
+ * =============================================================
+ * Three preallocated buffers:
+ *   back    owned by the writer, filled in place
+ *   middle  the most recently published buffer
+ *   front   owned by the reader until its next acquire()
+ *
+ * publish() swaps back <-> middle, acquire() swaps middle <->
+ * front when something new was published. Both are ONE atomic
+ * getAndSet; neither side ever blocks or waits for the other,
+ * and the buffer a side owns is never touched by the other.
+ * =============================================================
+ */
+final class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;          // middle not yet read
+
+    private final Object[] buffers = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    private int back = 0;                        // writer-only
+    private int front = 2;                       // reader-only
+
+    TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < 3; i++) buffers[i] = factory.get();
+    }
+
+    // ---------------------------------------------------------
+    // Writer side
+    // ---------------------------------------------------------
+
+    /** Buffer the writer may fill; stays the same until publish(). */
+    @SuppressWarnings("unchecked")
+    T back() {
+        return (T) buffers[back];
+    }
+
+    /** Makes the back buffer the newest one and takes a free buffer. */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // ---------------------------------------------------------
+    // Reader side
+    // ---------------------------------------------------------
+
+    /** Newest published buffer (or the previous one if nothing new). */
+    @SuppressWarnings("unchecked")
+    T acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return (T) buffers[front];
+    }
+
+    boolean hasFresh() {
+        return (middle.get() & FRESH) != 0;
+    }
+}
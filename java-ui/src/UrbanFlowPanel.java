@@ -13,6 +13,8 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
 
@@ -48,6 +50,20 @@ public class UrbanFlowPanel extends JPanel {
     }
     private Timer heatmapTimer;
 private boolean heatmapActive = false;
+
+// Live heatmap traffic: random trips kept topped up on the panel's
+// own network, ticked off the EDT like any SimulationRunner.
+private static final int LIVE_TRIPS_PER_EDGE = 30;
+private static final int LIVE_MAX_HOPS = 12;
+private static final double LIVE_SPEED = 120.0;   // simulated s per wall s
+private SimulationRunner liveSimulation = null;
+private SimulationRecorder liveRecorder = null;
+
+// Compare Routes traffic: gravity demand at user equilibrium
+private static final double EQUILIBRIUM_TRIPS_PER_DAY = 80000;
+private static final int EQUILIBRIUM_ITERATIONS = 50;
+private static final double EQUILIBRIUM_GAP = 1e-3;
+
 public void startLiveHeatmap() {
 
     currentMode = ViewMode.DEFAULT;   // 🔥 THIS IS THE KEY
@@ -65,6 +81,8 @@ public void startLiveHeatmap() {
     });
 
     heatmapTimer.start();
+    setCongestionOverlay((float[]) null);   // live traffic replaces the equilibrium
+    startLiveSimulation();
 
     repaint();
 }
@@ -77,11 +95,72 @@ public void stopLiveHeatmap() {
     if (heatmapTimer != null) {
         heatmapTimer.stop();
     }
+    stopLiveSimulation();
 
     heatmapImage = null;
     repaint();
 }
 
+// Only when no caller-supplied runner is attached.
+private void startLiveSimulation() {
+    if (simulationRunner != null || edges.isEmpty()) return;
+
+    TrafficSimulation sim = new TrafficSimulation(RoadNetwork.fromPanel(this));
+    int target = edges.size() * LIVE_TRIPS_PER_EDGE;
+    sim.addRandomTrips(target, LIVE_MAX_HOPS);
+
+    SimulationRunner runner = new SimulationRunner(sim, LIVE_SPEED);
+    runner.setTickListener(() -> {
+        int missing = target - sim.getVehicleCount();
+        if (missing > 0) sim.addRandomTrips(missing, LIVE_MAX_HOPS);
+    });
+    setSimulationRunner(runner);
+    liveSimulation = runner;
+    runner.start();
+}
+
+private void stopLiveSimulation() {
+    if (liveSimulation == null) return;
+    liveSimulation.close();
+    try {
+        stopRecording();
+    } catch (IOException ex) {
+        System.err.println("Recording failed: " + ex.getMessage());
+    }
+    if (simulationRunner == liveSimulation) setSimulationRunner(null);
+    liveSimulation = null;
+}
+
+// Records the live heatmap traffic to file. The log is written on
+// RoadNetwork.fromPanel(this), so ReplayBar can open it on this map.
+public void startRecording(String file) throws IOException {
+    if (liveSimulation == null) {
+        throw new IllegalStateException("Live traffic is not running");
+    }
+    stopRecording();
+    liveRecorder = new SimulationRecorder(RoadNetwork.fromPanel(this), file);
+    liveSimulation.setRecorder(liveRecorder);
+}
+
+// Ends the recording (no-op if none); reports a write error the
+// runner hit while recording.
+public void stopRecording() throws IOException {
+    SimulationRecorder rec = liveRecorder;
+    if (rec == null) return;
+    liveRecorder = null;
+    IOException failure = null;
+    if (liveSimulation != null) {
+        failure = liveSimulation.getRecordingError();
+        liveSimulation.setRecorder(null);
+    }
+    rec.close();
+    if (failure != null) throw failure;
+}
+
+public boolean isRecording() {
+    return liveRecorder != null;
+}
+
 
     public static class EdgeView {
         public final String from;
@@ -212,12 +291,24 @@ public void prepareCleanTravelView() {
     // =============================================================
 
     private boolean showHeatmap = true;
-    private double[] trafficIntensity;
+    private float[] trafficIntensity;   // node heat when no snapshot (static overlay)
     private double heatPulse = 0.0;
     private double globalTrafficLevel = 1.0;
 
     private BufferedImage heatmapImage = null;
-    private final Random random = new Random(1133);
+
+    // View the heatmap image was built for; while the user drags or
+    // zooms the stale image is re-projected instead of rebuilt.
+    private double heatmapZoom = 1.0, heatmapTx = 0.0, heatmapTy = 0.0;
+    private double heatmapScale = 1.0;
+    private int heatmapWidth, heatmapHeight;
+
+    // =============================================================
+    // 8b. RENDER QUALITY (FAST WHILE INTERACTING)
+    // =============================================================
+
+    private final RenderQualityGovernor governor =
+            new RenderQualityGovernor(this::repaint);
 
     // =============================================================
     // 9. SELECTION STATE
@@ -225,6 +316,36 @@ public void prepareCleanTravelView() {
 
     private String selectedNode = null;
 
+    // =============================================================
+    // 9e. OFF-EDT SIMULATION (OPTIONAL)
+    // =============================================================
+
+    private SimulationRunner simulationRunner = null;
+    private SimulationSnapshot frameSnapshot = null;   // read once per paint
+    private static final int VEHICLE_DOT_COLOR = 0xFFFFE066;   // opaque amber
+    private final DotRaster snapshotDots = new DotRaster(VEHICLE_DOT_COLOR);
+    private SimulationSnapshot replaySnapshot = null;  // recorded frame, wins over the runner
+
+    // Static per-edge congestion (e.g. an equilibrium assignment)
+    private float[] congestionOverlay = null;
+    private TrafficAssignment.Result equilibrium = null;   // gravity demand, built on first use
+
+    // =============================================================
+    // 9c. NODE LABELS (COLLISION-CULLED, SCREEN SPACE)
+    // =============================================================
+
+    private final LabelPlacer labelPlacer =
+            new LabelPlacer(new Font("Segoe UI", Font.BOLD, 12));
+
+    // =============================================================
+    // 9d. ROAD SHAPES (OPTIONAL, MULTI-RESOLUTION)
+    // =============================================================
+
+    private static final String ROAD_SHAPES_FILE = "data/road_shapes.csv";
+    private RoadGeometry roadGeometry = null;   // indexed like edges
+    private AffineTransform projection = new AffineTransform();  // graph → world coords
+    private final Path2D.Float roadPath = new Path2D.Float();
+
     // =============================================================
     // 10. CONSTRUCTOR
     // =============================================================
@@ -237,11 +358,16 @@ public void prepareCleanTravelView() {
         buildGraph();
         computeScreenCoordinates();
         initializeTraffic();
+        loadRoadShapes(ROAD_SHAPES_FILE);
 
         setupInteractions();
         heatmapLayer.initialize(nodes.size());
         new Timer(40, e -> {
-    heatmapLayer.updateTraffic();
+    // A running simulation or a replay supplies its own frames and repaints
+    if (simulationRunner != null || replaySnapshot != null) return;
+    if (congestionOverlay == null) {
+        heatmapLayer.updateTraffic();
+    }
     repaint();
 }).start();
 
@@ -255,6 +381,7 @@ public void highlightCity(String city, boolean insightsMode) {
 public void clearRoutes() {
     activeRoute = null;
     alternativeRoutes.clear();
+    bottleneckEdges = null;
     routeAnimating = false;
     repaint();
 }
@@ -268,8 +395,9 @@ public void prepareCompareRoutesView() {
     stopRouteAnimation();
     alternativeRoutes.clear();
     activeRoute = null;
-    showHeatmap = false;
     currentMode = ViewMode.COMPARE_ROUTES;
+    stopLiveHeatmap();          // frees the CPU and drops the live frame
+    showEquilibriumTraffic();
     repaint();
 }
 public void compareRoutes(String src, String dst) {
@@ -449,6 +577,51 @@ addEdge("KUZ", "KHI", 60, "N25", 80, 0);
         }
     }
 
+    /**
+     * Replaces the built-in city graph (e.g. with a synthetic
+     * network for benchmarks). Node coordinates are taken as
+     * logical coords and re-projected like the built-in graph.
+     */
+    public void loadNetwork(RoadNetwork net) {
+
+        stopRouteAnimation();
+        alternativeRoutes.clear();
+        selectedNode = null;
+        roadGeometry = null;
+        stopLiveSimulation();
+        setSimulationRunner(null);
+        replaySnapshot = null;
+        congestionOverlay = null;
+        equilibrium = null;
+        insightNetwork = null;
+        centralityWorker = null;
+        centralityListeners.clear();
+        betweenness = null;
+        approxBetweenness = null;
+        closeness = null;
+        bottleneckEdges = null;
+        routingNetwork = null;
+        routingEngine = null;
+        trafficTravelTimes = null;
+
+        nodes.clear();
+        edges.clear();
+
+        for (int i = 0; i < net.nodeCount(); i++) {
+            addNode(net.nodeNames[i], net.nodeX[i], net.nodeY[i]);
+        }
+        for (int e = 0; e < net.edgeCount(); e++) {
+            addEdge(net.nodeNames[net.edgeFrom[e]], net.nodeNames[net.edgeTo[e]],
+                    net.edgeLength[e], net.edgeMotorway[e],
+                    net.edgeSpeed[e], net.edgeToll[e]);
+        }
+
+        computeScreenCoordinates();
+        initializeTraffic();
+        heatmapLayer.initialize(nodes.size());
+        repaint();
+    }
+
     private void addNode(String name, double x, double y) {
         nodes.put(name, new NodeView(name, x, y));
     }
@@ -487,35 +660,241 @@ addEdge("KUZ", "KHI", 60, "N25", 80, 0);
             n.screenY = (int) ((n.y - minY) * scale + 80);
         }
 
+        // Same mapping for anything else given in graph coordinates
+        projection = new AffineTransform(scale, 0, 0, scale,
+                80 - minX * scale, 80 - minY * scale);
+
         heatmapImage = null;
+        refreshLabels();
+    }
+
+    // Hubs (highest degree) win label collisions
+    private void refreshLabels() {
+        Map<String, Integer> degree = new HashMap<>();
+        for (EdgeView e : edges) {
+            degree.merge(e.from, 1, Integer::sum);
+            degree.merge(e.to, 1, Integer::sum);
+        }
+
+        List<NodeView> list = new ArrayList<>(nodes.values());
+        double[] priority = new double[list.size()];
+        for (int i = 0; i < priority.length; i++) {
+            priority[i] = degree.getOrDefault(list.get(i).name, 0);
+        }
+        labelPlacer.setNodes(list, priority);
     }
 
     // =============================================================
     // 13. TRAFFIC INITIALIZATION
     // =============================================================
 
+    // No heat until flows arrive: a simulation snapshot, a replay
+    // or a static congestion overlay.
     private void initializeTraffic() {
-        trafficIntensity = new double[nodes.size()];
-        for (int i = 0; i < trafficIntensity.length; i++) {
-            trafficIntensity[i] = random.nextDouble();
+        trafficIntensity = new float[nodes.size()];
+    }
+// City Insights: travel-time betweenness and closeness over the
+// panel's own network, computed for every node at once and dropped
+// by loadNetwork (the RoadNetwork they run on is built separately,
+// so capacity queries never wait for them). CityInsightsView asks
+// for them through loadCentrality(), which computes off the EDT. Up
+// to EXACT_BETWEENNESS_LIMIT nodes both are exact; larger networks
+// start from a quick sampled betweenness that CityInsightsView keeps
+// refining through refineCentrality(), and closeness from
+// CLOSENESS_PIVOTS targets.
+private static final int EXACT_BETWEENNESS_LIMIT = 5000;
+private static final long QUICK_ESTIMATE_NANOS = 300_000_000L;
+private static final int CLOSENESS_PIVOTS = 32;
+private RoadNetwork insightNetwork = null;
+private BetweennessCentrality betweenness = null;
+private ClosenessCentrality closeness = null;
+private volatile ApproximateBetweenness approxBetweenness = null;
+private SwingWorker<CentralityBatch, Void> centralityWorker = null;
+private final List<Runnable> centralityListeners = new ArrayList<>();
+
+private RoadNetwork insightNetwork() {
+    if (insightNetwork == null) insightNetwork = RoadNetwork.fromPanel(this);
+    return insightNetwork;
+}
+
+/** True once getCityInsight(s) answer without computing anything. */
+public boolean isCentralityReady() {
+    return closeness != null;
+}
+
+/**
+ * Computes the centrality batch on a background thread and runs
+ * onReady on the EDT once it is in (right away if it already is).
+ * Call on the EDT; a loadNetwork() in between drops the pending
+ * callbacks.
+ */
+public void loadCentrality(Runnable onReady) {
+    if (isCentralityReady()) {
+        onReady.run();
+        return;
+    }
+    centralityListeners.add(onReady);
+    if (centralityWorker != null) return;
+
+    final RoadNetwork net = insightNetwork();
+    centralityWorker = new SwingWorker<CentralityBatch, Void>() {
+        @Override protected CentralityBatch doInBackground() {
+            return CentralityBatch.compute(net);
         }
+        @Override protected void done() {
+            if (centralityWorker != this) return;   // network reloaded meanwhile
+            centralityWorker = null;
+            try {
+                get().applyTo(UrbanFlowPanel.this);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Centrality interrupted", ex);
+            } catch (java.util.concurrent.ExecutionException ex) {
+                throw new IllegalStateException("Centrality failed", ex.getCause());
+            }
+            List<Runnable> ready = new ArrayList<>(centralityListeners);
+            centralityListeners.clear();
+            for (Runnable r : ready) r.run();
+        }
+    };
+    centralityWorker.execute();
+}
+
+/** Computes synchronously if loadCentrality() has not delivered yet. */
+private void ensureCentrality() {
+    if (closeness != null) return;
+    CentralityBatch.compute(insightNetwork()).applyTo(this);
+}
+
+/** One network's centrality results; built on any thread. */
+private static final class CentralityBatch {
+    BetweennessCentrality exact;
+    ApproximateBetweenness approx;
+    ClosenessCentrality closeness;
+
+    static CentralityBatch compute(RoadNetwork net) {
+        CentralityBatch batch = new CentralityBatch();
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (net.nodeCount() <= EXACT_BETWEENNESS_LIMIT) {
+            batch.exact = BetweennessCentrality.compute(net, net.edgeFreeFlowTime, threads);
+            batch.closeness = ClosenessCentrality.compute(net, net.edgeFreeFlowTime, threads);
+            return batch;
+        }
+        batch.approx = new ApproximateBetweenness(net, net.edgeFreeFlowTime, 1133);
+        batch.approx.sampleFor(QUICK_ESTIMATE_NANOS,
+                ApproximateBetweenness.DEFAULT_EPSILON, ApproximateBetweenness.DEFAULT_DELTA);
+
+        // Distinct pivots: partial Fisher-Yates (repeats would bias the sums)
+        Random rnd = new Random(1133);
+        int n = net.nodeCount();
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        int[] pivots = new int[Math.min(CLOSENESS_PIVOTS, n)];
+        for (int i = 0; i < pivots.length; i++) {
+            int j = i + rnd.nextInt(n - i);
+            int tmp = all[i]; all[i] = all[j]; all[j] = tmp;
+            pivots[i] = all[i];
+        }
+        Arrays.sort(pivots);
+        batch.closeness = ClosenessCentrality.compute(net, net.edgeFreeFlowTime, pivots, threads);
+        return batch;
     }
-    private CityInsight computeCityInsight(String city) {
+
+    void applyTo(UrbanFlowPanel panel) {
+        panel.betweenness = exact;
+        panel.approxBetweenness = approx;
+        panel.closeness = closeness;
+    }
+}
+
+/** True while the sampled centrality is short of its error target. */
+public boolean needsCentralityRefinement() {
+    ApproximateBetweenness approx = approxBetweenness;
+    return approx != null && !approx.isConverged(
+            ApproximateBetweenness.DEFAULT_EPSILON, ApproximateBetweenness.DEFAULT_DELTA);
+}
+
+/**
+ * Adds up to budgetNanos of path samples to the centrality estimate
+ * (any thread). Returns true if it still needs more.
+ */
+public boolean refineCentrality(long budgetNanos) {
+    ApproximateBetweenness approx = approxBetweenness;
+    if (approx == null) return false;
+    approx.sampleFor(budgetNanos,
+            ApproximateBetweenness.DEFAULT_EPSILON, ApproximateBetweenness.DEFAULT_DELTA);
+    return needsCentralityRefinement();
+}
+
+/** Error bound of the centrality shares (0 when exact). */
+public double getCentralityError() {
+    ApproximateBetweenness approx = approxBetweenness;
+    return approx == null ? 0.0 : approx.epsilon(ApproximateBetweenness.DEFAULT_DELTA);
+}
+
+// Min cut of the last capacity query (edge indices, like getEdges()),
+// drawn over the roads until cleared.
+private int[] bottleneckEdges = null;
+
+/**
+ * Max flow from one city to another over the road capacities
+ * (veh/h), highlighting the min-cut roads on the map. Returns null
+ * if either city is unknown or they are the same.
+ */
+public MaxFlowDinic.Result showCapacity(String from, String to) {
+    RoadNetwork net = insightNetwork();
+    int s = net.indexOf(from);
+    int t = net.indexOf(to);
+    if (s < 0 || t < 0 || s == t) return null;
+    MaxFlowDinic.Result result = new MaxFlowDinic(net).solve(s, t);
+    bottleneckEdges = result.cutEdges();
+    repaint();
+    return result;
+}
+
+public void clearBottlenecks() {
+    bottleneckEdges = null;
+    repaint();
+}
+
+/** Insights for every city, from one centrality batch. */
+public List<CityInsight> getCityInsights() {
+    ensureCentrality();
+    Map<String, Integer> degree = new HashMap<>();
+    for (EdgeView e : edges) {
+        degree.merge(e.from, 1, Integer::sum);
+        degree.merge(e.to, 1, Integer::sum);
+    }
+    List<CityInsight> all = new ArrayList<>(nodes.size());
+    for (String city : nodes.keySet()) {
+        all.add(buildCityInsight(city, degree.getOrDefault(city, 0)));
+    }
+    return all;
+}
+
+public CityInsight getCityInsight(String city) {
+    ensureCentrality();
+    return buildCityInsight(city, getCityDegree(city));
+}
+
+private CityInsight buildCityInsight(String city, int connectivity) {
 
     // -----------------------------
-    // 1. Connectivity (degree)
+    // 1. Centrality (betweenness, 1.0 = busiest through-node)
     // -----------------------------
-    int connectivity = 0;
-    for (EdgeView e : edges) {
-        if (e.from.equals(city) || e.to.equals(city)) {
-            connectivity++;
-        }
+    int node = insightNetwork.indexOf(city);
+    double centrality = 0.0;
+    if (node >= 0) {
+        centrality = betweenness != null
+                ? betweenness.relative(node)
+                : approxBetweenness.relative(node);
     }
 
     // -----------------------------
-    // 2. Centrality (normalized 0–1)
+    // 2. Closeness / harmonic (1.0 = best-placed city)
     // -----------------------------
-    double centrality = Math.min(1.0, connectivity / 8.0);
+    double close = node >= 0 ? closeness.relativeCloseness(node) : 0.0;
+    double harmonic = node >= 0 ? closeness.relativeHarmonic(node) : 0.0;
 
     // -----------------------------
     // 3. Traffic pressure (0–100)
@@ -542,7 +921,9 @@ addEdge("KUZ", "KHI", 60, "N25", 80, 0);
             connectivity,
             centrality,
             trafficPressure,
-            hubType
+            hubType,
+            close,
+            harmonic
     );
 }
 
@@ -616,7 +997,7 @@ public void mouseClicked(MouseEvent e) {
             translateY += e.getY() - lastDrag.y;
 
             lastDrag = e.getPoint();
-            heatmapImage = null;
+            governor.noteInteraction();
             repaint();
         }
     });
@@ -630,7 +1011,7 @@ public void mouseClicked(MouseEvent e) {
         zoom *= factor;
 
         zoom = Math.max(0.35, Math.min(3.5, zoom));
-        heatmapImage = null;
+        governor.noteInteraction();
         repaint();
     });
 }
@@ -684,7 +1065,7 @@ public void setTravelSimulationMode() {
 
 public void setCompareRoutesMode() {
     currentMode = ViewMode.COMPARE_ROUTES;
-    showHeatmap = false;
+    stopLiveHeatmap();
     selectedNode = null;
     repaint();
 }
@@ -699,6 +1080,7 @@ public void setCityInsightsMode() {
     if (heatmapTimer != null) {
         heatmapTimer.stop();
     }
+    stopLiveSimulation();
 
     heatmapImage = null;
     repaint();
@@ -723,9 +1105,26 @@ public void setGlobalTrafficLevel(double value) {
 protected void paintComponent(Graphics g0) {
     super.paintComponent(g0);
 
+    long frameStart = System.nanoTime();
+    RenderQualityGovernor.Quality quality = governor.quality();
+    boolean fast = quality == RenderQualityGovernor.Quality.FAST;
+
+    heatmapLayer.setFastMode(fast);
+    heatmapLayer.setResolutionScale(governor.heatmapScale());
+
+    // Newest published tick; the simulation keeps running meanwhile
+    frameSnapshot = replaySnapshot != null ? replaySnapshot
+            : simulationRunner != null ? simulationRunner.latest() : null;
+    if (frameSnapshot != null && frameSnapshot.isEmpty()) frameSnapshot = null;
+    heatmapLayer.applySnapshot(frameSnapshot);
+
     Graphics2D g = (Graphics2D) g0.create();
-    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-            RenderingHints.VALUE_ANTIALIAS_ON);
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, fast
+            ? RenderingHints.VALUE_ANTIALIAS_OFF
+            : RenderingHints.VALUE_ANTIALIAS_ON);
+    g.setRenderingHint(RenderingHints.KEY_RENDERING, fast
+            ? RenderingHints.VALUE_RENDER_SPEED
+            : RenderingHints.VALUE_RENDER_QUALITY);
 
     // -----------------------------
     // Background
@@ -743,6 +1142,9 @@ protected void paintComponent(Graphics g0) {
 // Graph rendering
 // -----------------------------
 drawEdges(g);
+if (bottleneckEdges != null) {
+    drawBottlenecks(g);
+}
 
 // ⭐⭐⭐ ADD THIS BLOCK ⭐⭐⭐
 if (currentMode == ViewMode.COMPARE_ROUTES && !alternativeRoutes.isEmpty()) {
@@ -761,11 +1163,24 @@ drawNodes(g);
 
     g.dispose();
 
+    // -----------------------------
+    // Vehicle fleet (SCREEN SPACE, one batched blit)
+    // -----------------------------
+    if (frameSnapshot != null && currentMode == ViewMode.DEFAULT) {
+        if (snapshotDots.begin((Graphics2D) g0, getWidth(), getHeight())) {
+            snapshotDots.dots(frameSnapshot.vehicleX(), frameSnapshot.vehicleY(),
+                    frameSnapshot.getVehicleCount(), zoom, translateX, translateY);
+            snapshotDots.end((Graphics2D) g0);
+        }
+    }
+
+    drawLabels((Graphics2D) g0, fast);
+
     // -----------------------------
 // Heatmap overlay (SCREEN SPACE)
 // -----------------------------
 if (showHeatmap && currentMode == ViewMode.DEFAULT) {
-    drawHeatmapOverlay((Graphics2D) g0);
+    drawHeatmapOverlay((Graphics2D) g0, fast);
 }
 
 
@@ -790,6 +1205,7 @@ if (showHeatmap && currentMode == ViewMode.DEFAULT) {
     );
 }
 
+    governor.recordFrame(quality, System.nanoTime() - frameStart);
 }
 private CityInsightsView cityInsightsView;
 
@@ -797,6 +1213,88 @@ public void setCityInsightsView(CityInsightsView view) {
     this.cityInsightsView = view;
 }
 
+// The runner's simulation must be built on RoadNetwork.fromPanel(this),
+// so snapshot edge / node indices match this panel. The panel only
+// reads the newest snapshot while painting; starting and stopping the
+// runner is left to the caller. Pass null to go back to the EDT timer.
+public void setSimulationRunner(SimulationRunner runner) {
+    if (simulationRunner != null) {
+        simulationRunner.setPublishListener(null);
+    }
+    rememberTraffic();
+    simulationRunner = runner;
+    frameSnapshot = null;
+    if (runner != null) {
+        runner.setPublishListener(this::repaint);
+    }
+    repaint();
+}
+
+public SimulationRunner getSimulationRunner() {
+    return simulationRunner;
+}
+
+// Shows a recorded frame (SimulationReplay.seek) instead of live
+// traffic. The replay refills the same snapshot on every seek; call
+// this again (or repaint) afterwards. Pass null to go back to live.
+public void setReplaySnapshot(SimulationSnapshot snapshot) {
+    replaySnapshot = snapshot;
+    frameSnapshot = null;
+    repaint();
+}
+
+// Shows a static per-edge congestion (flow / capacity), indexed like
+// getEdges(), e.g. TrafficAssignment.Result.congestionArray(). Roads
+// are tinted and each node's heat is its busiest incident road.
+// Pass null to clear.
+public void setCongestionOverlay(float[] edgeCongestion) {
+    congestionOverlay = edgeCongestion;
+    if (edgeCongestion != null) {
+        Map<String, Integer> index = new HashMap<>();
+        for (String name : nodes.keySet()) index.put(name, index.size());
+
+        float[] heat = new float[nodes.size()];
+        for (int i = 0; i < edges.size() && i < edgeCongestion.length; i++) {
+            float c = Math.min(1f, edgeCongestion[i]);
+            int a = index.get(edges.get(i).from);
+            int b = index.get(edges.get(i).to);
+            heat[a] = Math.max(heat[a], c);
+            heat[b] = Math.max(heat[b], c);
+        }
+        heatmapLayer.setNodeIntensities(heat);
+        trafficIntensity = heat;
+    } else {
+        initializeTraffic();
+    }
+    heatmapImage = null;
+    repaint();
+}
+
+// Shows an equilibrium assignment: its congestion tints roads and
+// heats nodes, and its travel times become the "time" route weights.
+// The result must be solved on RoadNetwork.fromPanel(this).
+public void setCongestionOverlay(TrafficAssignment.Result eq) {
+    setCongestionOverlay(eq.congestionArray());
+    trafficTravelTimes = eq.getTravelTimes().clone();
+}
+
+// Typical traffic without a running simulation: gravity demand
+// (DemandGenerator) assigned to user equilibrium once per network,
+// then shown with setCongestionOverlay. Compare Routes uses it.
+public void showEquilibriumTraffic() {
+    if (edges.isEmpty()) return;
+    if (equilibrium == null) {
+        RoadNetwork net = RoadNetwork.fromPanel(this);
+        OdMatrix od = new DemandGenerator(net).build(EQUILIBRIUM_TRIPS_PER_DAY);
+        try (TrafficAssignment ta = new TrafficAssignment(net, 1)) {
+            ta.setMaxIterations(EQUILIBRIUM_ITERATIONS);
+            ta.setTargetGap(EQUILIBRIUM_GAP);
+            equilibrium = ta.solve(od);
+        }
+    }
+    setCongestionOverlay(equilibrium);
+}
+
 // =============================================================
 // 21. BACKGROUND RENDERING
 // =============================================================
@@ -822,8 +1320,11 @@ private void drawEdges(Graphics2D g) {
     Stroke highwayGlow = new BasicStroke(10f);
     Stroke highwayStroke = new BasicStroke(6f);
 
-    for (EdgeView e : edges) {
+    int level = RoadGeometry.levelForZoom(zoom);
 
+    for (int i = 0; i < edges.size(); i++) {
+
+        EdgeView e = edges.get(i);
         NodeView a = nodes.get(e.from);
         NodeView b = nodes.get(e.to);
 
@@ -831,6 +1332,14 @@ private void drawEdges(Graphics2D g) {
                 e.motorway.startsWith("M") ||
                 e.motorway.startsWith("N");
 
+        // Shaped roads: draw the coarsest lossless polyline instead
+        if (roadGeometry != null && roadGeometry.pointCount(i, level) > 2) {
+            roadPath.reset();
+            roadGeometry.appendTo(roadPath, i, level);
+            drawShapedEdge(g, i, highway, localStroke, highwayGlow, highwayStroke);
+            continue;
+        }
+
         if (highway) {
             // Glow
             g.setStroke(highwayGlow);
@@ -839,7 +1348,7 @@ private void drawEdges(Graphics2D g) {
 
             // Main
             g.setStroke(highwayStroke);
-            g.setColor(new Color(60, 200, 255));
+            g.setColor(congestionTint(i, new Color(60, 200, 255)));
             g.drawLine(a.screenX, a.screenY, b.screenX, b.screenY);
 
             // Dashed center
@@ -857,12 +1366,101 @@ private void drawEdges(Graphics2D g) {
 
         } else {
             g.setStroke(localStroke);
-            g.setColor(new Color(130, 145, 170));
+            g.setColor(congestionTint(i, new Color(130, 145, 170)));
             g.drawLine(a.screenX, a.screenY, b.screenX, b.screenY);
         }
     }
 }
 
+// Blends a road colour toward red by its congestion in the current
+// simulation snapshot, else the static overlay (unchanged if neither).
+private Color congestionTint(int edge, Color base) {
+    float c;
+    if (frameSnapshot != null && edge < frameSnapshot.edgeCount()) {
+        c = frameSnapshot.edgeCongestion(edge);
+    } else if (congestionOverlay != null && edge < congestionOverlay.length) {
+        c = congestionOverlay[edge];
+    } else {
+        return base;
+    }
+    c = Math.min(1f, c);
+    if (c <= 0f) return base;
+    return new Color(
+            (int) (base.getRed() + (255 - base.getRed()) * c),
+            (int) (base.getGreen() * (1f - c) + 60 * c),
+            (int) (base.getBlue() * (1f - c) + 60 * c));
+}
+
+// Same styling as drawEdges, applied to roadPath
+private void drawShapedEdge(Graphics2D g, int edge, boolean highway,
+                            Stroke localStroke, Stroke highwayGlow, Stroke highwayStroke) {
+    if (highway) {
+        g.setStroke(highwayGlow);
+        g.setColor(new Color(60, 200, 255, 70));
+        g.draw(roadPath);
+
+        g.setStroke(highwayStroke);
+        g.setColor(congestionTint(edge, new Color(60, 200, 255)));
+        g.draw(roadPath);
+    } else {
+        g.setStroke(localStroke);
+        g.setColor(congestionTint(edge, new Color(130, 145, 170)));
+        g.draw(roadPath);
+    }
+}
+
+// Min-cut roads: a wide amber band under a dark core, straight
+// or along the road shape.
+private void drawBottlenecks(Graphics2D g) {
+    Stroke glow = new BasicStroke(16f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    Stroke core = new BasicStroke(5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    int level = RoadGeometry.levelForZoom(zoom);
+
+    for (int i : bottleneckEdges) {
+        if (i >= edges.size()) continue;
+        EdgeView e = edges.get(i);
+        NodeView a = nodes.get(e.from);
+        NodeView b = nodes.get(e.to);
+
+        Shape road;
+        if (roadGeometry != null && roadGeometry.pointCount(i, level) > 2) {
+            roadPath.reset();
+            roadGeometry.appendTo(roadPath, i, level);
+            road = roadPath;
+        } else {
+            road = new Line2D.Float(a.screenX, a.screenY, b.screenX, b.screenY);
+        }
+        g.setStroke(glow);
+        g.setColor(new Color(255, 170, 0, 110));
+        g.draw(road);
+        g.setStroke(core);
+        g.setColor(new Color(255, 200, 40));
+        g.draw(road);
+    }
+}
+
+/**
+ * Attaches road shapes built on RoadNetwork.fromPanel(this), so
+ * geometry edge i is edges.get(i). Pass null for straight roads.
+ */
+public void setRoadGeometry(RoadGeometry geometry) {
+    this.roadGeometry = geometry;
+    repaint();
+}
+
+/**
+ * Loads road shapes (from,to,x1,y1,...) given in the same graph
+ * coordinates as the nodes; a missing file keeps roads straight.
+ */
+public void loadRoadShapes(String file) {
+    if (!new File(file).isFile()) return;
+    try {
+        setRoadGeometry(RoadGeometry.loadCsv(RoadNetwork.fromPanel(this), file, projection));
+    } catch (IOException | RuntimeException ex) {
+        System.err.println("Road shapes not loaded from " + file + ": " + ex.getMessage());
+    }
+}
+
 // =============================================================
 // 23. NODE RENDERING
 // =============================================================
@@ -898,13 +1496,23 @@ private void drawNodes(Graphics2D g) {
         g.setColor(new Color(60, 200, 255));
         g.drawOval(cx - 11, cy - 11, 22, 22);
 
-        // Label
-        g.setFont(new Font("Segoe UI", Font.BOLD, 12));
-        g.setColor(Color.WHITE);
-        g.drawString(n.name, cx + 12, cy + 5);
+        // Labels are placed separately (see drawLabels)
     }
 }
 
+// =============================================================
+// 23b. NODE LABELS (SCREEN SPACE)
+// =============================================================
+
+private void drawLabels(Graphics2D g0, boolean fast) {
+    Graphics2D g = (Graphics2D) g0.create();
+    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, fast
+            ? RenderingHints.VALUE_TEXT_ANTIALIAS_OFF
+            : RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    labelPlacer.draw(g, zoom, translateX, translateY);
+    g.dispose();
+}
+
 // =============================================================
 // 24. SELECTED NODE HIGHLIGHT (SCREEN SPACE)
 // =============================================================
@@ -922,16 +1530,29 @@ private void drawSelectedNodeHighlight(Graphics2D g, NodeView n) {
 // 25. HEATMAP OVERLAY
 // =============================================================
 
-private void drawHeatmapOverlay(Graphics2D g) {
+private void drawHeatmapOverlay(Graphics2D g, boolean fast) {
 
-    if (heatmapImage == null) {
-        rebuildHeatmap();
+    boolean stale = heatmapImage != null
+            && (zoom != heatmapZoom || translateX != heatmapTx || translateY != heatmapTy
+                || getWidth() != heatmapWidth || getHeight() != heatmapHeight);
+
+    if (heatmapImage == null || (stale && !fast)) {
+        rebuildHeatmap(fast ? governor.heatmapScale() : 1.0);
     }
 
+    // Re-project the cached image onto the current zoom / pan
+    double k = zoom / heatmapZoom;
+    AffineTransform place = new AffineTransform();
+    place.translate(translateX - heatmapTx * k, translateY - heatmapTy * k);
+    place.scale(k / heatmapScale, k / heatmapScale);
+
     Composite prev = g.getComposite();
     g.setComposite(AlphaComposite.getInstance(
             AlphaComposite.SRC_OVER, 0.42f));
-    g.drawImage(heatmapImage, 0, 0, null);
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, fast
+            ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+            : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(heatmapImage, place, null);
     g.setComposite(prev);
 }
 
@@ -939,21 +1560,34 @@ private void drawHeatmapOverlay(Graphics2D g) {
 // 26. HEATMAP BUILDING
 // =============================================================
 
-private void rebuildHeatmap() {
+private void rebuildHeatmap(double scale) {
+
+    heatmapZoom = zoom;
+    heatmapTx = translateX;
+    heatmapTy = translateY;
+    heatmapScale = scale;
+    heatmapWidth = getWidth();
+    heatmapHeight = getHeight();
 
     heatmapImage = new BufferedImage(
-            getWidth(),
-            getHeight(),
+            Math.max(1, (int) Math.ceil(getWidth() * scale)),
+            Math.max(1, (int) Math.ceil(getHeight() * scale)),
             BufferedImage.TYPE_INT_ARGB
     );
 
     Graphics2D g = heatmapImage.createGraphics();
+    g.scale(scale, scale);
 
+    // Simulated flows when a simulation / replay is showing
+    SimulationSnapshot snap = frameSnapshot;
     int i = 0;
     for (NodeView n : nodes.values()) {
 
+        double heat = snap != null && i < snap.nodeCount()
+                ? snap.nodeIntensity(i) : trafficIntensity[i];
+        i++;
         double intensity =
-                trafficIntensity[i++] *
+                heat *
                 (1 + 0.3 * Math.sin(heatPulse)) *
                 globalTrafficLevel;
 
@@ -1069,102 +1703,91 @@ public void clearAlternativeRoutes() {
 }
 
 // =============================================================
-// 31. PATHFINDING (DIJKSTRA ENGINE)
+// 31. PATHFINDING (CSR DIJKSTRA, LIVE WEIGHTS)
 // =============================================================
+// Every route mode runs DijkstraEngine over a RoadNetwork copy of the
+// graph (built on first use, dropped by loadNetwork), with one weight
+// array per mode:
+//   distance  road length
+//   time      current travel times: the simulation frame on screen,
+//             else the traffic last seen before it stopped, else
+//             free flow
+//   cost      toll
+// timeHours of every result is measured with the same current times.
+private RoadNetwork routingNetwork = null;
+private DijkstraEngine routingEngine = null;
+private float[] trafficTravelTimes = null;   // last known congested times (s)
 
 public RouteResult findShortestPath(
         String src,
         String dst,
         String mode) {
 
-    Map<String, List<EdgeView>> adj = new HashMap<>();
-    for (String n : nodes.keySet()) {
-        adj.put(n, new ArrayList<>());
-    }
-
-    for (EdgeView e : edges) {
-        adj.get(e.from).add(e);
-    }
-
-    Map<String, Double> dist = new HashMap<>();
-    Map<String, String> parent = new HashMap<>();
-
-    for (String n : nodes.keySet()) {
-        dist.put(n, Double.POSITIVE_INFINITY);
+    if (routingNetwork == null) {
+        routingNetwork = RoadNetwork.fromPanel(this);
+        routingEngine = new DijkstraEngine(routingNetwork);
     }
-
-    dist.put(src, 0.0);
-
-    PriorityQueue<String> pq =
-            new PriorityQueue<>(Comparator.comparingDouble(dist::get));
-    pq.add(src);
-
-    while (!pq.isEmpty()) {
-
-        String u = pq.poll();
-        if (u.equals(dst)) break;
-
-        for (EdgeView e : adj.get(u)) {
-
-            double weight;
-            switch (mode) {
-                case "time":
-                    weight = e.length / e.speed;
-                    break;
-                case "cost":
-                    weight = e.toll;
-                    break;
-                default:
-                    weight = e.length;
-            }
-
-            double nd = dist.get(u) + weight;
-            if (nd < dist.get(e.to)) {
-                dist.put(e.to, nd);
-                parent.put(e.to, u);
-                pq.add(e.to);
-            }
-        }
+    RoadNetwork net = routingNetwork;
+    int s = net.indexOf(src);
+    int t = net.indexOf(dst);
+    if (s < 0 || t < 0) return null;
+
+    float[] times = currentTravelTimes();
+    float[] weights;
+    switch (mode) {
+        case "time":
+            weights = times;
+            break;
+        case "cost":
+            weights = net.edgeToll;
+            break;
+        default:
+            weights = net.edgeLength;
     }
 
-    if (!parent.containsKey(dst) && !src.equals(dst)) {
-        return null;
-    }
-
-    List<String> path = new ArrayList<>();
-    String cur = dst;
-    path.add(cur);
-
-    while (!cur.equals(src)) {
-        cur = parent.get(cur);
-        path.add(cur);
-    }
-
-    Collections.reverse(path);
-
-    double totalLen = 0, totalTime = 0, totalCost = 0;
-
-    for (int i = 0; i < path.size() - 1; i++) {
-        EdgeView e = findEdge(path.get(i), path.get(i + 1));
-        totalLen += e.length;
-        totalTime += e.length / e.speed;
-        totalCost += e.toll;
+    routingEngine.run(s, weights, t);
+    int[] pathEdges = new int[net.nodeCount()];
+    int hops = routingEngine.extractPath(t, pathEdges);
+    if (hops < 0) return null;
+
+    List<String> path = new ArrayList<>(hops + 1);
+    path.add(src);
+    double totalLen = 0, totalSeconds = 0, totalCost = 0;
+    for (int i = 0; i < hops; i++) {
+        int e = pathEdges[i];
+        path.add(net.nodeName(net.edgeTo[e]));
+        totalLen += net.edgeLength[e];
+        totalSeconds += times[e];
+        totalCost += net.edgeToll[e];
     }
 
     return new RouteResult(
             mode,
             path,
             totalLen,
-            totalTime,
+            totalSeconds / 3600.0,
             totalCost
     );
 }
 
-private EdgeView findEdge(String a, String b) {
-    for (EdgeView e : edges) {
-        if (e.from.equals(a) && e.to.equals(b)) return e;
+// Travel times of the traffic the user currently sees
+private float[] currentTravelTimes() {
+    RoadNetwork net = routingNetwork;
+    rememberTraffic();
+    if (trafficTravelTimes != null && trafficTravelTimes.length == net.edgeCount()) {
+        return trafficTravelTimes;
     }
-    return null;
+    return net.edgeFreeFlowTime;
+}
+
+// Keeps the on-screen frame's travel times for routing after it is gone
+private void rememberTraffic() {
+    SimulationSnapshot snap = frameSnapshot;
+    if (snap == null || !snap.hasTravelTimes()) return;
+    if (trafficTravelTimes == null || trafficTravelTimes.length != snap.edgeCount()) {
+        trafficTravelTimes = new float[snap.edgeCount()];
+    }
+    snap.copyTravelTimes(trafficTravelTimes);
 }
 
 // =============================================================
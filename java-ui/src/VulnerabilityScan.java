@@ -0,0 +1,322 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * =============================================================
+ * VulnerabilityScan - WHICH CLOSURE HURTS THE NETWORK MOST
+ * =============================================================
+ * Closes every road (or junction) in turn and measures what it
+ * does to the trips of an OdMatrix: the total (OdMatrix.allPairs
+ * over every node) or a sample (allPairs over a few zones, or a
+ * gravity matrix from DemandGenerator).
+ *   1. BASELINE  one Dijkstra per origin; per-pair times, and per
+ *                origin a bitset of the tree edges its trips use
+ *   2. CLOSE     set the element's edges in the worker's closure
+ *                mask (DijkstraEngine.setClosedEdges): the network
+ *                itself is never copied or modified
+ *   3. REROUTE   re-run only the origins whose trips used a closed
+ *                edge (the others keep their exact times) and add
+ *                demand · (new - old) seconds; trips left with no
+ *                route count as lost
+ * Two-way roads close both directions by default and are scanned
+ * once. Closing a junction closes all its roads and drops the
+ * trips that start or end there.
+ *
+ * Candidates are cut into fixed chunks, one per thread, each with
+ * its own DijkstraEngine and mask; every Impact is written by one
+ * worker, so the ranking does not depend on the thread count.
+ * Ranked by lost trips, then added vehicle-seconds.
+ * =============================================================
+ */
+public final class VulnerabilityScan {
+
+    private final RoadNetwork net;
+    private final float[] weights;
+    private final OdMatrix demand;
+    private final int[] origins;
+    private final int words;
+    private int threads = 1;
+    private boolean twoWay = true;
+
+    // Baseline (built on first scan)
+    private double[] baseTime;        // per OD pair, seconds
+    private long[][] treeEdges;       // per origin: edges its trips use
+    private double baselineSeconds;   // demand-weighted, routable pairs
+
+    public VulnerabilityScan(RoadNetwork net, float[] weights, OdMatrix demand) {
+        if (demand.nodeCount() != net.nodeCount()) {
+            throw new IllegalArgumentException("Demand is for a different network");
+        }
+        this.net = net;
+        this.weights = weights;
+        this.demand = demand;
+        this.origins = demand.origins();
+        this.words = (net.edgeCount() + 63) / 64;
+    }
+
+    public void setThreads(int threads) { this.threads = Math.max(1, threads); }
+
+    /** Close a road's opposite direction with it (default true). */
+    public void setTwoWayClosures(boolean twoWay) { this.twoWay = twoWay; }
+
+    /** Demand-weighted baseline travel time (trips/h · s). */
+    public double getBaselineSeconds() {
+        ensureBaseline();
+        return baselineSeconds;
+    }
+
+    // ---------------------------------------------------------
+    // Scans
+    // ---------------------------------------------------------
+
+    /** Every road (both directions of two-way roads together), ranked. */
+    public List<Impact> scanEdges() {
+        int m = net.edgeCount();
+        int[] candidates = new int[m];
+        int c = 0;
+        for (int e = 0; e < m; e++) {
+            int twin = twoWay ? twin(e) : -1;
+            if (twin < 0 || e < twin) candidates[c++] = e;
+        }
+        return scanEdges(Arrays.copyOf(candidates, c));
+    }
+
+    /** The given roads only, ranked. */
+    public List<Impact> scanEdges(int[] edges) {
+        return scan(edges, false);
+    }
+
+    /** Every junction, ranked. */
+    public List<Impact> scanNodes() {
+        int[] all = new int[net.nodeCount()];
+        for (int v = 0; v < all.length; v++) all[v] = v;
+        return scan(all, true);
+    }
+
+    private List<Impact> scan(int[] elements, boolean nodes) {
+        ensureBaseline();
+        Impact[] out = new Impact[elements.length];
+        runChunks(elements.length, (w, from, to) -> {
+            for (int i = from; i < to; i++) out[i] = w.evaluate(elements[i], nodes);
+        });
+        List<Impact> ranked = new ArrayList<>(Arrays.asList(out));
+        ranked.sort(RANKING);
+        return ranked;
+    }
+
+    private static final Comparator<Impact> RANKING =
+            Comparator.comparingDouble((Impact i) -> -i.lostTrips)
+                    .thenComparingDouble(i -> -i.addedSeconds)
+                    .thenComparingInt(i -> i.element);
+
+    private int twin(int e) {
+        return net.findEdge(net.edgeTo[e], net.edgeFrom[e]);
+    }
+
+    // ---------------------------------------------------------
+    // Baseline
+    // ---------------------------------------------------------
+
+    private void ensureBaseline() {
+        if (baseTime != null) return;
+        double[] time = new double[demand.pairCount()];
+        long[][] trees = new long[origins.length][];
+
+        runChunks(origins.length, (w, from, to) -> {
+            DijkstraEngine router = w.router;
+            for (int oi = from; oi < to; oi++) {
+                int o = origins[oi];
+                router.run(o, weights, -1);
+                long[] tree = new long[words];
+                for (int k = demand.originStart[o]; k < demand.originStart[o + 1]; k++) {
+                    int d = demand.dest[k];
+                    time[k] = router.dist(d);
+                    // Mark the tree path to d (stop where it joins one already marked)
+                    for (int v = d; router.parentEdge(v) >= 0; v = net.edgeFrom[router.parentEdge(v)]) {
+                        int e = router.parentEdge(v);
+                        if ((tree[e >>> 6] & (1L << e)) != 0) break;
+                        tree[e >>> 6] |= 1L << e;
+                    }
+                }
+                trees[oi] = tree;
+            }
+        });
+
+        double total = 0.0;
+        for (int k = 0; k < time.length; k++) {
+            if (time[k] != Double.POSITIVE_INFINITY) total += demand.trips[k] * time[k];
+        }
+        baselineSeconds = total;
+        treeEdges = trees;
+        baseTime = time;
+    }
+
+    // ---------------------------------------------------------
+    // Workers
+    // ---------------------------------------------------------
+
+    private interface Chunk {
+        void run(Worker w, int from, int to);
+    }
+
+    /** Runs body over [0, count) in fixed chunks, one Worker each. */
+    private void runChunks(int count, Chunk body) {
+        int t = Math.max(1, Math.min(threads, count));
+        if (t == 1) {
+            body.run(new Worker(), 0, count);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(t, r -> {
+            Thread th = new Thread(r, "vulnerability-scan");
+            th.setDaemon(true);
+            return th;
+        });
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            int chunk = (count + t - 1) / t;
+            for (int lo = 0; lo < count; lo += chunk) {
+                final int from = lo, to = Math.min(count, lo + chunk);
+                tasks.add(() -> {
+                    body.run(new Worker(), from, to);
+                    return null;
+                });
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Vulnerability scan interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Vulnerability scan failed", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** One thread's router and closure mask (all bits clear between elements). */
+    private final class Worker {
+        final DijkstraEngine router = new DijkstraEngine(net);
+        final long[] mask = new long[words];
+        final int[] closedEdges = new int[Math.max(2, net.edgeCount())];
+
+        Worker() {
+            router.setClosedEdges(mask);
+        }
+
+        Impact evaluate(int element, boolean node) {
+            // Edges to close
+            int closedCount = 0;
+            int excluded = -1;
+            if (node) {
+                excluded = element;
+                for (int k = net.outStart[element]; k < net.outStart[element + 1]; k++) {
+                    closedEdges[closedCount++] = net.outEdges[k];
+                }
+                for (int k = net.inStart[element]; k < net.inStart[element + 1]; k++) {
+                    closedEdges[closedCount++] = net.inEdges[k];
+                }
+            } else {
+                closedEdges[closedCount++] = element;
+                int twin = twoWay ? twin(element) : -1;
+                if (twin >= 0) closedEdges[closedCount++] = twin;
+            }
+            for (int i = 0; i < closedCount; i++) {
+                int e = closedEdges[i];
+                mask[e >>> 6] |= 1L << e;
+            }
+
+            double added = 0.0, lost = 0.0;
+            int rerouted = 0;
+            for (int oi = 0; oi < origins.length; oi++) {
+                int o = origins[oi];
+                if (o == excluded || !usesAny(treeEdges[oi], closedCount)) continue;
+
+                router.run(o, weights, -1);
+                rerouted++;
+                for (int k = demand.originStart[o]; k < demand.originStart[o + 1]; k++) {
+                    int d = demand.dest[k];
+                    double before = baseTime[k];
+                    if (d == excluded || before == Double.POSITIVE_INFINITY) continue;
+                    double after = router.dist(d);
+                    if (after == Double.POSITIVE_INFINITY) {
+                        lost += demand.trips[k];
+                    } else {
+                        added += demand.trips[k] * (after - before);
+                    }
+                }
+            }
+
+            for (int i = 0; i < closedCount; i++) {
+                int e = closedEdges[i];
+                mask[e >>> 6] &= ~(1L << e);
+            }
+            return new Impact(element, node, closedCount, added, lost, rerouted);
+        }
+
+        private boolean usesAny(long[] tree, int closedCount) {
+            for (int i = 0; i < closedCount; i++) {
+                int e = closedEdges[i];
+                if ((tree[e >>> 6] & (1L << e)) != 0) return true;
+            }
+            return false;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Result
+    // ---------------------------------------------------------
+
+    public static final class Impact {
+        /** Edge index, or node index for junction closures. */
+        public final int element;
+        public final boolean node;
+        /** Directed edges closed. */
+        public final int closedEdges;
+        /** Extra demand-weighted travel time (trips/h · s). */
+        public final double addedSeconds;
+        /** Demand (trips/h) left without any route. */
+        public final double lostTrips;
+        /** Origins that had to be searched again. */
+        public final int reroutedOrigins;
+
+        private Impact(int element, boolean node, int closedEdges,
+                       double addedSeconds, double lostTrips, int reroutedOrigins) {
+            this.element = element;
+            this.node = node;
+            this.closedEdges = closedEdges;
+            this.addedSeconds = addedSeconds;
+            this.lostTrips = lostTrips;
+            this.reroutedOrigins = reroutedOrigins;
+        }
+
+        /** e.g. "DGK <-> SUK (N55)" or "LHR". */
+        public String label(RoadNetwork net) {
+            if (node) return net.nodeName(element);
+            String arrow = closedEdges > 1 ? " <-> " : " -> ";
+            return net.nodeName(net.edgeFrom[element]) + arrow
+                    + net.nodeName(net.edgeTo[element])
+                    + " (" + net.edgeMotorway[element] + ")";
+        }
+    }
+
+    /** One line per entry, most harmful first (top <= 0: all). */
+    public List<String> report(List<Impact> ranked, int top) {
+        double base = getBaselineSeconds();
+        int count = top <= 0 ? ranked.size() : Math.min(top, ranked.size());
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Impact im = ranked.get(i);
+            lines.add(String.format(Locale.ROOT, "%3d. %-32s +%6.2f%% time  %10.0f veh-s/h  %8.1f trips/h lost",
+                    i + 1, im.label(net), base > 0 ? 100.0 * im.addedSeconds / base : 0.0,
+                    im.addedSeconds, im.lostTrips));
+        }
+        return lines;
+    }
+}